@@ -0,0 +1,255 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+
+/**
+ * 面积缩小
+ * createScaledBitmap 的双线性过滤每个目标像素只取源图中相邻的4个像素，缩小到一半以下时
+ * 大部分源像素被跳过，文字和细线出现锯齿和摩尔纹，而且每次都新建位图。
+ * 这里先按2x2的方框反复减半，直到剩余比例小于2，再做一次按覆盖面积加权的缩小，
+ * 每个源像素都按其落在目标像素中的面积参与计算。
+ * 按行读写像素，中间结果和输出位图取自复用池；按预乘Alpha计算，半透明边缘不会发黑
+ */
+public final class AreaDownscaler {
+
+    // 面积权重的定点精度，每个方向的权重之和为 1 << WEIGHT_BITS
+    private static final int WEIGHT_BITS = 10;
+    static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    private AreaDownscaler() {
+    }
+
+    /**
+     * 目标尺寸是否为缩小（两个方向都不大于源尺寸，且不完全相同）
+     */
+    public static boolean canDownscale(int srcWidth, int srcHeight, int width, int height) {
+        return width > 0 && height > 0 && width <= srcWidth && height <= srcHeight
+                && (width != srcWidth || height != srcHeight);
+    }
+
+    /**
+     * 把位图缩小到指定尺寸，HARDWARE位图先回读
+     * @param pool 中间结果和输出位图的复用池，为null时新建
+     * @return ARGB_8888位图，使用完后放回复用池
+     */
+    public static Bitmap downscale(Bitmap source, int width, int height, BitmapPool pool) {
+        if (!canDownscale(source.getWidth(), source.getHeight(), width, height)) {
+            throw new IllegalArgumentException("不是缩小: " + source.getWidth() + "x" + source.getHeight() +
+                    " -> " + width + "x" + height);
+        }
+        Bitmap level = source;
+        if (source.getConfig() == Bitmap.Config.HARDWARE) {
+            level = source.copy(Bitmap.Config.ARGB_8888, true);
+        }
+        // 按源图尺寸计的有效范围，奇数边减半后最后一个像素只覆盖半格
+        double extentX = level.getWidth();
+        double extentY = level.getHeight();
+        while (extentX >= width * 2.0 && extentY >= height * 2.0) {
+            Bitmap halved = halve(level, pool);
+            release(level, source, pool);
+            level = halved;
+            extentX /= 2;
+            extentY /= 2;
+        }
+        Bitmap result = obtain(width, height, pool);
+        resample(level, extentX, extentY, result);
+        release(level, source, pool);
+        return result;
+    }
+
+    private static Bitmap obtain(int width, int height, BitmapPool pool) {
+        // 每个像素都会被写入，不需要清空
+        return pool != null ? pool.getDirty(width, height, Bitmap.Config.ARGB_8888)
+                : Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 释放中间结果，调用方传入的源图不释放
+     */
+    private static void release(Bitmap bitmap, Bitmap source, BitmapPool pool) {
+        if (bitmap == source) {
+            return;
+        }
+        if (pool != null) {
+            pool.put(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 2x2方框减半，奇数边的最后一行或一列与自身平均
+     */
+    private static Bitmap halve(Bitmap src, BitmapPool pool) {
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int width = (srcWidth + 1) / 2;
+        int height = (srcHeight + 1) / 2;
+        Bitmap dst = obtain(width, height, pool);
+        int[] top = new int[srcWidth];
+        int[] bottom = new int[srcWidth];
+        int[] out = new int[width];
+        for (int y = 0; y < height; y++) {
+            src.getPixels(top, 0, srcWidth, 0, y * 2, srcWidth, 1);
+            int bottomY = Math.min(y * 2 + 1, srcHeight - 1);
+            src.getPixels(bottom, 0, srcWidth, 0, bottomY, srcWidth, 1);
+            for (int x = 0; x < width; x++) {
+                int left = x * 2;
+                int right = Math.min(left + 1, srcWidth - 1);
+                out[x] = average(top[left], top[right], bottom[left], bottom[right]);
+            }
+            dst.setPixels(out, 0, width, 0, y, width, 1);
+        }
+        return dst;
+    }
+
+    private static int average(int p0, int p1, int p2, int p3) {
+        if ((p0 & p1 & p2 & p3) >>> 24 == 0xFF) {
+            // 全部不透明时直接平均各通道
+            int r = ((p0 >> 16 & 0xFF) + (p1 >> 16 & 0xFF) + (p2 >> 16 & 0xFF) + (p3 >> 16 & 0xFF) + 2) >> 2;
+            int g = ((p0 >> 8 & 0xFF) + (p1 >> 8 & 0xFF) + (p2 >> 8 & 0xFF) + (p3 >> 8 & 0xFF) + 2) >> 2;
+            int b = ((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + 2) >> 2;
+            return 0xFF000000 | r << 16 | g << 8 | b;
+        }
+        int a0 = p0 >>> 24;
+        int a1 = p1 >>> 24;
+        int a2 = p2 >>> 24;
+        int a3 = p3 >>> 24;
+        int alpha = a0 + a1 + a2 + a3;
+        if (alpha == 0) {
+            return 0;
+        }
+        int r = (p0 >> 16 & 0xFF) * a0 + (p1 >> 16 & 0xFF) * a1 + (p2 >> 16 & 0xFF) * a2 + (p3 >> 16 & 0xFF) * a3;
+        int g = (p0 >> 8 & 0xFF) * a0 + (p1 >> 8 & 0xFF) * a1 + (p2 >> 8 & 0xFF) * a2 + (p3 >> 8 & 0xFF) * a3;
+        int b = (p0 & 0xFF) * a0 + (p1 & 0xFF) * a1 + (p2 & 0xFF) * a2 + (p3 & 0xFF) * a3;
+        int half = alpha / 2;
+        return (alpha + 2) >> 2 << 24 | (r + half) / alpha << 16 | (g + half) / alpha << 8 | (b + half) / alpha;
+    }
+
+    /**
+     * 一个方向上每个目标像素覆盖的源像素和面积权重
+     */
+    static final class Taps {
+        final int[] first;
+        final int[] weights;
+        // 每个目标像素最多覆盖的源像素数
+        final int stride;
+
+        Taps(double extent, int srcLength, int length) {
+            double scale = extent / length;
+            stride = (int) Math.ceil(scale) + 1;
+            first = new int[length];
+            weights = new int[length * stride];
+            for (int i = 0; i < length; i++) {
+                double begin = i * scale;
+                double end = Math.min(extent, (i + 1) * scale);
+                int start = (int) begin;
+                int last = Math.min(srcLength - 1, (int) Math.ceil(end) - 1);
+                first[i] = start;
+                int sum = 0;
+                int largest = 0;
+                for (int j = start; j <= last; j++) {
+                    double coverage = Math.min(end, j + 1) - Math.max(begin, j);
+                    int weight = (int) Math.round(coverage / scale * WEIGHT_ONE);
+                    weights[i * stride + j - start] = weight;
+                    sum += weight;
+                    if (weight > weights[i * stride + largest]) {
+                        largest = j - start;
+                    }
+                }
+                // 舍入误差补到权重最大的源像素上，保证权重之和不变
+                weights[i * stride + largest] += WEIGHT_ONE - sum;
+            }
+        }
+    }
+
+    /**
+     * 按覆盖面积加权缩小，先水平方向后垂直方向
+     * @param extentX 源图在水平方向的有效范围，可能比宽度少半个像素
+     */
+    private static void resample(Bitmap src, double extentX, double extentY, Bitmap dst) {
+        int srcWidth = src.getWidth();
+        int width = dst.getWidth();
+        int height = dst.getHeight();
+        Taps tapsX = new Taps(extentX, srcWidth, width);
+        Taps tapsY = new Taps(extentY, src.getHeight(), height);
+
+        // 水平缩小后的行，按行号循环存放，相邻的目标行共用边界上的源行
+        int[][] rows = new int[tapsY.stride][width * 4];
+        int[] rowIndex = new int[tapsY.stride];
+        Arrays.fill(rowIndex, -1);
+        int[] line = new int[srcWidth];
+        long[] sums = new long[width * 4];
+        int[] out = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(sums, 0);
+            for (int t = 0; t < tapsY.stride; t++) {
+                int weightY = tapsY.weights[y * tapsY.stride + t];
+                if (weightY == 0) {
+                    continue;
+                }
+                int srcY = tapsY.first[y] + t;
+                int slot = srcY % tapsY.stride;
+                if (rowIndex[slot] != srcY) {
+                    src.getPixels(line, 0, srcWidth, 0, srcY, srcWidth, 1);
+                    filterRow(line, tapsX, rows[slot]);
+                    rowIndex[slot] = srcY;
+                }
+                int[] row = rows[slot];
+                for (int i = 0; i < width * 4; i++) {
+                    sums[i] += (long) row[i] * weightY;
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                out[x] = unpremultiply(sums, x * 4);
+            }
+            dst.setPixels(out, 0, width, 0, y, width, 1);
+        }
+    }
+
+    /**
+     * 水平方向加权，结果为每个目标像素的 Alpha 和预乘后的 R、G、B 之和
+     */
+    private static void filterRow(int[] line, Taps taps, int[] row) {
+        int width = taps.first.length;
+        for (int x = 0; x < width; x++) {
+            int alpha = 0;
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            int start = taps.first[x];
+            for (int t = 0; t < taps.stride; t++) {
+                int weight = taps.weights[x * taps.stride + t];
+                if (weight == 0) {
+                    continue;
+                }
+                int pixel = line[start + t];
+                int a = (pixel >>> 24) * weight;
+                alpha += a;
+                r += (pixel >> 16 & 0xFF) * a;
+                g += (pixel >> 8 & 0xFF) * a;
+                b += (pixel & 0xFF) * a;
+            }
+            row[x * 4] = alpha;
+            row[x * 4 + 1] = r;
+            row[x * 4 + 2] = g;
+            row[x * 4 + 3] = b;
+        }
+    }
+
+    private static int unpremultiply(long[] sums, int offset) {
+        long alpha = sums[offset];
+        if (alpha == 0) {
+            return 0;
+        }
+        long half = alpha / 2;
+        int a = (int) ((alpha + (1L << (WEIGHT_BITS * 2 - 1))) >> (WEIGHT_BITS * 2));
+        int r = (int) ((sums[offset + 1] + half) / alpha);
+        int g = (int) ((sums[offset + 2] + half) / alpha);
+        int b = (int) ((sums[offset + 3] + half) / alpha);
+        return Math.min(a, 255) << 24 | r << 16 | g << 8 | b;
+    }
+}
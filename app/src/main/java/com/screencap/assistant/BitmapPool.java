@@ -0,0 +1,128 @@
+package com.screencap.assistant;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * 位图复用池
+ * 按尺寸和格式复用拼接、缩放过程中的临时位图，避免每次截图都重新分配几十MB内存，
+ * 在游戏过程中频繁截图时减少GC。
+ * 只接受可变的软件位图，HARDWARE位图和不可变位图放回时直接释放。
+ * 池中位图总大小超过预算时淘汰最久未使用的位图
+ */
+public class BitmapPool {
+
+    private static final String TAG = "BitmapPool";
+
+    // 按放回顺序排列，最早放回的在前
+    private final ArrayList<Bitmap> mPool = new ArrayList<>();
+    private long mMaxBytes;
+    private long mCurrentBytes = 0;
+
+    // 统计
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+    private int mEvictionCount = 0;
+
+    public BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 获取指定尺寸和格式的位图，内容已清空为透明
+     * 池中没有匹配的位图时新建
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = getDirty(width, height, config);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * 获取指定尺寸和格式的位图，内容为上一次使用时的像素，适合会被完全覆盖的场景
+     */
+    public Bitmap getDirty(int width, int height, Bitmap.Config config) {
+        synchronized (this) {
+            for (int i = mPool.size() - 1; i >= 0; i--) {
+                Bitmap bitmap = mPool.get(i);
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                    mPool.remove(i);
+                    mCurrentBytes -= bitmap.getAllocationByteCount();
+                    mHitCount++;
+                    return bitmap;
+                }
+            }
+            mMissCount++;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * 放回位图，不可复用或超出预算时直接释放
+     * 放回后调用方不能再使用该位图
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || mPool.contains(bitmap)) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() == Bitmap.Config.HARDWARE
+                || bitmap.getAllocationByteCount() > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        mPool.add(bitmap);
+        mCurrentBytes += bitmap.getAllocationByteCount();
+        trimToSize(mMaxBytes);
+    }
+
+    /**
+     * 调整内存预算
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        mMaxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * 按内存紧张程度释放池中的位图
+     */
+    public synchronized void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimToSize(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(mMaxBytes / 2);
+        }
+        Log.i(TAG, "内存紧张(level=" + level + ")，" + getStats());
+    }
+
+    /**
+     * 清空复用池
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(long maxBytes) {
+        while (mCurrentBytes > maxBytes && !mPool.isEmpty()) {
+            Bitmap bitmap = mPool.remove(0);
+            mCurrentBytes -= bitmap.getAllocationByteCount();
+            mEvictionCount++;
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 复用统计
+     */
+    public synchronized String getStats() {
+        int total = mHitCount + mMissCount;
+        return String.format(Locale.US, "复用池: 命中 %d, 未命中 %d, 命中率 %d%%, 淘汰 %d, 占用 %.1f/%.1fMB",
+                mHitCount, mMissCount, total > 0 ? mHitCount * 100 / total : 0, mEvictionCount,
+                mCurrentBytes / 1024f / 1024f, mMaxBytes / 1024f / 1024f);
+    }
+}
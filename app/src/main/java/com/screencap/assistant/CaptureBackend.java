@@ -0,0 +1,30 @@
+package com.screencap.assistant;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 截图后端
+ * 返回的Future总是正常完成：成功时携带位图，失败时携带错误码
+ */
+public interface CaptureBackend {
+
+    /**
+     * 立即截取指定Display
+     */
+    CompletableFuture<CaptureResult> capture(int displayId);
+
+    /**
+     * 遵守截图频率限制截取指定Display，必要时等待并重试
+     */
+    CompletableFuture<CaptureResult> captureThrottled(int displayId);
+
+    /**
+     * 截取该Display前需要的最小间隔
+     */
+    long getLearnedInterval(int displayId);
+
+    /**
+     * 释放后端资源
+     */
+    void shutdown();
+}
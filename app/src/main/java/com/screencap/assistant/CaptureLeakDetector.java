@@ -0,0 +1,103 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+import android.hardware.HardwareBuffer;
+import android.util.Log;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 截图结果泄漏检测，仅在可调试版本中开启
+ * 持有位图或硬件缓冲区的 CaptureResult 在被GC回收时仍未 close，说明流水线某个分支漏了释放，
+ * 此时打印创建时的调用栈并补充释放其资源
+ */
+public final class CaptureLeakDetector {
+
+    private static final String TAG = "CaptureLeakDetector";
+
+    private static volatile boolean sEnabled = false;
+    private static final AtomicInteger sLeakCount = new AtomicInteger();
+    private static Cleaner sCleaner;
+
+    private CaptureLeakDetector() {
+    }
+
+    /**
+     * 开启或关闭泄漏检测，只影响之后创建的截图结果
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled && sCleaner == null) {
+            sCleaner = Cleaner.create();
+        }
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * 累计检测到的泄漏数
+     */
+    public static int getLeakCount() {
+        return sLeakCount.get();
+    }
+
+    /**
+     * 开始跟踪截图结果
+     * @return 跟踪记录，截图结果 close 时调用 markClosed；未开启检测时返回null
+     */
+    static Tracker track(CaptureResult result) {
+        if (!sEnabled) {
+            return null;
+        }
+        Tracker tracker = new Tracker(result.getDisplayId());
+        sCleaner.register(result, tracker);
+        return tracker;
+    }
+
+    /**
+     * 跟踪记录，不能引用 CaptureResult 本身，否则截图结果永远不会被回收
+     */
+    static final class Tracker implements Runnable {
+        private final int mDisplayId;
+        private final Throwable mAllocationSite;
+        private volatile boolean mClosed = false;
+        private volatile Bitmap mBitmap;
+        private volatile HardwareBuffer mHardwareBuffer;
+
+        private Tracker(int displayId) {
+            mDisplayId = displayId;
+            mAllocationSite = new Throwable("截图结果创建位置");
+        }
+
+        void update(Bitmap bitmap, HardwareBuffer hardwareBuffer) {
+            mBitmap = bitmap;
+            mHardwareBuffer = hardwareBuffer;
+        }
+
+        void markClosed() {
+            mClosed = true;
+            mBitmap = null;
+            mHardwareBuffer = null;
+        }
+
+        @Override
+        public void run() {
+            if (mClosed) {
+                return;
+            }
+            Log.e(TAG, "截图结果未关闭即被回收, Display ID: " + mDisplayId +
+                    ", 累计泄漏: " + sLeakCount.incrementAndGet(), mAllocationSite);
+            Bitmap bitmap = mBitmap;
+            if (bitmap != null && !bitmap.isRecycled()) {
+                bitmap.recycle();
+            }
+            HardwareBuffer hardwareBuffer = mHardwareBuffer;
+            if (hardwareBuffer != null && !hardwareBuffer.isClosed()) {
+                hardwareBuffer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.screencap.assistant;
+
+/**
+ * 截图请求
+ */
+public class CaptureRequest {
+
+    private final int type;
+    // 触发截图手势按下的时间（SystemClock.uptimeMillis 时基），未知时为0
+    private final long gestureDownTime;
+
+    public CaptureRequest(int type, long gestureDownTime) {
+        this.type = type;
+        this.gestureDownTime = gestureDownTime;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public long getGestureDownTime() {
+        return gestureDownTime;
+    }
+}
@@ -0,0 +1,204 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+import android.hardware.HardwareBuffer;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 单个Display的截图结果
+ * 记录截图位图、截图时间戳以及失败时的错误码。
+ * 截图结果持有位图及其底层的 HardwareBuffer，采用引用计数：创建时计数为1，
+ * 需要跨阶段持有的一方 retain，用完的一方 close，计数归零时立即回收位图并关闭缓冲区，
+ * 不等待GC。持有截图结果的每条分支（包括失败和提前返回）都必须 close
+ */
+public class CaptureResult implements AutoCloseable {
+
+    private static final String TAG = "CaptureResult";
+
+    // 未发生错误
+    public static final int NO_ERROR = -1;
+    // 等待截图回调超时（平台错误码均为正数，自定义错误码使用负数）
+    public static final int ERROR_TIMEOUT = -2;
+
+    private final int displayId;
+    private Bitmap bitmap;
+    private long timestamp;
+    private long requestTime;
+    private int errorCode = NO_ERROR;
+    private HardwareBuffer hardwareBuffer;
+    // 硬件缓冲区的生产方（如镜像帧Image），close 时一并关闭，缓冲区才会被复用
+    private AutoCloseable bufferOwner;
+    // 计数归零时如何释放位图，默认 recycle，取自复用池的位图放回复用池
+    private Consumer<Bitmap> bitmapReleaser;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private CaptureLeakDetector.Tracker leakTracker;
+
+    public CaptureResult(int displayId) {
+        this.displayId = displayId;
+    }
+
+    /**
+     * 创建失败的截图结果
+     */
+    public static CaptureResult failed(int displayId, int errorCode) {
+        CaptureResult result = new CaptureResult(displayId);
+        result.setErrorCode(errorCode);
+        return result;
+    }
+
+    public int getDisplayId() {
+        return displayId;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /**
+     * 设置截图位图，由截图后端调用
+     */
+    public void setBitmap(Bitmap bitmap) {
+        this.bitmap = bitmap;
+        updateLeakTracker();
+    }
+
+    /**
+     * 位图底层的硬件缓冲区，没有或已被 replaceBitmap 释放时为null
+     */
+    public synchronized HardwareBuffer getHardwareBuffer() {
+        return hardwareBuffer;
+    }
+
+    /**
+     * 设置位图底层的硬件缓冲区，close 时一并关闭
+     */
+    public void setHardwareBuffer(HardwareBuffer hardwareBuffer) {
+        this.hardwareBuffer = hardwareBuffer;
+        updateLeakTracker();
+    }
+
+    /**
+     * 设置硬件缓冲区的生产方，close 时在缓冲区之后关闭
+     */
+    public synchronized void setBufferOwner(AutoCloseable bufferOwner) {
+        this.bufferOwner = bufferOwner;
+    }
+
+    /**
+     * 用处理后的位图（回读、缩放）替换原始位图
+     * 原始位图和硬件缓冲区此后不再需要，立即释放
+     * @param releaser 计数归零时释放新位图的方式，null 表示 recycle
+     */
+    public synchronized void replaceBitmap(Bitmap derived, Consumer<Bitmap> releaser) {
+        if (derived == bitmap) {
+            return;
+        }
+        releaseResources();
+        this.bitmap = derived;
+        this.bitmapReleaser = releaser;
+        updateLeakTracker();
+    }
+
+    /**
+     * 增加引用计数，需要在其他线程或阶段继续持有时调用
+     */
+    public CaptureResult retain() {
+        if (refCount.getAndIncrement() <= 0) {
+            refCount.decrementAndGet();
+            throw new IllegalStateException("截图结果已关闭");
+        }
+        return this;
+    }
+
+    /**
+     * 减少引用计数，归零时回收位图并关闭硬件缓冲区
+     */
+    @Override
+    public void close() {
+        int count = refCount.decrementAndGet();
+        if (count > 0) {
+            return;
+        }
+        if (count < 0) {
+            refCount.incrementAndGet();
+            Log.w(TAG, "截图结果重复关闭, Display ID: " + displayId);
+            return;
+        }
+        synchronized (this) {
+            releaseResources();
+            bitmap = null;
+            if (leakTracker != null) {
+                leakTracker.markClosed();
+            }
+        }
+    }
+
+    private void releaseResources() {
+        if (bitmap != null && !bitmap.isRecycled()) {
+            if (bitmapReleaser != null) {
+                bitmapReleaser.accept(bitmap);
+            } else {
+                bitmap.recycle();
+            }
+        }
+        if (hardwareBuffer != null && !hardwareBuffer.isClosed()) {
+            hardwareBuffer.close();
+        }
+        if (bufferOwner != null) {
+            try {
+                bufferOwner.close();
+            } catch (Exception e) {
+                Log.w(TAG, "关闭缓冲区生产方失败: " + e.getMessage());
+            }
+        }
+        bitmapReleaser = null;
+        hardwareBuffer = null;
+        bufferOwner = null;
+    }
+
+    private synchronized void updateLeakTracker() {
+        if (leakTracker == null && (bitmap != null || hardwareBuffer != null)) {
+            leakTracker = CaptureLeakDetector.track(this);
+        }
+        if (leakTracker != null) {
+            leakTracker.update(bitmap, hardwareBuffer);
+        }
+    }
+
+    /**
+     * 截图时间戳（SystemClock.uptimeMillis 时基）
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * 发起截图请求的时间（SystemClock.uptimeMillis 时基）
+     */
+    public long getRequestTime() {
+        return requestTime;
+    }
+
+    public void setRequestTime(long requestTime) {
+        this.requestTime = requestTime;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(int errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public boolean isSuccess() {
+        return bitmap != null;
+    }
+}
@@ -0,0 +1,289 @@
+package com.screencap.assistant;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * 截图请求调度器
+ * 所有截图请求进入一个有界队列，按顺序调度：
+ * 1. 每个屏幕同一时间只有一个截图在进行
+ * 2. 已在排队或正在截图的相同请求会被合并
+ * 3. 编码（拼接+保存）积压时暂停发起新截图，队列满时丢弃新请求
+ * 推测截图同样占用屏幕，正式请求在其完成后才发起，并直接使用推测截图的结果。
+ * 截图阶段会取其他对象的锁（推测截图、预截图），调度器只在自身的锁内修改状态，
+ * 发起截图都在释放锁之后进行
+ */
+public class CaptureScheduler {
+
+    private static final String TAG = "CaptureScheduler";
+
+    // 队列容量
+    private static final int QUEUE_CAPACITY = 3;
+    // 允许同时积压的编码任务数，超过后暂停发起新截图
+    private static final int MAX_PENDING_ENCODES = 2;
+
+    // 各截图类型占用的屏幕
+    private static final int SCREEN_MAIN = 1;
+    private static final int SCREEN_SUB = 1 << 1;
+
+    /**
+     * 截图的两个阶段：截图阶段占用屏幕，处理阶段在工作线程上拼接和保存
+     */
+    public interface CaptureStages {
+        /**
+         * 截图阶段，完成后立即释放所占用的屏幕
+         */
+        CompletableFuture<CaptureResult[]> capture(CaptureRequest request);
+
+        /**
+         * 处理阶段，在工作线程上执行
+         * 截图结果由调度器在处理阶段结束后关闭，处理阶段不能 close 或 recycle 其位图
+         */
+        void process(CaptureRequest request, CaptureResult[] results);
+    }
+
+    private final CaptureStages mStages;
+    private final Executor mWorkExecutor;
+    private final ArrayDeque<CaptureRequest> mQueue = new ArrayDeque<>();
+    // 正在截图的屏幕
+    private int mBusyScreens = 0;
+    // 正在截图的请求类型
+    private int mInFlightTypes = 0;
+    private int mPendingEncodes = 0;
+
+    // 统计
+    private int mSubmittedCount = 0;
+    private int mCoalescedCount = 0;
+    private int mDroppedCount = 0;
+    private int mMaxQueueDepth = 0;
+
+    public CaptureScheduler(CaptureStages stages, Executor workExecutor) {
+        mStages = stages;
+        mWorkExecutor = workExecutor;
+    }
+
+    /**
+     * 提交一个截图请求
+     * @return 请求是否被接受（被合并或丢弃时返回false）
+     */
+    public boolean submit(CaptureRequest request) {
+        int type = request.getType();
+        synchronized (this) {
+            mSubmittedCount++;
+            if (isQueued(type) || (mInFlightTypes & typeBit(type)) != 0) {
+                mCoalescedCount++;
+                Log.d(TAG, "合并重复的截图请求, 类型: " + type + ", " + getStats());
+                return false;
+            }
+            if (mQueue.size() >= QUEUE_CAPACITY) {
+                mDroppedCount++;
+                Log.w(TAG, "截图队列已满，丢弃请求, 类型: " + type + ", " + getStats());
+                return false;
+            }
+            mQueue.addLast(request);
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, mQueue.size());
+            Log.d(TAG, "截图请求入队, 类型: " + type + ", " + getStats());
+        }
+        pump();
+        return true;
+    }
+
+    /**
+     * 发起推测截图
+     * 占用对应屏幕直到截图完成，但不占用请求类型，同类型的正式请求仍可入队
+     * @param captureStage 实际发起截图的截图阶段
+     * @return 屏幕被占用、有请求排队或编码积压时不发起，返回null
+     */
+    public CompletableFuture<CaptureResult[]> speculate(CaptureRequest request,
+            Function<CaptureRequest, CompletableFuture<CaptureResult[]>> captureStage) {
+        final int screens = screensForType(request.getType());
+        synchronized (this) {
+            if (!mQueue.isEmpty() || mPendingEncodes >= MAX_PENDING_ENCODES || (mBusyScreens & screens) != 0) {
+                Log.d(TAG, "屏幕忙，跳过推测截图, 类型: " + request.getType() + ", " + getStats());
+                return null;
+            }
+            mBusyScreens |= screens;
+        }
+        CompletableFuture<CaptureResult[]> future;
+        try {
+            future = captureStage.apply(request);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((results, error) -> {
+            synchronized (CaptureScheduler.this) {
+                mBusyScreens &= ~screens;
+            }
+            pump();
+        });
+        return future;
+    }
+
+    /**
+     * 是否有截图（包括推测截图）正在占用屏幕或排队等待发起
+     */
+    public synchronized boolean isCapturing() {
+        return mBusyScreens != 0 || !mQueue.isEmpty();
+    }
+
+    /**
+     * 按顺序发起队首请求，直到屏幕被占用或编码积压
+     * 在锁内取出请求并占用屏幕，释放锁后再发起截图
+     */
+    private void pump() {
+        while (true) {
+            CaptureRequest request;
+            int screens;
+            synchronized (this) {
+                if (mQueue.isEmpty()) {
+                    return;
+                }
+                if (mPendingEncodes >= MAX_PENDING_ENCODES) {
+                    Log.d(TAG, "编码积压，暂缓发起截图, " + getStats());
+                    return;
+                }
+                request = mQueue.peekFirst();
+                int type = request.getType();
+                screens = screensForType(type);
+                if ((mBusyScreens & screens) != 0) {
+                    return;
+                }
+                mQueue.pollFirst();
+                mBusyScreens |= screens;
+                mInFlightTypes |= typeBit(type);
+            }
+            start(request, screens);
+        }
+    }
+
+    private void start(final CaptureRequest request, final int screens) {
+        final int type = request.getType();
+        CompletableFuture<CaptureResult[]> captureFuture;
+        try {
+            captureFuture = mStages.capture(request);
+        } catch (Exception e) {
+            captureFuture = CompletableFuture.failedFuture(e);
+        }
+        captureFuture.whenComplete((results, error) -> {
+            synchronized (CaptureScheduler.this) {
+                mBusyScreens &= ~screens;
+                mInFlightTypes &= ~typeBit(type);
+                if (error == null) {
+                    mPendingEncodes++;
+                }
+            }
+            if (error != null) {
+                Log.e(TAG, "截图阶段失败: " + error.getMessage(), error);
+                pump();
+                return;
+            }
+            try {
+                mWorkExecutor.execute(() -> {
+                    try {
+                        mStages.process(request, results);
+                    } catch (Exception e) {
+                        Log.e(TAG, "处理阶段失败: " + e.getMessage(), e);
+                    } finally {
+                        closeAll(results);
+                        synchronized (CaptureScheduler.this) {
+                            mPendingEncodes--;
+                        }
+                        pump();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 服务已销毁，不再处理
+                closeAll(results);
+                synchronized (CaptureScheduler.this) {
+                    mPendingEncodes--;
+                }
+                return;
+            }
+            pump();
+        });
+    }
+
+    /**
+     * 处理阶段结束，释放本次截图的所有结果
+     */
+    private static void closeAll(CaptureResult[] results) {
+        if (results == null) {
+            return;
+        }
+        for (CaptureResult result : results) {
+            if (result != null) {
+                result.close();
+            }
+        }
+    }
+
+    private boolean isQueued(int type) {
+        for (CaptureRequest queued : mQueue) {
+            if (queued.getType() == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int screensForType(int type) {
+        switch (type) {
+            case Constants.FEATURE_MAIN:
+                return SCREEN_MAIN;
+            case Constants.FEATURE_SUB:
+                return SCREEN_SUB;
+            case Constants.FEATURE_BOTH:
+                return SCREEN_MAIN | SCREEN_SUB;
+            default:
+                return 0;
+        }
+    }
+
+    private static int typeBit(int type) {
+        return 1 << type;
+    }
+
+    /**
+     * 当前排队的请求数
+     */
+    public synchronized int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return mMaxQueueDepth;
+    }
+
+    public synchronized int getSubmittedCount() {
+        return mSubmittedCount;
+    }
+
+    public synchronized int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    public synchronized int getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public synchronized int getPendingEncodes() {
+        return mPendingEncodes;
+    }
+
+    /**
+     * 统计信息，用于日志输出
+     */
+    public synchronized String getStats() {
+        return "队列深度: " + mQueue.size() + "/" + QUEUE_CAPACITY +
+                ", 最大深度: " + mMaxQueueDepth +
+                ", 待编码: " + mPendingEncodes +
+                ", 已提交: " + mSubmittedCount +
+                ", 已合并: " + mCoalescedCount +
+                ", 已丢弃: " + mDroppedCount;
+    }
+}
@@ -10,14 +10,22 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ServiceInfo;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.hardware.HardwareBuffer;
+import android.media.projection.MediaProjection;
+import android.media.projection.MediaProjectionManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Display;
 import android.view.accessibility.AccessibilityEvent;
@@ -26,11 +34,14 @@ import android.widget.Toast;
 import androidx.annotation.RequiresApi;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 无障碍截图服务
@@ -39,14 +50,55 @@ public class CaptureService extends AccessibilityService {
 
     private static final String TAG = "CaptureService";
     private static final String CHANNEL_ID = "screenshot_service";
+    
+    // 套壳布局: 画布尺寸以及主副屏区域
+    private static final int FRAME_WIDTH = 2400;
+    private static final int FRAME_HEIGHT = 2900;
+    private static final int FRAME_MAIN_X = 240;
+    private static final int FRAME_MAIN_Y = 180;
+    private static final int FRAME_MAIN_WIDTH = 1920;
+    private static final int FRAME_MAIN_HEIGHT = 1080;
+    private static final int FRAME_SUB_X = 655;
+    private static final int FRAME_SUB_Y = 1538;
+    private static final int FRAME_SUB_WIDTH = 1090;
+    private static final int FRAME_SUB_HEIGHT = 950;
+    // 额外输出规格同时编码的数量上限
+    private static final int VARIANT_ENCODE_THREADS = 2;
     private boolean mIsServiceReady = false;
+    private ScreenshotCapturer mAccessibilityBackend;
+    private ProjectionCaptureBackend mProjectionBackend;
+    private CaptureScheduler mScheduler;
+    private PreRollBuffer mPreRollBuffer;
+    private BitmapPool mBitmapPool;
+    private CaptureSpeculator mSpeculator;
+    // GPU拼接引擎，硬件渲染不可用时回退到CPU拼接
+    private final GpuCompositor mGpuCompositor = new GpuCompositor();
+    private final FrameCompositor mFrameCompositor = new FrameCompositor(FRAME_WIDTH, FRAME_HEIGHT,
+            new Rect(FRAME_MAIN_X, FRAME_MAIN_Y, FRAME_MAIN_X + FRAME_MAIN_WIDTH, FRAME_MAIN_Y + FRAME_MAIN_HEIGHT),
+            new Rect(FRAME_SUB_X, FRAME_SUB_Y, FRAME_SUB_X + FRAME_SUB_WIDTH, FRAME_SUB_Y + FRAME_SUB_HEIGHT));
+    private final FrameJpegCache mFrameJpegCache = new FrameJpegCache(FRAME_WIDTH, FRAME_HEIGHT,
+            new Rect(FRAME_MAIN_X, FRAME_MAIN_Y, FRAME_MAIN_X + FRAME_MAIN_WIDTH, FRAME_MAIN_Y + FRAME_MAIN_HEIGHT),
+            new Rect(FRAME_SUB_X, FRAME_SUB_Y, FRAME_SUB_X + FRAME_SUB_WIDTH, FRAME_SUB_Y + FRAME_SUB_HEIGHT));
+    // 截图工作线程，执行拼接和保存
+    private final ExecutorService mWorkExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "capture-worker"));
+    // 流水线预处理线程，在截图频率限制的等待期间处理已截到的屏幕
+    private final ExecutorService mPrepareExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "capture-prepare"));
+    // 多核PNG编码线程池，每个核心一个线程
+    private final ExecutorService mPngExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> new Thread(runnable, "png-encode"));
+    // 额外输出规格的编码线程池，线程数有上限，规格再多也不会同时占用过多内存和核心
+    private final ExecutorService mVariantExecutor = Executors.newFixedThreadPool(
+            VARIANT_ENCODE_THREADS, runnable -> new Thread(runnable, "variant-encode"));
+    private VariantEncoder mVariantEncoder;
     
-    private final BroadcastReceiver mCaptureReceiver = new BroadcastReceiver() {
+    // 截图命令处理器，手势服务在进程内直接调用，跨进程的广播也转发到这里
+    private final CaptureServiceRegistry.CommandHandler mCommandHandler = new CaptureServiceRegistry.CommandHandler() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            Log.d(TAG, "========== 收到广播 ==========");
+        public void handleCommand(Intent intent) {
             String action = intent.getAction();
-            Log.d(TAG, "广播 Action = " + action);
+            Log.d(TAG, "收到命令 Action = " + action);
             if (action == null) {
                 Log.e(TAG, "Action 为 null！");
                 return;
@@ -54,21 +106,45 @@ public class CaptureService extends AccessibilityService {
             
             if (Constants.ACTION_CAPTURE_MAIN.equals(action)) {
                 Log.d(TAG, "触发主屏截图");
-                captureScreenshot(Constants.FEATURE_MAIN);
+                captureScreenshot(Constants.FEATURE_MAIN, getGestureDownTime(intent));
             } else if (Constants.ACTION_CAPTURE_SUB.equals(action)) {
                 Log.d(TAG, "触发副屏截图");
-                captureScreenshot(Constants.FEATURE_SUB);
+                captureScreenshot(Constants.FEATURE_SUB, getGestureDownTime(intent));
             } else if (Constants.ACTION_CAPTURE_BOTH.equals(action)) {
                 Log.d(TAG, "触发双屏截图");
-                captureScreenshot(Constants.FEATURE_BOTH);
+                captureScreenshot(Constants.FEATURE_BOTH, getGestureDownTime(intent));
+            } else if (Constants.ACTION_SPECULATIVE_CAPTURE.equals(action)) {
+                speculateScreenshot(intent.getIntExtra(Constants.EXTRA_SCREENSHOT_TYPE, Constants.FEATURE_NONE),
+                        getGestureDownTime(intent));
+            } else if (Constants.ACTION_SPECULATIVE_CANCEL.equals(action)) {
+                mSpeculator.cancel();
             } else if (Constants.ACTION_GO_HOME.equals(action)) {
                 Log.d(TAG, "触发副屏回到桌面");
                 goToHomeScreenOnSecondaryDisplay();
+            } else if (Constants.ACTION_PROJECTION_GRANTED.equals(action)) {
+                Log.d(TAG, "屏幕录制已授权，启动MediaProjection截图后端");
+                startProjectionBackend(intent);
+            } else if (Constants.ACTION_PROJECTION_STOP.equals(action)) {
+                Log.d(TAG, "停止MediaProjection截图后端");
+                mProjectionBackend.stop();
+                // 不再录屏，前台服务类型恢复为 specialUse
+                startForeground(1, createNotification(), ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
+            } else if (Constants.ACTION_PREROLL_CHANGED.equals(action)) {
+                Log.d(TAG, "预截图设置已更改");
+                updatePreRoll();
             } else {
                 Log.e(TAG, "未知的 Action: " + action);
             }
         }
     };
+    
+    private final BroadcastReceiver mCaptureReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.d(TAG, "========== 收到广播 ==========");
+            mCommandHandler.handleCommand(intent);
+        }
+    };
 
     @Override
     public void onCreate() {
@@ -76,14 +152,43 @@ public class CaptureService extends AccessibilityService {
         Log.d(TAG, "========== CaptureService onCreate ==========");
         Log.d(TAG, "Android SDK 版本: " + Build.VERSION.SDK_INT);
         createNotificationChannel();
-        startForeground(1, createNotification());
+        // 只以 specialUse 类型启动，mediaProjection 类型需在用户授权后才能使用，见 startProjectionBackend
+        startForeground(1, createNotification(), ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
+        // 可调试版本中检测未关闭的截图结果
+        CaptureLeakDetector.setEnabled(
+                (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
+        mAccessibilityBackend = new ScreenshotCapturer(this);
+        mProjectionBackend = new ProjectionCaptureBackend(this, mAccessibilityBackend);
+        mScheduler = new CaptureScheduler(new CaptureScheduler.CaptureStages() {
+            @Override
+            public CompletableFuture<CaptureResult[]> capture(CaptureRequest request) {
+                // 手势越过阈值时已提前发起的截图直接使用
+                CompletableFuture<CaptureResult[]> speculative = mSpeculator.commit(request.getType());
+                return speculative != null ? speculative : captureStage(request);
+            }
+
+            @Override
+            public void process(CaptureRequest request, CaptureResult[] results) {
+                processStage(request.getType(), results);
+            }
+        }, mWorkExecutor);
+        mPreRollBuffer = new PreRollBuffer(this, this::getCaptureBackend, mScheduler::isCapturing);
+        mBitmapPool = new BitmapPool(PreferenceUtil.getBitmapPoolLimitMb(this) * 1024L * 1024L);
+        mVariantEncoder = new VariantEncoder(this, mVariantExecutor, mBitmapPool);
+        // 推测截图经调度器发起，与正式截图共用屏幕占用和编码积压的判断
+        mSpeculator = new CaptureSpeculator(request -> mScheduler.speculate(request, this::captureStage));
         
         // 注册广播接收器
         android.content.IntentFilter filter = new android.content.IntentFilter();
         filter.addAction(Constants.ACTION_CAPTURE_MAIN);
         filter.addAction(Constants.ACTION_CAPTURE_SUB);
         filter.addAction(Constants.ACTION_CAPTURE_BOTH);
+        filter.addAction(Constants.ACTION_SPECULATIVE_CAPTURE);
+        filter.addAction(Constants.ACTION_SPECULATIVE_CANCEL);
         filter.addAction(Constants.ACTION_GO_HOME);
+        filter.addAction(Constants.ACTION_PROJECTION_GRANTED);
+        filter.addAction(Constants.ACTION_PROJECTION_STOP);
+        filter.addAction(Constants.ACTION_PREROLL_CHANGED);
         
         // Android 14+ (API 34+) 需要指定 RECEIVER_NOT_EXPORTED 标志
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
@@ -100,11 +205,37 @@ public class CaptureService extends AccessibilityService {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        CaptureServiceRegistry.unregister(mCommandHandler);
         try {
             unregisterReceiver(mCaptureReceiver);
         } catch (Exception e) {
             e.printStackTrace();
         }
+        mSpeculator.cancel();
+        mPreRollBuffer.shutdown();
+        mProjectionBackend.shutdown();
+        mAccessibilityBackend.shutdown();
+        // 在工作线程上排在已提交的拼接任务之后释放GPU资源
+        mWorkExecutor.execute(mGpuCompositor::destroy);
+        mWorkExecutor.execute(mBitmapPool::clear);
+        mWorkExecutor.shutdown();
+        mPrepareExecutor.shutdown();
+        mPngExecutor.shutdown();
+        mVariantExecutor.shutdown();
+        if (CaptureLeakDetector.isEnabled()) {
+            Log.i(TAG, "截图结果泄漏检测: 累计泄漏 " + CaptureLeakDetector.getLeakCount());
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        FrameAssetCache.getInstance(this).onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            mFrameCompositor.release();
+            mFrameJpegCache.clear();
+        }
+        mBitmapPool.onTrimMemory(level);
     }
 
     @Override
@@ -117,11 +248,28 @@ public class CaptureService extends AccessibilityService {
         // 服务中断处理
     }
 
+    @Override
+    public boolean onUnbind(Intent intent) {
+        // 用户关闭本服务时先解绑，之后的命令改走广播
+        CaptureServiceRegistry.unregister(mCommandHandler);
+        mIsServiceReady = false;
+        return super.onUnbind(intent);
+    }
+
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
         mIsServiceReady = true;
         Log.i(TAG, "无障碍服务已连接并准备就绪");
+        CaptureServiceRegistry.register(mCommandHandler);
+        updatePreRoll();
+        if (PreferenceUtil.getEnableFrameScreenshot(this)) {
+            FrameAssetCache.getInstance(this).prefetch(PreferenceUtil.getFrameColorIndex(this));
+        }
+        // 补调度上次未转换完的暂存截图
+        if (SpillStore.count(this) > 0) {
+            SpillConvertJobService.schedule(this);
+        }
         
         // 发送广播通知应用无障碍服务已连接
         Intent broadcastIntent = new Intent("com.dualscreen.ACCESSIBILITY_SERVICE_CONNECTED");
@@ -129,6 +277,64 @@ public class CaptureService extends AccessibilityService {
         Log.d(TAG, "Sent accessibility service connected broadcast");
     }
 
+    /**
+     * 获取当前使用的截图后端
+     * 选择了MediaProjection但镜像未就绪（未授权或已停止）时使用无障碍截图
+     */
+    private CaptureBackend getCaptureBackend() {
+        if (PreferenceUtil.getCaptureBackend(this) == Constants.CAPTURE_BACKEND_PROJECTION
+                && mProjectionBackend.isRunning()) {
+            return mProjectionBackend;
+        }
+        return mAccessibilityBackend;
+    }
+
+    /**
+     * 按设置开启或关闭预截图
+     */
+    private void updatePreRoll() {
+        if (mIsServiceReady && PreferenceUtil.getPreRollEnabled(this)) {
+            mPreRollBuffer.start(PreferenceUtil.getPreRollMemoryLimitMb(this));
+        } else {
+            mPreRollBuffer.stop();
+        }
+    }
+
+    /**
+     * 触发截图的手势按下时间，未携带时返回0
+     */
+    private static long getGestureDownTime(Intent intent) {
+        return intent.getLongExtra(Constants.EXTRA_GESTURE_DOWN_TIME, 0);
+    }
+
+    /**
+     * 使用用户授权结果启动MediaProjection截图后端
+     */
+    private void startProjectionBackend(Intent intent) {
+        int resultCode = intent.getIntExtra(Constants.EXTRA_PROJECTION_RESULT_CODE, 0);
+        Intent data = intent.getParcelableExtra(Constants.EXTRA_PROJECTION_DATA, Intent.class);
+        if (data == null) {
+            Log.e(TAG, "缺少屏幕录制授权数据");
+            return;
+        }
+        try {
+            // Android 14+ 需要先以 mediaProjection 类型运行前台服务才能获取MediaProjection
+            startForeground(1, createNotification(),
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE | ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PROJECTION);
+            MediaProjectionManager projectionManager = getSystemService(MediaProjectionManager.class);
+            MediaProjection projection = projectionManager.getMediaProjection(resultCode, data);
+            if (projection == null) {
+                Log.e(TAG, "获取MediaProjection失败");
+                return;
+            }
+            mProjectionBackend.start(projection);
+            showNotification("已切换到屏幕录制截图", null);
+        } catch (Exception e) {
+            Log.e(TAG, "启动MediaProjection截图失败: " + e.getMessage(), e);
+            showNotification("启动屏幕录制截图失败，继续使用无障碍截图", null);
+        }
+    }
+
     /**
      * 执行副屏回到桌面操作
      */
@@ -161,8 +367,9 @@ public class CaptureService extends AccessibilityService {
 
     /**
      * 执行截图操作
+     * 请求交给截图调度器排队，由调度器控制并发、合并重复请求和编码积压
      */
-    private void captureScreenshot(int type) {
+    private void captureScreenshot(int type, long gestureDownTime) {
         Log.d(TAG, "========== 开始执行截图 ==========");
         Log.d(TAG, "截图类型: " + type);
         Log.d(TAG, "服务就绪状态: " + mIsServiceReady);
@@ -179,141 +386,388 @@ public class CaptureService extends AccessibilityService {
             return;
         }
         
-        Log.d(TAG, "创建截图线程...");
-        new Thread(() -> {
-            try {
-                switch (type) {
-                    case Constants.FEATURE_MAIN:
-                        Log.d(TAG, "执行主屏截图");
-                        captureMainScreen();
-                        break;
-                    case Constants.FEATURE_SUB:
-                        Log.d(TAG, "执行副屏截图");
-                        captureSubScreen();
-                        break;
-                    case Constants.FEATURE_BOTH:
-                        Log.d(TAG, "执行双屏截图");
-                        captureBothScreens();
-                        break;
-                    default:
-                        Log.e(TAG, "未知的截图类型: " + type);
+        mScheduler.submit(new CaptureRequest(type, gestureDownTime));
+    }
+
+    /**
+     * 手势越过触发阈值时提前发起截图，手指抬起后由截图请求提交
+     * 开启预截图时已有按下时刻的画面，不再推测截图
+     */
+    private void speculateScreenshot(int type, long gestureDownTime) {
+        if (!mIsServiceReady || Build.VERSION.SDK_INT < Build.VERSION_CODES.R || mPreRollBuffer.isRunning()) {
+            return;
+        }
+        if (type != Constants.FEATURE_MAIN && type != Constants.FEATURE_SUB && type != Constants.FEATURE_BOTH) {
+            return;
+        }
+        mSpeculator.speculate(new CaptureRequest(type, gestureDownTime));
+    }
+
+    /**
+     * 截图阶段：发起截图，返回各屏幕的截图结果
+     * 截图流程基于 ScreenshotCapturer 的Future组合，等待截图期间不阻塞任何线程
+     */
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private CompletableFuture<CaptureResult[]> captureStage(CaptureRequest request) {
+        long downTime = request.getGestureDownTime();
+        switch (request.getType()) {
+            case Constants.FEATURE_MAIN:
+                Log.d(TAG, "执行主屏截图");
+                return captureMainScreen(downTime);
+            case Constants.FEATURE_SUB:
+                Log.d(TAG, "执行副屏截图");
+                return captureSubScreen(downTime);
+            case Constants.FEATURE_BOTH:
+                Log.d(TAG, "执行双屏截图");
+                return captureBothScreens(downTime);
+            default:
+                Log.e(TAG, "未知的截图类型: " + request.getType());
+                return CompletableFuture.completedFuture(new CaptureResult[0]);
+        }
+    }
+
+    /**
+     * 处理阶段：在截图工作线程上拼接并保存截图
+     */
+    private void processStage(int type, CaptureResult[] results) {
+        switch (type) {
+            case Constants.FEATURE_MAIN:
+                saveSingleScreen(results[0], "main", "主屏已截取", "主屏截取失败");
+                break;
+            case Constants.FEATURE_SUB:
+                if (results.length == 0) {
+                    showNotification("未检测到副屏", null);
+                    return;
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "截图失败: " + e.getMessage(), e);
-                showNotification("截图失败: " + e.getMessage(), null);
-            }
-        }).start();
+                saveSingleScreen(results[0], "sub", "副屏已截取", "副屏截取失败");
+                break;
+            case Constants.FEATURE_BOTH:
+                if (results.length == 1) {
+                    saveSingleScreen(results[0], "main", "未检测到副屏，仅保存主屏截图", "截取主屏失败");
+                    return;
+                }
+                combineAndSave(results[0], results[1]);
+                break;
+        }
+    }
+
+    /**
+     * 保存单屏截图并提示
+     */
+    private void saveSingleScreen(CaptureResult result, String suffix, String successMessage, String failureMessage) {
+        if (result.isSuccess()) {
+            Uri savedUri = saveBitmap(result.getBitmap(), suffix, Constants.CAPTURE_TYPE_SINGLE);
+            showNotification(successMessage, savedUri);
+        } else {
+            showNotification(failureMessage, null);
+        }
+    }
+
+    /**
+     * 从预截图缓冲区取出最接近手势按下时刻的一帧
+     * @return 未开启预截图、手势时间未知或没有可用帧时返回null
+     */
+    private CaptureResult takePreRollFrame(int displayId, long downTime) {
+        if (downTime <= 0 || !mPreRollBuffer.isRunning()) {
+            return null;
+        }
+        return mPreRollBuffer.take(displayId, downTime);
+    }
+
+    /**
+     * 截取指定屏幕，优先使用预截图帧
+     */
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private CompletableFuture<CaptureResult> captureAt(int displayId, long downTime) {
+        CaptureResult frame = takePreRollFrame(displayId, downTime);
+        if (frame != null) {
+            return CompletableFuture.completedFuture(frame);
+        }
+        return getCaptureBackend().captureThrottled(displayId);
     }
 
     /**
      * 截取主屏
+     * @param downTime 手势按下时间，开启预截图时选取最接近该时刻的帧
      */
     @RequiresApi(api = Build.VERSION_CODES.R)
-    private void captureMainScreen() throws Exception {
+    private CompletableFuture<CaptureResult[]> captureMainScreen(long downTime) {
         Log.i(TAG, "开始截取主屏");
-        Bitmap mainScreenBitmap = takeScreenshotOfDisplay(Display.DEFAULT_DISPLAY);
-        if (mainScreenBitmap != null) {
-            File savedFile = saveBitmap(mainScreenBitmap, "main");
-            showNotification("主屏已截取", savedFile);
-        } else {
-            showNotification("主屏截取失败", null);
-        }
+        return captureAt(Display.DEFAULT_DISPLAY, downTime)
+                .thenApply(result -> new CaptureResult[]{result});
     }
 
     /**
      * 截取副屏
+     * @param downTime 手势按下时间，开启预截图时选取最接近该时刻的帧
+     * @return 未检测到副屏时返回空数组
      */
     @RequiresApi(api = Build.VERSION_CODES.R)
-    private void captureSubScreen() throws Exception {
+    private CompletableFuture<CaptureResult[]> captureSubScreen(long downTime) {
         Log.i(TAG, "开始截取副屏");
         int secondaryDisplayId = DisplayUtil.getSecondaryDisplayId(this);
         if (secondaryDisplayId == -1) {
-            showNotification("未检测到副屏", null);
-            return;
+            return CompletableFuture.completedFuture(new CaptureResult[0]);
         }
         
         Log.i(TAG, "副屏Display ID: " + secondaryDisplayId);
-        Bitmap subScreenBitmap = takeScreenshotOfDisplay(secondaryDisplayId);
-        if (subScreenBitmap != null) {
-            File savedFile = saveBitmap(subScreenBitmap, "sub");
-            showNotification("副屏已截取", savedFile);
-        } else {
-            showNotification("副屏截取失败", null);
-        }
+        return captureAt(secondaryDisplayId, downTime)
+                .thenApply(result -> new CaptureResult[]{result});
     }
 
     /**
      * 同时截取两个屏幕
-     * 由于截图API连续调用有时间限制,需要在两次截图之间添加延迟
+     * 优先同时发起两个Display的截图请求，减少两半画面之间的时间差；
+     * 若平台拒绝并发请求（截图间隔过短），再按学习到的截图间隔依次补截。
+     * 开启预截图时优先使用两屏最接近手势按下时刻的帧，缺少的一屏再实时截取
+     * @return [主屏结果, 副屏结果]，未检测到副屏时只有主屏结果
      */
     @RequiresApi(api = Build.VERSION_CODES.R)
-    private void captureBothScreens() throws Exception {
+    private CompletableFuture<CaptureResult[]> captureBothScreens(long downTime) {
         Log.i(TAG, "开始同时截取双屏");
         
-        // 第一步: 截取主屏
-        Log.i(TAG, "步骤1: 截取主屏 (Display ID: 0)");
-        Bitmap mainScreenBitmap = takeScreenshotOfDisplay(Display.DEFAULT_DISPLAY);
-        if (mainScreenBitmap == null) {
-            showNotification("截取主屏失败", null);
-            return;
-        }
-        Log.i(TAG, "主屏截取成功: " + mainScreenBitmap.getWidth() + "x" + mainScreenBitmap.getHeight());
-
-        // 第二步: 等待配置的间隔时间,避免API调用过快
-        int delayMs = PreferenceUtil.getScreenshotDelay(this);
-        Log.i(TAG, "步骤2: 等待" + delayMs + "ms后截取副屏");
-        try {
-            Thread.sleep(delayMs);
-        } catch (InterruptedException e) {
-            Log.e(TAG, "延迟被中断: " + e.getMessage());
-        }
-        
-        // 第三步: 获取副屏ID
         int secondaryDisplayId = DisplayUtil.getSecondaryDisplayId(this);
         Log.i(TAG, "副屏Display ID: " + secondaryDisplayId);
         
         if (secondaryDisplayId == -1) {
-            File savedFile = saveBitmap(mainScreenBitmap, "main");
-            showNotification("未检测到副屏，仅保存主屏截图", savedFile);
-            return;
+            return captureMainScreen(downTime);
+        }
+        
+        CaptureResult mainFrame = takePreRollFrame(Display.DEFAULT_DISPLAY, downTime);
+        CaptureResult subFrame = takePreRollFrame(secondaryDisplayId, downTime);
+        if (mainFrame != null || subFrame != null) {
+            CompletableFuture<CaptureResult> mainFuture = mainFrame != null
+                    ? CompletableFuture.completedFuture(mainFrame)
+                    : getCaptureBackend().captureThrottled(Display.DEFAULT_DISPLAY);
+            CompletableFuture<CaptureResult> subFuture = subFrame != null
+                    ? CompletableFuture.completedFuture(subFrame)
+                    : getCaptureBackend().captureThrottled(secondaryDisplayId);
+            return mainFuture.thenCombine(subFuture, (mainResult, subResult) -> new CaptureResult[]{mainResult, subResult});
+        }
+        
+        if (PreferenceUtil.getConcurrentCaptureEnabled(this)) {
+            return captureBothConcurrently(secondaryDisplayId);
+        }
+        return captureBothSequentially(secondaryDisplayId);
+    }
+
+    /**
+     * 并发模式: 同时发起主屏和副屏截图，被平台拒绝的一侧按学习到的截图间隔补截
+     * @return [主屏结果, 副屏结果]
+     */
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private CompletableFuture<CaptureResult[]> captureBothConcurrently(int secondaryDisplayId) {
+        Log.i(TAG, "并发模式: 同时截取主屏和副屏");
+        CompletableFuture<CaptureResult> mainFuture = getCaptureBackend().capture(Display.DEFAULT_DISPLAY);
+        CompletableFuture<CaptureResult> subFuture = getCaptureBackend().capture(secondaryDisplayId);
+        return mainFuture.thenCombine(subFuture, (mainResult, subResult) -> new CaptureResult[]{mainResult, subResult})
+                .thenCompose(results -> {
+                    if (results[0].isSuccess() && results[1].isSuccess()) {
+                        return CompletableFuture.completedFuture(results);
+                    }
+                    Log.w(TAG, "并发截图未全部成功, 主屏错误码: " + results[0].getErrorCode() +
+                            ", 副屏错误码: " + results[1].getErrorCode() + ", 回退到间隔截图");
+                    // 补截主屏期间预处理已截到的副屏，补截副屏期间预处理主屏
+                    CompletableFuture<CaptureResult> mainRetry =
+                            prepareWhileWaiting(results[1], false, retryIfThrottled(results[0]));
+                    return mainRetry.thenCompose(mainResult -> {
+                        if (!mainResult.isSuccess()) {
+                            return CompletableFuture.completedFuture(new CaptureResult[]{mainResult, results[1]});
+                        }
+                        return prepareWhileWaiting(mainResult, true, retryIfThrottled(results[1]))
+                                .thenApply(subResult -> new CaptureResult[]{mainResult, subResult});
+                    });
+                });
+    }
+
+    /**
+     * 间隔模式: 先截主屏，等待学习到的最小截图间隔后再截副屏
+     * @return [主屏结果, 副屏结果]
+     */
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private CompletableFuture<CaptureResult[]> captureBothSequentially(int secondaryDisplayId) {
+        Log.i(TAG, "间隔模式: 先截取主屏，等待后截取副屏");
+        return getCaptureBackend().captureThrottled(Display.DEFAULT_DISPLAY).thenCompose(mainResult -> {
+            if (!mainResult.isSuccess()) {
+                return CompletableFuture.completedFuture(new CaptureResult[]{mainResult, null});
+            }
+            Log.i(TAG, "等待" + getCaptureBackend().getLearnedInterval(secondaryDisplayId) + "ms后截取副屏");
+            return prepareWhileWaiting(mainResult, true, getCaptureBackend().captureThrottled(secondaryDisplayId))
+                    .thenApply(subResult -> new CaptureResult[]{mainResult, subResult});
+        });
+    }
+
+    /**
+     * 流水线: 在等待另一屏截图（截图频率限制）期间，预处理已截到的屏幕
+     * 预处理包括 HARDWARE→ARGB_8888 回读以及套壳布局所需的缩放，
+     * 完成后记录等待窗口中被有效利用的时间
+     * @param ready 已截到的屏幕
+     * @param isMain ready 是否为主屏
+     * @param pending 正在等待的另一屏截图
+     * @return 另一屏的截图结果，在预处理也完成后才完成
+     */
+    private CompletableFuture<CaptureResult> prepareWhileWaiting(CaptureResult ready, boolean isMain,
+                                                                 CompletableFuture<CaptureResult> pending) {
+        if (!ready.isSuccess() || pending.isDone() || !PreferenceUtil.getPipelinedCaptureEnabled(this)) {
+            return pending;
+        }
+        // GPU拼接直接使用HARDWARE位图，提前回读反而多一次拷贝
+        if (mGpuCompositor.isAvailable()) {
+            return pending;
+        }
+        final long waitStart = SystemClock.uptimeMillis();
+        CompletableFuture<Long> waitDone = pending.thenApply(result -> SystemClock.uptimeMillis());
+        // 预处理线程持有一份引用，确保处理期间截图结果不会被其他分支关闭
+        ready.retain();
+        CompletableFuture<Long> prepareDone = CompletableFuture.supplyAsync(() -> {
+            try {
+                prepareScreen(ready, isMain);
+            } finally {
+                ready.close();
+            }
+            return SystemClock.uptimeMillis();
+        }, mPrepareExecutor);
+        return waitDone.thenCombine(prepareDone, (waitEnd, prepareEnd) -> {
+            long waitMs = waitEnd - waitStart;
+            long busyMs = prepareEnd - waitStart;
+            long usedMs = Math.min(waitMs, busyMs);
+            Log.i(TAG, "流水线: 等待窗口 " + waitMs + "ms, 预处理" + (isMain ? "主屏" : "副屏") + "耗时 " + busyMs +
+                    "ms, 窗口利用率 " + (waitMs > 0 ? usedMs * 100 / waitMs : 100) + "%" +
+                    (busyMs > waitMs ? ", 超出窗口 " + (busyMs - waitMs) + "ms" : ""));
+            return pending.join();
+        });
+    }
+
+    /**
+     * 预处理单屏截图: 回读为ARGB_8888，套壳布局下缩放到对应屏幕区域的尺寸
+     * 处理后的位图替换结果中的原始位图，原始位图和硬件缓冲区随即释放，拼接时不再重复处理。
+     * 回读结果为可变位图，缩放目标取自复用池，截图结果关闭时放回复用池
+     */
+    private void prepareScreen(CaptureResult result, boolean isMain) {
+        Bitmap source = result.getBitmap();
+        Bitmap prepared = source;
+        if (source.getConfig() == Bitmap.Config.HARDWARE) {
+            prepared = source.copy(Bitmap.Config.ARGB_8888, true);
+        }
+        if (PreferenceUtil.getEnableFrameScreenshot(this)) {
+            int width = isMain ? FRAME_MAIN_WIDTH : FRAME_SUB_WIDTH;
+            int height = isMain ? FRAME_MAIN_HEIGHT : FRAME_SUB_HEIGHT;
+            if (prepared.getWidth() != width || prepared.getHeight() != height) {
+                Bitmap scaled = fitToFrameRect(prepared, source, width, height, null);
+                if (scaled == prepared) {
+                    // 放大或最近邻过滤时，与 createScaledBitmap 相同的矩阵缩放，目标位图复用
+                    scaled = mBitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+                    drawIntoRect(new Canvas(scaled), prepared, 0, 0, width, height, new Matrix(), createFramePaint());
+                    if (prepared != source) {
+                        mBitmapPool.put(prepared);
+                    }
+                }
+                prepared = scaled;
+            }
+        }
+        if (prepared != source) {
+            result.replaceBitmap(prepared, mBitmapPool::put);
+        }
+    }
+
+    /**
+     * 截图被平台以"间隔过短"拒绝时，按学习到的截图间隔重新截取该Display
+     * 成功的结果或其他错误原样返回
+     */
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private CompletableFuture<CaptureResult> retryIfThrottled(CaptureResult result) {
+        if (result.isSuccess() || result.getErrorCode() != ERROR_TAKE_SCREENSHOT_INTERVAL_TIME_SHORT) {
+            return CompletableFuture.completedFuture(result);
         }
+        Log.i(TAG, "Display " + result.getDisplayId() + " 截图间隔过短，按学习到的间隔重试");
+        return getCaptureBackend().captureThrottled(result.getDisplayId());
+    }
 
-        // 第四步: 截取副屏
-        Log.i(TAG, "步骤3: 截取副屏 (Display ID: " + secondaryDisplayId + ")");
-        Bitmap subScreenBitmap = takeScreenshotOfDisplay(secondaryDisplayId);
-        if (subScreenBitmap == null) {
+    /**
+     * 拼接并保存双屏截图，任一侧失败时按原有规则降级
+     */
+    private void combineAndSave(CaptureResult mainResult, CaptureResult subResult) {
+        if (!mainResult.isSuccess()) {
+            showNotification("截取主屏失败", null);
+            return;
+        }
+        Bitmap mainScreenBitmap = mainResult.getBitmap();
+        Log.i(TAG, "主屏截取成功: " + mainScreenBitmap.getWidth() + "x" + mainScreenBitmap.getHeight());
+        
+        if (subResult == null || !subResult.isSuccess()) {
             Log.e(TAG, "副屏截图失败,仅保存主屏");
-            File savedFile = saveBitmap(mainScreenBitmap, "main");
-            showNotification("副屏截取失败，仅保存主屏截图", savedFile);
+            Uri savedUri = saveBitmap(mainScreenBitmap, "main", Constants.CAPTURE_TYPE_SINGLE);
+            showNotification("副屏截取失败，仅保存主屏截图", savedUri);
             return;
         }
+        Bitmap subScreenBitmap = subResult.getBitmap();
         Log.i(TAG, "副屏截取成功: " + subScreenBitmap.getWidth() + "x" + subScreenBitmap.getHeight());
+        
+        long skewMs = Math.abs(subResult.getTimestamp() - mainResult.getTimestamp());
+        Log.i(TAG, "主屏时间戳: " + mainResult.getTimestamp() + ", 副屏时间戳: " + subResult.getTimestamp() +
+                ", 双屏时间差: " + skewMs + "ms");
 
-        // 第五步: 拼接两张截图
-        Log.i(TAG, "步骤4: 开始拼接双屏截图");
+        // 开启分段编码时，套壳截图逐段拼接并直接写入文件，分段编码只支持JPEG格式
+        // 额外输出规格需要从整幅拼接结果缩放，有启用的规格时不走分段编码
+        if (PreferenceUtil.getEnableFrameScreenshot(this) && PreferenceUtil.getStripedEncodingEnabled(this)
+                && ImageCodec.resolve(PreferenceUtil.getCaptureCodec(this, Constants.CAPTURE_TYPE_FRAMED))
+                == ImageCodec.JPEG
+                && !VariantEncoder.hasEnabled(PreferenceUtil.getOutputVariants(this))) {
+            Uri savedUri = saveFramedStriped(mainScreenBitmap, subScreenBitmap);
+            if (savedUri != null) {
+                showNotification("双屏已截取", savedUri);
+                return;
+            }
+            Log.w(TAG, "分段编码失败，回退到整幅拼接");
+        }
+
+        // 拼接两张截图，优先在GPU上拼接，不可用时回退到CPU
+        Log.i(TAG, "开始拼接双屏截图");
         Bitmap combinedBitmap = null;
         boolean useFrame = PreferenceUtil.getEnableFrameScreenshot(this);
+        // 拼接和编码使用同一个机身颜色，编码缓存按该颜色准备
+        int frameColorIndex = PreferenceUtil.getFrameColorIndex(this);
         
-        if (useFrame) {
-            combinedBitmap = combineBitmapsWithFrame(mainScreenBitmap, subScreenBitmap);
-        } else {
-            combinedBitmap = combineBitmapsVertically(mainScreenBitmap, subScreenBitmap);
+        // 套壳截图的两张截图都已是软件位图时（预截图、预缩放），只重绘屏幕区域比整张画布上GPU再回读更省
+        boolean frameOnCpu = useFrame && mainScreenBitmap.getConfig() != Bitmap.Config.HARDWARE
+                && subScreenBitmap.getConfig() != Bitmap.Config.HARDWARE;
+        
+        if (!frameOnCpu && mGpuCompositor.isAvailable()) {
+            long startTime = SystemClock.uptimeMillis();
+            if (useFrame) {
+                combinedBitmap = composeWithFrameOnGpu(mainScreenBitmap, subScreenBitmap, frameColorIndex);
+            } else {
+                combinedBitmap = composeVerticallyOnGpu(mainScreenBitmap, subScreenBitmap);
+            }
+            if (combinedBitmap != null) {
+                Log.i(TAG, "GPU拼接完成, 耗时 " + (SystemClock.uptimeMillis() - startTime) + "ms");
+            }
+        }
+        if (combinedBitmap == null) {
+            if (useFrame) {
+                combinedBitmap = combineBitmapsWithFrame(mainScreenBitmap, subScreenBitmap, frameColorIndex);
+            } else {
+                combinedBitmap = combineBitmapsVertically(mainScreenBitmap, subScreenBitmap);
+            }
         }
         
         if (combinedBitmap != null) {
-            File savedFile;
+            Uri savedUri;
             if (useFrame) {
                 // 套壳截图使用带质量参数的保存方法
-                savedFile = saveBitmapWithQuality(combinedBitmap, "both");
+                savedUri = saveBitmapWithQuality(combinedBitmap, "both", frameColorIndex);
             } else {
-                // 普通双屏截图使用默认PNG格式
-                savedFile = saveBitmap(combinedBitmap, "both");
-            }
-            showNotification("双屏已截取", savedFile);
-            Log.i(TAG, "双屏截图完成: " + combinedBitmap.getWidth() + "x" + combinedBitmap.getHeight());
-            // 释放临时位图
-            mainScreenBitmap.recycle();
-            subScreenBitmap.recycle();
+                // 普通双屏截图使用双屏截图的保存格式
+                savedUri = saveBitmap(combinedBitmap, "both", Constants.CAPTURE_TYPE_BOTH);
+            }
+            showNotification("双屏已截取", savedUri);
+            Log.i(TAG, "双屏截图完成: " + combinedBitmap.getWidth() + "x" + combinedBitmap.getHeight() +
+                    ", 双屏时间差: " + skewMs + "ms");
+            // 拼接结果放回复用池，CPU套壳拼接的结果为常驻底图，不释放
+            if (!mFrameCompositor.isTarget(combinedBitmap)) {
+                mBitmapPool.put(combinedBitmap);
+            }
+            Log.i(TAG, mBitmapPool.getStats());
         } else {
             Log.e(TAG, "位图拼接失败");
             showNotification("拼接失败", null);
@@ -321,52 +775,45 @@ public class CaptureService extends AccessibilityService {
     }
 
     /**
-     * 使用AccessibilityService的takeScreenshot API截取指定Display
+     * 在GPU上垂直合并两个位图 - 主屏在上，副屏在下，左右居中对齐
+     * HARDWARE位图直接绘制，不回读
+     * @return GPU拼接失败时返回null
      */
-    @RequiresApi(api = Build.VERSION_CODES.R)
-    private Bitmap takeScreenshotOfDisplay(int displayId) {
-        final Bitmap[] resultBitmap = {null};
-        final Object lock = new Object();
-        
-        try {
-            // 使用AccessibilityService.takeScreenshot API
-            takeScreenshot(displayId, getMainExecutor(), new TakeScreenshotCallback() {
-                @Override
-                public void onSuccess(ScreenshotResult screenshotResult) {
-                    try {
-                        resultBitmap[0] = Bitmap.wrapHardwareBuffer(
-                                screenshotResult.getHardwareBuffer(),
-                                screenshotResult.getColorSpace()
-                        );
-                        Log.i(TAG, "截图成功，Display ID: " + displayId);
-                    } catch (Exception e) {
-                        Log.e(TAG, "处理截图结果失败: " + e.getMessage(), e);
-                    } finally {
-                        synchronized (lock) {
-                            lock.notify();
-                        }
-                    }
-                }
+    private Bitmap composeVerticallyOnGpu(Bitmap mainScreen, Bitmap subScreen) {
+        int width = Math.max(mainScreen.getWidth(), subScreen.getWidth());
+        int height = mainScreen.getHeight() + subScreen.getHeight();
+        return mGpuCompositor.compose(width, height, canvas -> {
+            canvas.drawBitmap(mainScreen, (width - mainScreen.getWidth()) / 2f, 0, null);
+            canvas.drawBitmap(subScreen, (width - subScreen.getWidth()) / 2f, mainScreen.getHeight(), null);
+        });
+    }
 
-                @Override
-                public void onFailure(int errorCode) {
-                    Log.e(TAG, "截图失败，错误码: " + errorCode);
-                    synchronized (lock) {
-                        lock.notify();
-                    }
-                }
-            });
-            
-            // 等待截图完成（最多等待5秒）
-            synchronized (lock) {
-                lock.wait(5000);
-            }
-            
-        } catch (Exception e) {
-            Log.e(TAG, "截图异常: " + e.getMessage(), e);
+    /**
+     * 在GPU上套壳拼接两个位图，缩放由GPU在绘制时完成
+     * @param colorIndex 机身颜色
+     * @return GPU拼接失败时返回null
+     */
+    private Bitmap composeWithFrameOnGpu(Bitmap mainScreen, Bitmap subScreen, int colorIndex) {
+        CompositionStats stats = new CompositionStats("套壳拼接(GPU)");
+        // 机身图片由缓存持有，不能 recycle
+        Bitmap frameBitmap = FrameAssetCache.getInstance(this).get(colorIndex);
+        if (frameBitmap == null) {
+            return null;
         }
-        
-        return resultBitmap[0];
+        stats.mark("获取机身");
+        Paint paint = createFramePaint();
+        Matrix matrix = new Matrix();
+        Bitmap combined = mGpuCompositor.compose(FRAME_WIDTH, FRAME_HEIGHT, canvas -> {
+            drawIntoRect(canvas, mainScreen, FRAME_MAIN_X, FRAME_MAIN_Y, FRAME_MAIN_WIDTH, FRAME_MAIN_HEIGHT, matrix, paint);
+            drawIntoRect(canvas, subScreen, FRAME_SUB_X, FRAME_SUB_Y, FRAME_SUB_WIDTH, FRAME_SUB_HEIGHT, matrix, paint);
+            drawIntoRect(canvas, frameBitmap, 0, 0, FRAME_WIDTH, FRAME_HEIGHT, matrix, paint);
+        });
+        if (combined != null) {
+            stats.allocate(combined);
+            stats.mark("绘制并回读");
+            Log.i(TAG, stats.toString());
+        }
+        return combined;
     }
 
     /**
@@ -386,12 +833,12 @@ public class CaptureService extends AccessibilityService {
             
             if (mainScreen.getConfig() == Bitmap.Config.HARDWARE) {
                 Log.i(TAG, "主屏位图是HARDWARE格式,转换为ARGB_8888");
-                mainBitmap = mainScreen.copy(Bitmap.Config.ARGB_8888, false);
+                mainBitmap = mainScreen.copy(Bitmap.Config.ARGB_8888, true);
             }
             
             if (subScreen.getConfig() == Bitmap.Config.HARDWARE) {
                 Log.i(TAG, "副屏位图是HARDWARE格式,转换为ARGB_8888");
-                subBitmap = subScreen.copy(Bitmap.Config.ARGB_8888, false);
+                subBitmap = subScreen.copy(Bitmap.Config.ARGB_8888, true);
             }
             
             // 计算合并后的位图尺寸
@@ -399,8 +846,8 @@ public class CaptureService extends AccessibilityService {
             int height = mainBitmap.getHeight() + subBitmap.getHeight();
             Log.i(TAG, "目标拼接尺寸: " + width + "x" + height);
             
-            // 创建新的位图 - 使用ARGB_8888格式
-            Bitmap combined = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            // 从复用池获取ARGB_8888位图，两屏宽度不同时空白处保持透明
+            Bitmap combined = mBitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
             
             // 绘制两个位图到新位图上
             Canvas canvas = new Canvas(combined);
@@ -415,6 +862,13 @@ public class CaptureService extends AccessibilityService {
             canvas.drawBitmap(subBitmap, subX, mainBitmap.getHeight(), null);
             Log.i(TAG, "副屏已绘制到位置: (" + subX + ", " + mainBitmap.getHeight() + ")");
             
+            if (mainBitmap != mainScreen) {
+                mBitmapPool.put(mainBitmap);
+            }
+            if (subBitmap != subScreen) {
+                mBitmapPool.put(subBitmap);
+            }
+            
             Log.i(TAG, "位图拼接成功: " + width + "x" + height);
             return combined;
         } catch (Exception e) {
@@ -425,80 +879,59 @@ public class CaptureService extends AccessibilityService {
 
     /**
      * 套壳拼接两个位图 - 按照指定位置和尺寸组合
+     * 机身底图常驻在 FrameCompositor 中，每次只重绘两个屏幕窗口内的像素。
+     * 需要缩小的截图先面积缩小到屏幕区域的尺寸，其余情况通过变换矩阵直接绘制到目标区域。
+     * 返回的位图归 FrameCompositor 所有，不能 recycle
+     * @param colorIndex 机身颜色
      */
-    private Bitmap combineBitmapsWithFrame(Bitmap mainScreen, Bitmap subScreen) {
+    private Bitmap combineBitmapsWithFrame(Bitmap mainScreen, Bitmap subScreen, int colorIndex) {
         try {
             Log.i(TAG, "开始套壳拼接位图");
             Log.i(TAG, "主屏位图: " + mainScreen.getWidth() + "x" + mainScreen.getHeight());
             Log.i(TAG, "副屏位图: " + subScreen.getWidth() + "x" + subScreen.getHeight());
+            CompositionStats stats = new CompositionStats("套壳拼接(CPU)");
             
-            // 如果位图是HARDWARE格式,需要转换为ARGB_8888才能创建可变位图
+            // 软件画布不能绘制HARDWARE位图,需要先回读为ARGB_8888
             Bitmap mainBitmap = mainScreen;
             Bitmap subBitmap = subScreen;
             
             if (mainScreen.getConfig() == Bitmap.Config.HARDWARE) {
-                mainBitmap = mainScreen.copy(Bitmap.Config.ARGB_8888, false);
+                mainBitmap = mainScreen.copy(Bitmap.Config.ARGB_8888, true);
+                stats.allocate(mainBitmap);
             }
             
             if (subScreen.getConfig() == Bitmap.Config.HARDWARE) {
-                subBitmap = subScreen.copy(Bitmap.Config.ARGB_8888, false);
+                subBitmap = subScreen.copy(Bitmap.Config.ARGB_8888, true);
+                stats.allocate(subBitmap);
             }
+            stats.mark("回读");
             
-            // 创建2400x2900的空画布
-            Bitmap combined = Bitmap.createBitmap(2400, 2900, Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(combined);
-            
-            // 缩放主屏图像到1920x1080
-            Bitmap scaledMainBitmap = Bitmap.createScaledBitmap(mainBitmap, 1920, 1080, true);
-            // 绘制主屏图像 - 位置:x=240,y=180
-            canvas.drawBitmap(scaledMainBitmap, 240, 180, null);
-            Log.i(TAG, "主屏已缩放并绘制到位置: (240, 180)");
-            scaledMainBitmap.recycle();
-            
-            // 缩放副屏图像到1090x950
-            Bitmap scaledSubBitmap = Bitmap.createScaledBitmap(subBitmap, 1090, 950, true);
-            canvas.drawBitmap(scaledSubBitmap, 655, 1538, null);
-            Log.i(TAG, "副屏已缩放并绘制到位置: (655, 1538)");
-            scaledSubBitmap.recycle();
+            mainBitmap = fitToFrameRect(mainBitmap, mainScreen, FRAME_MAIN_WIDTH, FRAME_MAIN_HEIGHT, stats);
+            subBitmap = fitToFrameRect(subBitmap, subScreen, FRAME_SUB_WIDTH, FRAME_SUB_HEIGHT, stats);
+            stats.mark("缩小");
             
-            // 根据选择的机身颜色覆盖机身图片
-            int colorIndex = PreferenceUtil.getFrameColorIndex(this);
-            int frameResId = R.drawable.black; // 默认黑色
-            
-            switch (colorIndex) {
-                case 0: // 黑色
-                    frameResId = R.drawable.black;
-                    break;
-                case 1: // 白色
-                    frameResId = R.drawable.white;
-                    break;
-                case 2: // 灰彩
-                    frameResId = R.drawable.grey;
-                    break;
-                case 3: // 紫透
-                    frameResId = R.drawable.purple;
-                    break;
+            // 机身图片已放在drawable-nodpi文件夹，不会被系统自动缩放；解码结果由缓存持有，不能 recycle
+            Bitmap frameBitmap = FrameAssetCache.getInstance(this).get(colorIndex);
+            if (frameBitmap == null) {
+                Log.e(TAG, "机身图片载入失败");
+                return null;
             }
+            stats.mark("获取机身");
             
-            // 绘制机身图片
-            // 图片已放在drawable-nodpi文件夹，不会被系统自动缩放
-            Bitmap frameBitmap = android.graphics.BitmapFactory.decodeResource(getResources(), frameResId);
+            // 主屏绘制到 (240,180) 起的1920x1080区域，副屏绘制到 (655,1538) 起的1090x950区域
+            Bitmap combined = mFrameCompositor.compose(frameBitmap, createFramePaint(), mainBitmap, subBitmap);
+            stats.mark("绘制屏幕区域");
             
-            // 确保机身图片尺寸正确（应该是2400x2900）
-            Log.i(TAG, "机身图片加载尺寸: " + frameBitmap.getWidth() + "x" + frameBitmap.getHeight());
-            if (frameBitmap.getWidth() == 2400 && frameBitmap.getHeight() == 2900) {
-                canvas.drawBitmap(frameBitmap, 0, 0, null);
-                Log.i(TAG, "机身图片已绘制: " + frameResId + " (原始尺寸: 2400x2900)");
-            } else {
-                Log.w(TAG, "机身图片尺寸不匹配: " + frameBitmap.getWidth() + "x" + frameBitmap.getHeight() + ", 期望: 2400x2900");
-                // 如果尺寸不对，强制缩放到2400x2900
-                Bitmap scaledFrameBitmap = Bitmap.createScaledBitmap(frameBitmap, 2400, 2900, true);
-                canvas.drawBitmap(scaledFrameBitmap, 0, 0, null);
-                scaledFrameBitmap.recycle();
+            if (mainBitmap != mainScreen) {
+                stats.release(mainBitmap);
+                mBitmapPool.put(mainBitmap);
+            }
+            if (subBitmap != subScreen) {
+                stats.release(subBitmap);
+                mBitmapPool.put(subBitmap);
             }
-            frameBitmap.recycle();
             
-            Log.i(TAG, "套壳拼接成功: 2400x2900");
+            Log.i(TAG, "套壳拼接成功: 2400x2900, " + stats + ", " + mFrameCompositor.getStats());
             return combined;
         } catch (Exception e) {
             Log.e(TAG, "套壳拼接失败: " + e.getMessage(), e);
@@ -507,121 +940,302 @@ public class CaptureService extends AccessibilityService {
     }
 
     /**
-     * 保存位图到文件
-     * @return 保存的文件对象,失败返回null
+     * 分段拼接并编码套壳截图，完整的2400x2900画布不会出现在内存中
+     * 每段绘制完成后立即交给增量JPEG编码器写入文件，分段缓冲区大小受分段预算限制
+     * @return 相册中的图片Uri,失败返回null
      */
-    private File saveBitmap(Bitmap bitmap, String suffix) {
-        File savedFile = null;
-        try {
-            // 使用 Pictures 目录下的自定义文件夹
-            File picturesDir = android.os.Environment.getExternalStoragePublicDirectory(
-                    android.os.Environment.DIRECTORY_PICTURES);
-            File directory = new File(picturesDir, Constants.SCREENSHOT_DIR);
-            
-            if (!directory.exists()) {
-                directory.mkdirs();
+    private Uri saveFramedStriped(Bitmap mainScreen, Bitmap subScreen) {
+        CompositionStats stats = new CompositionStats("分段套壳编码");
+        // 机身图片由缓存持有，不能 recycle；编码缓存使用同一个颜色
+        int colorIndex = PreferenceUtil.getFrameColorIndex(this);
+        Bitmap frameBitmap = FrameAssetCache.getInstance(this).get(colorIndex);
+        if (frameBitmap == null) {
+            Log.e(TAG, "机身图片载入失败");
+            return null;
+        }
+        // 软件画布不能绘制HARDWARE位图,需要先回读为ARGB_8888
+        Bitmap mainBitmap = mainScreen;
+        Bitmap subBitmap = subScreen;
+        if (mainScreen.getConfig() == Bitmap.Config.HARDWARE) {
+            mainBitmap = mainScreen.copy(Bitmap.Config.ARGB_8888, true);
+            stats.allocate(mainBitmap);
+        }
+        if (subScreen.getConfig() == Bitmap.Config.HARDWARE) {
+            subBitmap = subScreen.copy(Bitmap.Config.ARGB_8888, true);
+            stats.allocate(subBitmap);
+        }
+        stats.mark("回读");
+        // 每段都会重绘两个屏幕，先缩小一次，分段绘制时为1:1
+        mainBitmap = fitToFrameRect(mainBitmap, mainScreen, FRAME_MAIN_WIDTH, FRAME_MAIN_HEIGHT, stats);
+        subBitmap = fitToFrameRect(subBitmap, subScreen, FRAME_SUB_WIDTH, FRAME_SUB_HEIGHT, stats);
+        stats.mark("缩小");
+
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        String fileName = "screenshot_both_" + timeStamp + ".jpg";
+        try (MediaStoreSink sink = MediaStoreSink.open(this, fileName, "image/jpeg", System.currentTimeMillis())) {
+            long budgetBytes = PreferenceUtil.getStripeBudgetKb(this) * 1024L;
+            int stripeHeight = StripedComposer.getStripeHeight(FRAME_WIDTH, budgetBytes, JpegStreamEncoder.MCU_SIZE);
+            Paint paint = createFramePaint();
+            Matrix matrix = new Matrix();
+            final Bitmap main = mainBitmap;
+            final Bitmap sub = subBitmap;
+            StripedComposer.Scene scene = canvas -> {
+                drawIntoRect(canvas, main, FRAME_MAIN_X, FRAME_MAIN_Y, FRAME_MAIN_WIDTH, FRAME_MAIN_HEIGHT, matrix, paint);
+                drawIntoRect(canvas, sub, FRAME_SUB_X, FRAME_SUB_Y, FRAME_SUB_WIDTH, FRAME_SUB_HEIGHT, matrix, paint);
+                drawIntoRect(canvas, frameBitmap, 0, 0, FRAME_WIDTH, FRAME_HEIGHT, matrix, paint);
+            };
+            // 与整幅保存相同，6-10的图像质量映射到60-100的JPEG质量值
+            int quality = PreferenceUtil.getFrameImageQuality(this) * 10;
+            if (QualityTuner.isEnabled(this, ImageCodec.JPEG)) {
+                // 完整画布不在内存中，直接把场景绘制到取样块上
+                quality = QualityTuner.choose(this, FRAME_WIDTH, FRAME_HEIGHT, scene, QualityTuner.STREAM_JPEG).quality;
+                stats.mark("自动质量");
             }
-            
-            // 生成文件名
-            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            String fileName = "screenshot_" + suffix + "_" + timeStamp + ".png";
-            File file = new File(directory, fileName);
-            
-            // 保存位图
-            FileOutputStream out = null;
-            try {
-                out = new FileOutputStream(file);
-                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
-                out.flush();
-                
-                Log.i(TAG, "截图已保存: " + file.getAbsolutePath());
-                
-                // 更新媒体库
-                updateMediaLibrary(file);
-                
-                savedFile = file;
-            } finally {
-                if (out != null) {
-                    out.close();
-                }
+            JpegStreamEncoder encoder = new JpegStreamEncoder(sink.getOutputStream(), FRAME_WIDTH, FRAME_HEIGHT, quality);
+            setupFrameJpegCache(encoder, colorIndex, quality);
+            StripedComposer.compose(FRAME_WIDTH, FRAME_HEIGHT, stripeHeight, scene, encoder::writeRows, stats);
+            encoder.finish();
+            if (encoder.getCachedSegments() > 0) {
+                Log.i(TAG, "使用缓存段: " + encoder.getCachedSegments() + ", " + mFrameJpegCache);
             }
+            Uri uri = sink.publish(FRAME_WIDTH, FRAME_HEIGHT);
+            stats.mark("分段拼接编码");
+            Log.i(TAG, "套壳截图已分段保存: " + fileName + " -> " + uri + ", 质量: " + quality +
+                    ", 大小: " + sink.getSize() / 1024 + "KB" +
+                    ", 每段 " + stripeHeight + " 行, 分段缓冲区 " +
+                    StripedComposer.getStripeBytes(FRAME_WIDTH, stripeHeight) / 1024 + "KB, " + stats);
+            return uri;
         } catch (Exception e) {
-            Log.e(TAG, "保存截图失败: " + e.getMessage(), e);
-            showNotification("保存失败", null);
+            // 未发布的相册记录由 MediaStoreSink 关闭时删除
+            Log.e(TAG, "分段保存套壳截图失败: " + e.getMessage(), e);
+            return null;
         } finally {
-            // 释放位图资源
-            if (bitmap != null && !bitmap.isRecycled()) {
-                bitmap.recycle();
+            if (mainBitmap != mainScreen) {
+                mBitmapPool.put(mainBitmap);
+            }
+            if (subBitmap != subScreen) {
+                mBitmapPool.put(subBitmap);
             }
         }
-        return savedFile;
     }
-    
+
+    /**
+     * 开启机身编码缓存时，按缓存的分段方式编码套壳截图
+     * @param colorIndex 拼接时所用机身图片的颜色，不能在编码时重新读取设置
+     */
+    private void setupFrameJpegCache(JpegStreamEncoder encoder, int colorIndex, int quality) {
+        if (!PreferenceUtil.getFrameJpegCacheEnabled(this)) {
+            return;
+        }
+        encoder.setRestartInterval(mFrameJpegCache.getRestartInterval(), mFrameJpegCache.prepare(
+                colorIndex, quality, PreferenceUtil.getFrameScaleFilter(this)));
+    }
+
     /**
-     * 保存套壳截图到文件,使用用户设置的图像质量
-     * @return 保存的文件对象,失败返回null
+     * 使用机身编码缓存把整幅套壳截图编码为JPEG，只有屏幕区域所在的段需要重新编码
+     * @param colorIndex 拼接时所用的机身颜色
      */
-    private File saveBitmapWithQuality(Bitmap bitmap, String suffix) {
-        File savedFile = null;
+    private void encodeFramedJpeg(Bitmap bitmap, OutputStream out, int colorIndex, int quality) throws IOException {
+        Bitmap source = bitmap;
+        if (bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            source = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+        }
         try {
-            // 使用 Pictures 目录下的自定义文件夹
-            File picturesDir = android.os.Environment.getExternalStoragePublicDirectory(
-                    android.os.Environment.DIRECTORY_PICTURES);
-            File directory = new File(picturesDir, Constants.SCREENSHOT_DIR);
-            
-            if (!directory.exists()) {
-                directory.mkdirs();
+            JpegStreamEncoder encoder = new JpegStreamEncoder(out, FRAME_WIDTH, FRAME_HEIGHT, quality);
+            setupFrameJpegCache(encoder, colorIndex, quality);
+            int stripeHeight = JpegStreamEncoder.MCU_SIZE * 16;
+            int[] pixels = new int[FRAME_WIDTH * stripeHeight];
+            for (int top = 0; top < FRAME_HEIGHT; top += stripeHeight) {
+                int rows = Math.min(stripeHeight, FRAME_HEIGHT - top);
+                source.getPixels(pixels, 0, FRAME_WIDTH, 0, top, FRAME_WIDTH, rows);
+                encoder.writeRows(pixels, rows);
             }
-            
-            // 获取用户设置的图像质量 (6-10)
-            int imageQuality = PreferenceUtil.getFrameImageQuality(this);
-            // 将6-10的范围映射到60-100的JPEG质量值
-            int quality = imageQuality * 10;
-            
-            // 生成文件名 - 使用JPEG格式以支持质量调节
-            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            String fileName = "screenshot_" + suffix + "_" + timeStamp + ".jpg";
-            File file = new File(directory, fileName);
-            
-            // 保存位图
-            FileOutputStream out = null;
-            try {
-                out = new FileOutputStream(file);
-                // 使用JPEG格式,quality参数才有效(60-100)
-                // PNG格式的quality参数无效,因为PNG是无损压缩
-                bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
-                out.flush();
-                
-                Log.i(TAG, "套壳截图已保存: " + file.getAbsolutePath() + ", 格式: JPEG, 质量: " + quality);
-                
-                // 更新媒体库
-                updateMediaLibrary(file);
-                
-                savedFile = file;
-            } finally {
-                if (out != null) {
-                    out.close();
-                }
+            encoder.finish();
+            Log.i(TAG, "使用缓存段: " + encoder.getCachedSegments() + ", " + mFrameJpegCache);
+        } finally {
+            if (source != bitmap) {
+                mBitmapPool.put(source);
             }
+        }
+    }
+
+    /**
+     * 双线性过滤时把截图面积缩小到套壳布局中屏幕区域的尺寸，绘制时为1:1，缩小两倍以上也不会出现锯齿
+     * HARDWARE位图、尺寸一致、需要放大或选择最近邻过滤时原样返回，绘制时由变换矩阵缩放
+     * @param original 截图结果持有的位图，bitmap 为其回读副本时缩小后放回复用池
+     * @param stats 可为null
+     * @return 缩小结果取自复用池，由调用方放回
+     */
+    private Bitmap fitToFrameRect(Bitmap bitmap, Bitmap original, int width, int height, CompositionStats stats) {
+        if (bitmap.getConfig() == Bitmap.Config.HARDWARE
+                || PreferenceUtil.getFrameScaleFilter(this) != Constants.FRAME_SCALE_FILTER_BILINEAR
+                || !AreaDownscaler.canDownscale(bitmap.getWidth(), bitmap.getHeight(), width, height)) {
+            return bitmap;
+        }
+        Bitmap scaled = AreaDownscaler.downscale(bitmap, width, height, mBitmapPool);
+        if (bitmap != original) {
+            if (stats != null) {
+                stats.release(bitmap);
+            }
+            mBitmapPool.put(bitmap);
+        }
+        if (stats != null) {
+            stats.allocate(scaled);
+        }
+        return scaled;
+    }
+
+    /**
+     * 通过变换矩阵把位图绘制到目标区域，尺寸一致时为1:1绘制
+     */
+    private static void drawIntoRect(Canvas canvas, Bitmap bitmap, int x, int y, int width, int height,
+                                     Matrix matrix, Paint paint) {
+        matrix.setScale((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight());
+        matrix.postTranslate(x, y);
+        canvas.drawBitmap(bitmap, matrix, paint);
+    }
+
+    /**
+     * 套壳拼接使用的画笔，按设置选择双线性或最近邻过滤
+     */
+    private Paint createFramePaint() {
+        Paint paint = new Paint();
+        paint.setFilterBitmap(PreferenceUtil.getFrameScaleFilter(this) == Constants.FRAME_SCALE_FILTER_BILINEAR);
+        return paint;
+    }
+
+    /**
+     * 按截图类型设置的格式保存单屏或双屏截图，位图由调用方释放
+     * @param captureType Constants.CAPTURE_TYPE_SINGLE 或 CAPTURE_TYPE_BOTH
+     * @return 相册中的图片Uri（延后压缩时为暂存文件Uri）,失败返回null
+     */
+    private Uri saveBitmap(Bitmap bitmap, String suffix, int captureType) {
+        return saveEncoded(bitmap, suffix, PreferenceUtil.getCaptureCodec(this, captureType),
+                PreferenceUtil.getLossyQuality(this), -1);
+    }
+
+    /**
+     * 保存位图到相册，不支持的格式回退为JPEG，位图由调用方释放
+     * @param quality 有损格式的质量（0-100）
+     * @param frameColorIndex 套壳截图拼接时所用的机身颜色，非套壳截图为-1；只有套壳截图可以使用机身区域的编码缓存
+     * @return 相册中的图片Uri（延后压缩时为暂存文件Uri）,失败返回null
+     */
+    private Uri saveEncoded(Bitmap bitmap, String suffix, int codec, int quality, int frameColorIndex) {
+        codec = ImageCodec.resolve(codec);
+        // 生成文件名
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        String fileName = "screenshot_" + suffix + "_" + timeStamp + "." + ImageCodec.getExtension(codec);
+        
+        boolean autoQuality = QualityTuner.isEnabled(this, codec);
+        
+        // 开启延后压缩时只暂存原始像素，空闲或充电时再编码，自动质量在转换时选择
+        if (PreferenceUtil.getDeferredSaveEnabled(this)) {
+            Uri spillUri = spillBitmap(bitmap, fileName, codec, autoQuality ? SpillStore.QUALITY_AUTO : quality);
+            if (spillUri != null) {
+                return spillUri;
+            }
+        }
+        
+        // 套壳截图按机身编码缓存的分段方式编码，自动质量也用同一个编码器估计耗时
+        boolean streamJpeg = frameColorIndex >= 0 && codec == ImageCodec.JPEG && PreferenceUtil.getFrameJpegCacheEnabled(this)
+                && bitmap.getWidth() == FRAME_WIDTH && bitmap.getHeight() == FRAME_HEIGHT;
+        long tuneTime = 0;
+        if (autoQuality) {
+            long tuneStart = SystemClock.uptimeMillis();
+            quality = QualityTuner.choose(this, bitmap,
+                    streamJpeg ? QualityTuner.STREAM_JPEG : QualityTuner.compressEncoder(codec)).quality;
+            tuneTime = SystemClock.uptimeMillis() - tuneStart;
+        }
+        
+        long dateTaken = System.currentTimeMillis();
+        // 额外输出规格在线程池中缩放和编码，与主输出同时进行
+        VariantEncoder.Batch variants = mVariantEncoder.submit(bitmap, fileName.substring(0, fileName.lastIndexOf('.')),
+                dateTaken, PreferenceUtil.getOutputVariants(this));
+        
+        // 编码结果直接写入相册记录，发布时一并写入尺寸，不需要媒体扫描
+        Uri savedUri = null;
+        try (MediaStoreSink sink = MediaStoreSink.open(this, fileName, ImageCodec.getMimeType(codec), dateTaken)) {
+            long startTime = SystemClock.uptimeMillis();
+            if (streamJpeg) {
+                // 机身区域的编码结果对同一颜色和质量不变，直接使用缓存
+                encodeFramedJpeg(bitmap, sink.getOutputStream(), frameColorIndex, quality);
+            } else if (codec == ImageCodec.PNG && PreferenceUtil.getParallelPngEnabled(this)) {
+                encodePng(bitmap, sink.getOutputStream());
+            } else {
+                ImageCodec.create(this, codec, quality, mPngExecutor)
+                        .encode(bitmap, sink.getOutputStream(), sink.getFileDescriptor());
+            }
+            savedUri = sink.publish(bitmap.getWidth(), bitmap.getHeight());
+            Log.i(TAG, "截图已保存: " + fileName + " -> " + savedUri + ", 格式: " + ImageCodec.getName(codec) +
+                    (ImageCodec.isLossy(codec) ? ", 质量: " + quality : "") +
+                    (autoQuality ? "（自动，选择耗时 " + tuneTime + "ms）" : "") +
+                    ", 大小: " + sink.getSize() / 1024 + "KB" +
+                    ", 编码耗时: " + (SystemClock.uptimeMillis() - startTime) + "ms");
         } catch (Exception e) {
-            Log.e(TAG, "保存套壳截图失败: " + e.getMessage(), e);
+            Log.e(TAG, "保存截图失败: " + e.getMessage(), e);
             showNotification("保存失败", null);
         } finally {
-            // 释放位图资源
-            if (bitmap != null && !bitmap.isRecycled()) {
-                bitmap.recycle();
+            // 调用方在返回后回收原图，必须等所有规格缩放完成
+            if (variants != null) {
+                Log.i(TAG, "额外输出已保存 " + variants.await() + " 个规格");
+            }
+        }
+        return savedUri;
+    }
+    
+    /**
+     * 把位图原始像素写入暂存区，并调度空闲或充电时的转换任务
+     * @return 暂存文件Uri，失败返回null，调用方改为直接保存
+     */
+    private Uri spillBitmap(Bitmap bitmap, String fileName, int format, int quality) {
+        long startTime = SystemClock.uptimeMillis();
+        Bitmap source = bitmap;
+        if (bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            source = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+        }
+        try {
+            File spillFile = SpillStore.spill(this, source, fileName, format, quality);
+            SpillConvertJobService.schedule(this);
+            Log.i(TAG, "截图已暂存: " + spillFile.getName() + ", 耗时 " +
+                    (SystemClock.uptimeMillis() - startTime) + "ms, 待转换 " + SpillStore.count(this) + " 张");
+            return Uri.fromFile(spillFile);
+        } catch (IOException e) {
+            Log.e(TAG, "暂存截图失败，改为直接保存: " + e.getMessage(), e);
+            return null;
+        } finally {
+            if (source != bitmap) {
+                mBitmapPool.put(source);
             }
         }
-        return savedFile;
     }
 
     /**
-     * 更新媒体库，使截图在相册中可见
+     * 使用多核PNG编码器编码位图，HARDWARE位图先回读为软件位图
+     */
+    private void encodePng(Bitmap bitmap, OutputStream out) throws IOException {
+        PngEncoder encoder = new PngEncoder(mPngExecutor, PreferenceUtil.getPngPreset(this), true);
+        if (bitmap.getConfig() != Bitmap.Config.HARDWARE) {
+            encoder.encode(bitmap, out);
+            return;
+        }
+        Bitmap readback = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+        try {
+            encoder.encode(readback, out);
+        } finally {
+            mBitmapPool.put(readback);
+        }
+    }
+
+    /**
+     * 保存套壳截图到相册,使用用户设置的图像质量和套壳截图的保存格式，位图由调用方释放
+     * @param colorIndex 拼接时所用的机身颜色
+     * @return 相册中的图片Uri（延后压缩时为暂存文件Uri）,失败返回null
      */
-    private void updateMediaLibrary(File file) {
-        Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-        mediaScanIntent.setData(Uri.fromFile(file));
-        sendBroadcast(mediaScanIntent);
+    private Uri saveBitmapWithQuality(Bitmap bitmap, String suffix, int colorIndex) {
+        // 将6-10的图像质量映射到60-100的质量值，无损格式忽略
+        int quality = PreferenceUtil.getFrameImageQuality(this) * 10;
+        return saveEncoded(bitmap, suffix, PreferenceUtil.getCaptureCodec(this, Constants.CAPTURE_TYPE_FRAMED),
+                quality, colorIndex);
     }
 
     /**
@@ -666,9 +1280,9 @@ public class CaptureService extends AccessibilityService {
     /**
      * 显示截图通知
      * @param message 提示消息
-     * @param screenshotFile 截图文件(未使用,仅为保持接口一致)
+     * @param screenshotUri 截图Uri(未使用,仅为保持接口一致)
      */
-    private void showNotification(final String message, final File screenshotFile) {
+    private void showNotification(final String message, final Uri screenshotUri) {
         // 使用Handler确保在主线程显示Toast
         // 这是在后台服务显示Toast的关键!
         Handler mainHandler = new Handler(Looper.getMainLooper());
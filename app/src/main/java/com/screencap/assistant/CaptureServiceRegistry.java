@@ -0,0 +1,71 @@
+package com.screencap.assistant;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * 进程内的截图服务注册表
+ * 手势服务和截图服务运行在同一进程，截图服务连接后在此注册命令处理器，
+ * 手势命令直接调用处理器，不经过广播往返，也不必每次检查已启用的无障碍服务列表。
+ * 截图服务在 onUnbind（用户关闭本服务时）和 onDestroy 中注销，
+ * 截图服务未注册时 dispatch 回退到包内广播
+ */
+public final class CaptureServiceRegistry {
+
+    private static final String TAG = "CaptureServiceRegistry";
+
+    /**
+     * 截图服务的命令处理器，命令格式与广播Intent相同
+     */
+    public interface CommandHandler {
+        void handleCommand(Intent command);
+    }
+
+    private static CommandHandler sHandler;
+
+    private CaptureServiceRegistry() {
+    }
+
+    /**
+     * 截图服务连接后注册
+     */
+    public static synchronized void register(CommandHandler handler) {
+        sHandler = handler;
+        Log.i(TAG, "截图服务已注册");
+    }
+
+    /**
+     * 截图服务解绑或销毁时注销，只注销自己注册的处理器
+     */
+    public static synchronized void unregister(CommandHandler handler) {
+        if (sHandler != handler) {
+            return;
+        }
+        sHandler = null;
+        Log.i(TAG, "截图服务已注销");
+    }
+
+    /**
+     * 截图服务是否已在本进程注册
+     */
+    public static synchronized boolean isConnected() {
+        return sHandler != null;
+    }
+
+    /**
+     * 把命令交给截图服务：已注册时直接调用处理器，否则发送包内广播
+     */
+    public static void dispatch(Context context, Intent command) {
+        CommandHandler handler;
+        synchronized (CaptureServiceRegistry.class) {
+            handler = sHandler;
+        }
+        if (handler != null) {
+            handler.handleCommand(command);
+            return;
+        }
+        command.setPackage(context.getPackageName());
+        context.sendBroadcast(command);
+    }
+}
@@ -0,0 +1,145 @@
+package com.screencap.assistant;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 推测截图
+ * 手势越过触发阈值时（手指尚未抬起）就提前发起截图，抬起后正式截图请求直接使用该结果；
+ * 手势取消、功能不一致或长时间未提交时丢弃推测结果并释放位图。
+ * 截图阶段可以拒绝发起（返回null），例如屏幕正被其他截图占用。
+ * 截图阶段会取调度器的锁，而调度器发起截图时会调用 commit，因此不在持有本对象的锁时调用截图阶段
+ * 统计命中和浪费次数，用于衡量推测截图的收益
+ */
+public class CaptureSpeculator {
+
+    private static final String TAG = "CaptureSpeculator";
+
+    // 推测截图发起后超过该时间仍未提交则视为浪费
+    private static final long MAX_SPECULATION_AGE_MS = 3000;
+
+    private final Function<CaptureRequest, CompletableFuture<CaptureResult[]>> mCaptureStage;
+
+    private CaptureRequest mRequest;
+    private CompletableFuture<CaptureResult[]> mFuture;
+    private long mStartTime;
+    // 每次发起或作废推测截图时递增，发起期间被新的推测截图或取消替代时丢弃结果
+    private int mGeneration = 0;
+
+    // 统计
+    private int mStartedCount = 0;
+    private int mHitCount = 0;
+    private int mWastedCount = 0;
+
+    /**
+     * @param captureStage 实际发起截图的截图阶段，不发起时返回null
+     */
+    public CaptureSpeculator(Function<CaptureRequest, CompletableFuture<CaptureResult[]>> captureStage) {
+        mCaptureStage = captureStage;
+    }
+
+    /**
+     * 发起推测截图，之前未提交的推测截图作废
+     */
+    public void speculate(CaptureRequest request) {
+        int generation;
+        synchronized (this) {
+            if (mFuture != null) {
+                discard("新的推测截图");
+            }
+            generation = ++mGeneration;
+        }
+        // 释放锁后再发起截图
+        CompletableFuture<CaptureResult[]> future;
+        try {
+            future = mCaptureStage.apply(request);
+        } catch (Exception e) {
+            Log.e(TAG, "发起推测截图失败: " + e.getMessage(), e);
+            return;
+        }
+        if (future == null) {
+            return;
+        }
+        synchronized (this) {
+            mStartedCount++;
+            if (generation != mGeneration) {
+                // 发起期间已被取消或替代
+                mWastedCount++;
+                Log.d(TAG, "丢弃推测截图(发起期间已作废), " + getStats());
+                future.thenAccept(CaptureSpeculator::closeAll);
+                return;
+            }
+            mRequest = request;
+            mFuture = future;
+            mStartTime = SystemClock.uptimeMillis();
+            Log.d(TAG, "发起推测截图, 类型: " + request.getType());
+        }
+    }
+
+    /**
+     * 提交推测截图
+     * @return 类型一致且未过期时返回推测截图的结果，否则返回null，由调用方实时截图
+     */
+    public synchronized CompletableFuture<CaptureResult[]> commit(int type) {
+        // 仍在发起中的推测截图已赶不上本次请求，发起后直接丢弃
+        mGeneration++;
+        if (mFuture == null) {
+            return null;
+        }
+        if (mRequest.getType() != type) {
+            discard("类型不一致");
+            return null;
+        }
+        long age = SystemClock.uptimeMillis() - mStartTime;
+        if (age > MAX_SPECULATION_AGE_MS) {
+            discard("已过期 " + age + "ms");
+            return null;
+        }
+        CompletableFuture<CaptureResult[]> future = mFuture;
+        mRequest = null;
+        mFuture = null;
+        mHitCount++;
+        Log.i(TAG, "命中推测截图, 提前 " + age + "ms 发起, " + getStats());
+        return future;
+    }
+
+    /**
+     * 手势取消，丢弃推测截图
+     */
+    public synchronized void cancel() {
+        mGeneration++;
+        if (mFuture != null) {
+            discard("手势取消");
+        }
+    }
+
+    /**
+     * 丢弃当前推测截图，截图完成后关闭截图结果
+     */
+    private void discard(String reason) {
+        mWastedCount++;
+        Log.d(TAG, "丢弃推测截图(" + reason + "), " + getStats());
+        mFuture.thenAccept(CaptureSpeculator::closeAll);
+        mRequest = null;
+        mFuture = null;
+    }
+
+    private static void closeAll(CaptureResult[] results) {
+        for (CaptureResult result : results) {
+            if (result != null) {
+                result.close();
+            }
+        }
+    }
+
+    public synchronized String getStats() {
+        int resolved = mHitCount + mWastedCount;
+        return "推测: " + mStartedCount +
+                ", 命中: " + mHitCount +
+                ", 浪费: " + mWastedCount +
+                ", 命中率: " + (resolved > 0 ? mHitCount * 100 / resolved : 0) + "%";
+    }
+}
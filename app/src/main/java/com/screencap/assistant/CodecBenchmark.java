@@ -0,0 +1,191 @@
+package com.screencap.assistant;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.ImageDecoder;
+import android.net.Uri;
+import android.os.Environment;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 保存格式对比，把同一张截图按每种格式各编码一次，记录编码耗时和文件大小。
+ * 编码结果写入缓存目录中的临时文件，与实际保存一样经过文件系统。
+ * 同时对比面积缩小与 createScaledBitmap 缩小到各输出尺寸的耗时
+ */
+public final class CodecBenchmark {
+
+    private static final String TAG = "CodecBenchmark";
+
+    private static final String TEMP_FILE_NAME = "codec_benchmark.tmp";
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // 每种缩放重复的次数，取最短耗时，排除首次分配和JIT的影响
+    private static final int SCALE_RUNS = 3;
+    // 缩放对比的目标尺寸，与额外输出规格的尺寸选项一致
+    private static final OutputVariant[] SCALE_PRESETS = {
+            new OutputVariant("50%", 50, 0, ImageCodec.JPEG, 0, null, true),
+            new OutputVariant("720p", 100, 720, ImageCodec.JPEG, 0, null, true),
+            new OutputVariant("25%", 25, 0, ImageCodec.JPEG, 0, null, true)};
+
+    /**
+     * 一种格式的对比结果
+     */
+    public static final class Result {
+        public final int codec;
+        public final long bytes;
+        public final long millis;
+        // 编码失败或设备不支持时的原因，成功时为null
+        public final String error;
+
+        private Result(int codec, long bytes, long millis, String error) {
+            this.codec = codec;
+            this.bytes = bytes;
+            this.millis = millis;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 一种目标尺寸的缩放对比结果
+     */
+    public static final class ScaleResult {
+        public final String name;
+        public final int width;
+        public final int height;
+        public final long areaMillis;
+        public final long bilinearMillis;
+
+        private ScaleResult(String name, int width, int height, long areaMillis, long bilinearMillis) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.areaMillis = areaMillis;
+            this.bilinearMillis = bilinearMillis;
+        }
+    }
+
+    private CodecBenchmark() {
+    }
+
+    /**
+     * 载入对比用的样本截图：优先使用暂存区中最新的原始像素，没有时解码相册中最新的截图
+     * @return 没有可用的截图时返回null
+     */
+    public static Bitmap loadSample(Context context) {
+        List<SpillStore.Entry> entries = SpillStore.list(context);
+        if (!entries.isEmpty()) {
+            Bitmap bitmap = SpillStore.load(entries.get(entries.size() - 1), 1);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        ContentResolver resolver = context.getContentResolver();
+        Uri collection = MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY);
+        String selection = MediaStore.Images.Media.RELATIVE_PATH + " LIKE ?";
+        String[] selectionArgs = {Environment.DIRECTORY_PICTURES + "/" + Constants.SCREENSHOT_DIR + "%"};
+        try (Cursor cursor = resolver.query(collection, new String[]{MediaStore.Images.Media._ID},
+                selection, selectionArgs, MediaStore.Images.Media.DATE_TAKEN + " DESC")) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            Uri uri = ContentUris.withAppendedId(collection, cursor.getLong(0));
+            // 编码器需要读取像素，解码为软件位图
+            return ImageDecoder.decodeBitmap(ImageDecoder.createSource(resolver, uri),
+                    (decoder, info, source) -> decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "载入样本截图失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 按当前的编码档位依次用每种格式编码样本
+     * @param quality 有损格式的质量（0-100）
+     * @param pngExecutor 开启多核PNG编码时使用的线程池
+     */
+    public static List<Result> run(Context context, Bitmap sample, int quality, ExecutorService pngExecutor) {
+        List<Result> results = new ArrayList<>();
+        File file = new File(context.getCacheDir(), TEMP_FILE_NAME);
+        try {
+            for (int codec : ImageCodec.ALL) {
+                if (codec == ImageCodec.HEIF && !ImageCodec.isHeifAvailable()) {
+                    results.add(new Result(codec, 0, 0, "设备不支持"));
+                    continue;
+                }
+                results.add(encode(ImageCodec.create(context, codec, quality, pngExecutor), sample, file));
+            }
+        } finally {
+            file.delete();
+        }
+        return results;
+    }
+
+    /**
+     * 把样本分别用 AreaDownscaler 和 createScaledBitmap 缩小到每种输出尺寸
+     * 面积缩小的中间结果和输出使用复用池，与实际保存时一样，第二次起不再分配
+     */
+    public static List<ScaleResult> runScale(Bitmap sample) {
+        List<ScaleResult> results = new ArrayList<>();
+        BitmapPool pool = new BitmapPool(sample.getByteCount());
+        try {
+            for (OutputVariant preset : SCALE_PRESETS) {
+                float scale = preset.getScale(sample.getWidth(), sample.getHeight());
+                int width = Math.max(1, Math.round(sample.getWidth() * scale));
+                int height = Math.max(1, Math.round(sample.getHeight() * scale));
+                if (!AreaDownscaler.canDownscale(sample.getWidth(), sample.getHeight(), width, height)) {
+                    continue;
+                }
+                long areaMillis = Long.MAX_VALUE;
+                long bilinearMillis = Long.MAX_VALUE;
+                for (int i = 0; i < SCALE_RUNS; i++) {
+                    long startTime = SystemClock.uptimeMillis();
+                    Bitmap area = AreaDownscaler.downscale(sample, width, height, pool);
+                    areaMillis = Math.min(areaMillis, SystemClock.uptimeMillis() - startTime);
+                    pool.put(area);
+
+                    startTime = SystemClock.uptimeMillis();
+                    Bitmap bilinear = Bitmap.createScaledBitmap(sample, width, height, true);
+                    bilinearMillis = Math.min(bilinearMillis, SystemClock.uptimeMillis() - startTime);
+                    bilinear.recycle();
+                }
+                Log.i(TAG, "缩小到 " + preset.getName() + " " + width + "x" + height + ": 面积 " + areaMillis +
+                        "ms, 双线性 " + bilinearMillis + "ms");
+                results.add(new ScaleResult(preset.getName(), width, height, areaMillis, bilinearMillis));
+            }
+        } finally {
+            pool.clear();
+        }
+        return results;
+    }
+
+    private static Result encode(ImageCodec codec, Bitmap sample, File file) {
+        // HEIF由 MediaMuxer 直接写文件描述符，需要可读写的文件
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(raf.getFD()), BUFFER_SIZE);
+            long startTime = SystemClock.uptimeMillis();
+            codec.encode(sample, out, raf.getFD());
+            out.flush();
+            long millis = SystemClock.uptimeMillis() - startTime;
+            Log.i(TAG, ImageCodec.getName(codec.getCodec()) + ": " + raf.length() + " 字节, " + millis + "ms");
+            return new Result(codec.getCodec(), raf.length(), millis, null);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, ImageCodec.getName(codec.getCodec()) + " 编码失败: " + e.getMessage(), e);
+            return new Result(codec.getCodec(), 0, 0, "编码失败");
+        }
+    }
+}
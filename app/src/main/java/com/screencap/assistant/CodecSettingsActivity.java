@@ -0,0 +1,488 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.Formatter;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.CompoundButton;
+import android.widget.LinearLayout;
+import android.widget.PopupMenu;
+import android.widget.RadioGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SwitchCompat;
+import androidx.appcompat.widget.Toolbar;
+
+import com.google.android.material.card.MaterialCardView;
+import com.google.android.material.slider.Slider;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 保存格式设置页面，为单屏、双屏和套壳截图分别选择保存格式，并提供格式对比
+ */
+public class CodecSettingsActivity extends AppCompatActivity {
+
+    // 菜单项与 ImageCodec 格式编号的对应关系
+    static final int[] CODEC_MENU_IDS = {R.id.codec_png, R.id.codec_jpeg,
+            R.id.codec_webp_lossless, R.id.codec_webp_lossy, R.id.codec_heif};
+
+    private final ExecutorService mBenchmarkExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "codec-benchmark"));
+    private final ExecutorService mPngExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> new Thread(runnable, "codec-benchmark-png"));
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private MaterialCardView mSingleCodecCard;
+    private MaterialCardView mBothCodecCard;
+    private MaterialCardView mFramedCodecCard;
+    private TextView mSingleCodecText;
+    private TextView mBothCodecText;
+    private TextView mFramedCodecText;
+    private TextView mLossyQualityText;
+    private Slider mLossyQualitySlider;
+    private SwitchCompat mAutoQualitySwitch;
+    private RadioGroup mAutoQualityTargetGroup;
+    private TextView mAutoQualityBudgetText;
+    private Slider mAutoQualityBudgetSlider;
+    private TextView mAutoQualityMinText;
+    private Slider mAutoQualityMinSlider;
+    private RadioGroup mCodecTierGroup;
+    private LinearLayout mOutputVariantsContainer;
+    private TextView mOutputVariantAdd;
+    private List<OutputVariant> mOutputVariants;
+    private MaterialCardView mBenchmarkCard;
+    private TextView mBenchmarkResult;
+    private boolean mBenchmarkRunning = false;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_codec_settings);
+
+        initViews();
+        setupActionBar();
+        loadSettings();
+        setupListeners();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mBenchmarkExecutor.shutdownNow();
+        mPngExecutor.shutdown();
+    }
+
+    private void initViews() {
+        mSingleCodecCard = findViewById(R.id.single_codec_card);
+        mBothCodecCard = findViewById(R.id.both_codec_card);
+        mFramedCodecCard = findViewById(R.id.framed_codec_card);
+        mSingleCodecText = findViewById(R.id.single_codec_text);
+        mBothCodecText = findViewById(R.id.both_codec_text);
+        mFramedCodecText = findViewById(R.id.framed_codec_text);
+        mLossyQualityText = findViewById(R.id.lossy_quality_text);
+        mLossyQualitySlider = findViewById(R.id.lossy_quality_slider);
+        mAutoQualitySwitch = findViewById(R.id.auto_quality_switch);
+        mAutoQualityTargetGroup = findViewById(R.id.auto_quality_target_group);
+        mAutoQualityBudgetText = findViewById(R.id.auto_quality_budget_text);
+        mAutoQualityBudgetSlider = findViewById(R.id.auto_quality_budget_slider);
+        mAutoQualityMinText = findViewById(R.id.auto_quality_min_text);
+        mAutoQualityMinSlider = findViewById(R.id.auto_quality_min_slider);
+        mCodecTierGroup = findViewById(R.id.codec_tier_group);
+        mOutputVariantsContainer = findViewById(R.id.output_variants_container);
+        mOutputVariantAdd = findViewById(R.id.output_variant_add);
+        mBenchmarkCard = findViewById(R.id.codec_benchmark_card);
+        mBenchmarkResult = findViewById(R.id.codec_benchmark_result);
+
+        // 设置 Toolbar 的返回按钮监听
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (toolbar != null) {
+            toolbar.setNavigationOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    finish();
+                }
+            });
+        }
+    }
+
+    private void setupActionBar() {
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+            actionBar.setTitle(R.string.codec_settings_title);
+        }
+    }
+
+    private void loadSettings() {
+        // 加载各类截图的保存格式
+        updateCodecText(mSingleCodecText, Constants.CAPTURE_TYPE_SINGLE);
+        updateCodecText(mBothCodecText, Constants.CAPTURE_TYPE_BOTH);
+        updateCodecText(mFramedCodecText, Constants.CAPTURE_TYPE_FRAMED);
+
+        // 加载有损压缩质量
+        int quality = PreferenceUtil.getLossyQuality(this);
+        mLossyQualitySlider.setValue(quality);
+        mLossyQualityText.setText(String.valueOf(quality));
+
+        // 加载自动质量设置
+        boolean autoQuality = PreferenceUtil.getAutoQualityEnabled(this);
+        mAutoQualitySwitch.setChecked(autoQuality);
+        int target = PreferenceUtil.getAutoQualityTarget(this);
+        mAutoQualityTargetGroup.check(target == Constants.AUTO_QUALITY_TARGET_TIME
+                ? R.id.auto_quality_target_time : R.id.auto_quality_target_size);
+        updateAutoQualityBudget(target);
+        int minQuality = PreferenceUtil.getAutoQualityMin(this);
+        mAutoQualityMinSlider.setValue(minQuality);
+        mAutoQualityMinText.setText(String.valueOf(minQuality));
+        updateAutoQualityCardState(autoQuality);
+
+        // 加载编码档位
+        mCodecTierGroup.check(getCodecTierButtonId(PreferenceUtil.getCodecTier(this)));
+
+        // 加载额外输出规格
+        mOutputVariants = PreferenceUtil.getOutputVariants(this);
+        updateOutputVariants();
+    }
+
+    private void setupListeners() {
+        // 保存格式卡片点击监听
+        mSingleCodecCard.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showCodecMenu(mSingleCodecText, Constants.CAPTURE_TYPE_SINGLE);
+            }
+        });
+        mBothCodecCard.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showCodecMenu(mBothCodecText, Constants.CAPTURE_TYPE_BOTH);
+            }
+        });
+        mFramedCodecCard.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showCodecMenu(mFramedCodecText, Constants.CAPTURE_TYPE_FRAMED);
+            }
+        });
+
+        // 有损压缩质量滑块监听
+        mLossyQualitySlider.addOnChangeListener(new Slider.OnChangeListener() {
+            @Override
+            public void onValueChange(Slider slider, float value, boolean fromUser) {
+                int quality = (int) value;
+                PreferenceUtil.saveLossyQuality(CodecSettingsActivity.this, quality);
+                mLossyQualityText.setText(String.valueOf(quality));
+            }
+        });
+
+        // 自动质量开关监听
+        mAutoQualitySwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceUtil.saveAutoQualityEnabled(CodecSettingsActivity.this, isChecked);
+                updateAutoQualityCardState(isChecked);
+            }
+        });
+
+        // 预算类型选择监听
+        mAutoQualityTargetGroup.setOnCheckedChangeListener(new RadioGroup.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(RadioGroup group, int checkedId) {
+                int target = checkedId == R.id.auto_quality_target_time
+                        ? Constants.AUTO_QUALITY_TARGET_TIME : Constants.AUTO_QUALITY_TARGET_SIZE;
+                PreferenceUtil.saveAutoQualityTarget(CodecSettingsActivity.this, target);
+                updateAutoQualityBudget(target);
+            }
+        });
+
+        // 预算滑块监听，按当前的预算类型保存
+        mAutoQualityBudgetSlider.addOnChangeListener(new Slider.OnChangeListener() {
+            @Override
+            public void onValueChange(Slider slider, float value, boolean fromUser) {
+                if (!fromUser) {
+                    return;
+                }
+                int budget = (int) value;
+                if (PreferenceUtil.getAutoQualityTarget(CodecSettingsActivity.this)
+                        == Constants.AUTO_QUALITY_TARGET_TIME) {
+                    PreferenceUtil.saveAutoQualityMaxTimeMs(CodecSettingsActivity.this, budget);
+                    mAutoQualityBudgetText.setText(budget + "ms");
+                } else {
+                    PreferenceUtil.saveAutoQualityMaxSizeKb(CodecSettingsActivity.this, budget);
+                    mAutoQualityBudgetText.setText(budget + "KB");
+                }
+            }
+        });
+
+        // 最低质量滑块监听
+        mAutoQualityMinSlider.addOnChangeListener(new Slider.OnChangeListener() {
+            @Override
+            public void onValueChange(Slider slider, float value, boolean fromUser) {
+                int quality = (int) value;
+                PreferenceUtil.saveAutoQualityMin(CodecSettingsActivity.this, quality);
+                mAutoQualityMinText.setText(String.valueOf(quality));
+            }
+        });
+
+        // 编码档位选择监听
+        mCodecTierGroup.setOnCheckedChangeListener(new RadioGroup.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(RadioGroup group, int checkedId) {
+                int tier = ImageCodec.TIER_BALANCED;
+                if (checkedId == R.id.codec_tier_fast) {
+                    tier = ImageCodec.TIER_FAST;
+                } else if (checkedId == R.id.codec_tier_small) {
+                    tier = ImageCodec.TIER_SMALL;
+                }
+                PreferenceUtil.saveCodecTier(CodecSettingsActivity.this, tier);
+            }
+        });
+
+        // 添加规格，默认为用于分享的半尺寸JPEG
+        mOutputVariantAdd.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showOutputVariantDialog(new OutputVariant("share", 50, 0, ImageCodec.JPEG, 80,
+                        Constants.SCREENSHOT_DIR + "/Share", true), true);
+            }
+        });
+
+        // 格式对比卡片点击监听
+        mBenchmarkCard.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                runBenchmark();
+            }
+        });
+    }
+
+    private static int getCodecTierButtonId(int tier) {
+        switch (tier) {
+            case ImageCodec.TIER_FAST:
+                return R.id.codec_tier_fast;
+            case ImageCodec.TIER_SMALL:
+                return R.id.codec_tier_small;
+            default:
+                return R.id.codec_tier_balanced;
+        }
+    }
+
+    /**
+     * 按预算类型切换滑块的范围，先设范围再设值，值不在范围内时滑块会抛出异常
+     */
+    private void updateAutoQualityBudget(int target) {
+        int budget;
+        if (target == Constants.AUTO_QUALITY_TARGET_TIME) {
+            budget = PreferenceUtil.getAutoQualityMaxTimeMs(this);
+            mAutoQualityBudgetSlider.setValueFrom(50);
+            mAutoQualityBudgetSlider.setValueTo(1000);
+            mAutoQualityBudgetSlider.setStepSize(50);
+            mAutoQualityBudgetText.setText(budget + "ms");
+        } else {
+            budget = PreferenceUtil.getAutoQualityMaxSizeKb(this);
+            mAutoQualityBudgetSlider.setValueFrom(256);
+            mAutoQualityBudgetSlider.setValueTo(4096);
+            mAutoQualityBudgetSlider.setStepSize(128);
+            mAutoQualityBudgetText.setText(budget + "KB");
+        }
+        mAutoQualityBudgetSlider.setValue(budget);
+    }
+
+    private void updateAutoQualityCardState(boolean enabled) {
+        mAutoQualityTargetGroup.setAlpha(enabled ? 1.0f : 0.5f);
+        for (int i = 0; i < mAutoQualityTargetGroup.getChildCount(); i++) {
+            mAutoQualityTargetGroup.getChildAt(i).setEnabled(enabled);
+        }
+        mAutoQualityBudgetSlider.setEnabled(enabled);
+        mAutoQualityBudgetSlider.setAlpha(enabled ? 1.0f : 0.5f);
+        mAutoQualityMinSlider.setEnabled(enabled);
+        mAutoQualityMinSlider.setAlpha(enabled ? 1.0f : 0.5f);
+    }
+
+    /**
+     * 重建规格列表，每行显示名称、尺寸、格式和目录
+     */
+    private void updateOutputVariants() {
+        mOutputVariantsContainer.removeAllViews();
+        LayoutInflater inflater = LayoutInflater.from(this);
+        for (OutputVariant variant : mOutputVariants) {
+            View row = inflater.inflate(R.layout.item_output_variant, mOutputVariantsContainer, false);
+            TextView name = row.findViewById(R.id.output_variant_name);
+            TextView info = row.findViewById(R.id.output_variant_info);
+            SwitchCompat enabled = row.findViewById(R.id.output_variant_switch);
+            name.setText(variant.getName());
+            info.setText(formatVariant(variant));
+            enabled.setChecked(variant.isEnabled());
+            enabled.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+                @Override
+                public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                    variant.setEnabled(isChecked);
+                    PreferenceUtil.saveOutputVariants(CodecSettingsActivity.this, mOutputVariants);
+                }
+            });
+            row.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    showOutputVariantDialog(variant, false);
+                }
+            });
+            mOutputVariantsContainer.addView(row);
+        }
+    }
+
+    private String formatVariant(OutputVariant variant) {
+        String size;
+        if (variant.getMaxShortSide() > 0) {
+            size = variant.getMaxShortSide() + "p";
+        } else if (variant.getScalePercent() >= 100) {
+            size = getString(R.string.output_variant_size_full);
+        } else {
+            size = variant.getScalePercent() + "%";
+        }
+        String codec = ImageCodec.getName(variant.getCodec());
+        if (ImageCodec.isLossy(variant.getCodec())) {
+            codec += " " + variant.getQuality();
+        }
+        return size + " · " + codec + " · " + variant.getDirectoryOrDefault();
+    }
+
+    private void showOutputVariantDialog(OutputVariant variant, boolean isNew) {
+        OutputVariantDialog dialog = new OutputVariantDialog(this, variant, isNew);
+        dialog.setOnVariantChangeListener(new OutputVariantDialog.OnVariantChangeListener() {
+            @Override
+            public void onVariantSave(OutputVariant variant) {
+                if (isNew) {
+                    mOutputVariants.add(variant);
+                }
+                PreferenceUtil.saveOutputVariants(CodecSettingsActivity.this, mOutputVariants);
+                updateOutputVariants();
+            }
+
+            @Override
+            public void onVariantDelete(OutputVariant variant) {
+                mOutputVariants.remove(variant);
+                PreferenceUtil.saveOutputVariants(CodecSettingsActivity.this, mOutputVariants);
+                updateOutputVariants();
+            }
+        });
+        dialog.show();
+    }
+
+    private void updateCodecText(TextView textView, int captureType) {
+        textView.setText(ImageCodec.getName(PreferenceUtil.getCaptureCodec(this, captureType)));
+    }
+
+    private void showCodecMenu(TextView anchorView, int captureType) {
+        // 锚定在格式文字上，菜单在右侧弹出
+        PopupMenu popupMenu = new PopupMenu(this, anchorView, Gravity.END, 0, R.style.RoundedPopupMenuStyle);
+        popupMenu.getMenuInflater().inflate(R.menu.menu_codec, popupMenu.getMenu());
+
+        // 设置选中项的勾选标记
+        int codec = PreferenceUtil.getCaptureCodec(this, captureType);
+        if (codec >= 0 && codec < CODEC_MENU_IDS.length) {
+            popupMenu.getMenu().findItem(CODEC_MENU_IDS[codec]).setChecked(true);
+        }
+
+        popupMenu.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
+            @Override
+            public boolean onMenuItemClick(MenuItem item) {
+                for (int i = 0; i < CODEC_MENU_IDS.length; i++) {
+                    if (item.getItemId() != CODEC_MENU_IDS[i]) {
+                        continue;
+                    }
+                    PreferenceUtil.saveCaptureCodec(CodecSettingsActivity.this, captureType, i);
+                    updateCodecText(anchorView, captureType);
+                    if (i == ImageCodec.HEIF && !ImageCodec.isHeifAvailable()) {
+                        Toast.makeText(CodecSettingsActivity.this, R.string.codec_heif_unavailable,
+                                Toast.LENGTH_SHORT).show();
+                    }
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        popupMenu.show();
+    }
+
+    /**
+     * 在后台载入样本截图，按每种格式各编码一次后显示耗时和大小
+     */
+    private void runBenchmark() {
+        if (mBenchmarkRunning) {
+            return;
+        }
+        mBenchmarkRunning = true;
+        mBenchmarkResult.setVisibility(View.VISIBLE);
+        mBenchmarkResult.setText(R.string.codec_benchmark_running);
+        int quality = PreferenceUtil.getLossyQuality(this);
+        mBenchmarkExecutor.execute(() -> {
+            Bitmap sample = CodecBenchmark.loadSample(this);
+            if (sample == null) {
+                mMainHandler.post(() -> showBenchmarkResult(getString(R.string.codec_benchmark_no_sample)));
+                return;
+            }
+            StringBuilder text = new StringBuilder(
+                    getString(R.string.codec_benchmark_sample, sample.getWidth(), sample.getHeight()));
+            try {
+                List<CodecBenchmark.Result> results = CodecBenchmark.run(this, sample, quality, mPngExecutor);
+                for (CodecBenchmark.Result result : results) {
+                    text.append('\n').append(formatResult(result));
+                }
+                for (CodecBenchmark.ScaleResult result : CodecBenchmark.runScale(sample)) {
+                    text.append('\n').append(getString(R.string.codec_benchmark_scale, result.name,
+                            result.width, result.height, result.areaMillis, result.bilinearMillis));
+                }
+            } finally {
+                sample.recycle();
+            }
+            mMainHandler.post(() -> showBenchmarkResult(text.toString()));
+        });
+    }
+
+    private String formatResult(CodecBenchmark.Result result) {
+        String name = ImageCodec.getName(result.codec);
+        if (ImageCodec.isLossy(result.codec)) {
+            name += " " + PreferenceUtil.getLossyQuality(this);
+        }
+        if (result.codec == ImageCodec.HEIF && ImageCodec.isHeifAvailable()) {
+            name += ImageCodec.isHeifHardware() ? "（硬件）" : "（软件）";
+        }
+        if (result.error != null) {
+            return name + "  " + result.error;
+        }
+        return String.format(Locale.getDefault(), "%s  %s  %dms",
+                name, Formatter.formatShortFileSize(this, result.bytes), result.millis);
+    }
+
+    private void showBenchmarkResult(String text) {
+        mBenchmarkRunning = false;
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        mBenchmarkResult.setText(text);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            // 返回上一级活动
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -0,0 +1,79 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+
+import java.util.Locale;
+
+/**
+ * 拼接过程统计
+ * 记录每个阶段的耗时，以及拼接过程中同时存活的临时位图的峰值内存
+ */
+public class CompositionStats {
+
+    private final String mName;
+    private final long mStartTime;
+    private long mLastTime;
+    private final StringBuilder mStages = new StringBuilder();
+    private long mCurrentBytes = 0;
+    private long mPeakBytes = 0;
+
+    public CompositionStats(String name) {
+        mName = name;
+        mStartTime = SystemClock.uptimeMillis();
+        mLastTime = mStartTime;
+    }
+
+    /**
+     * 结束一个阶段，记录其耗时
+     */
+    public void mark(String stage) {
+        long now = SystemClock.uptimeMillis();
+        mStages.append(stage).append(' ').append(now - mLastTime).append("ms, ");
+        mLastTime = now;
+    }
+
+    /**
+     * 记录新分配的位图
+     */
+    public void allocate(Bitmap bitmap) {
+        mCurrentBytes += bitmap.getAllocationByteCount();
+        mPeakBytes = Math.max(mPeakBytes, mCurrentBytes);
+    }
+
+    /**
+     * 记录释放的位图，需在 recycle 之前调用
+     */
+    public void release(Bitmap bitmap) {
+        mCurrentBytes -= bitmap.getAllocationByteCount();
+    }
+
+    /**
+     * 记录新分配的缓冲区
+     */
+    public void allocate(long bytes) {
+        mCurrentBytes += bytes;
+        mPeakBytes = Math.max(mPeakBytes, mCurrentBytes);
+    }
+
+    /**
+     * 记录释放的缓冲区
+     */
+    public void release(long bytes) {
+        mCurrentBytes -= bytes;
+    }
+
+    public long getPeakBytes() {
+        return mPeakBytes;
+    }
+
+    public long getTotalTime() {
+        return mLastTime - mStartTime;
+    }
+
+    @Override
+    public String toString() {
+        return mName + ": " + mStages + "总计 " + getTotalTime() + "ms, 峰值内存 " +
+                String.format(Locale.US, "%.1f", mPeakBytes / 1024f / 1024f) + "MB";
+    }
+}
@@ -20,13 +20,38 @@ public class Constants {
     public static final String KEY_FRAME_SCREENSHOT_ENABLED = "frame_screenshot_enabled"; // 套壳截屏开关
     public static final String KEY_FRAME_COLOR_INDEX = "frame_color_index"; // 机身颜色选择
     public static final String KEY_FRAME_IMAGE_QUALITY = "frame_image_quality"; // 套壳截屏图像质量
+    public static final String KEY_FRAME_SCALE_FILTER = "frame_scale_filter"; // 套壳截屏缩放过滤方式
+    public static final String KEY_FRAME_RAW_CACHE_ENABLED = "frame_raw_cache_enabled"; // 机身图片原始像素缓存开关
+    public static final String KEY_STRIPED_ENCODING_ENABLED = "striped_encoding_enabled"; // 套壳截屏分段编码开关
+    public static final String KEY_STRIPE_BUDGET_KB = "stripe_budget_kb"; // 分段编码的分段缓冲区预算
+    public static final String KEY_FRAME_JPEG_CACHE_ENABLED = "frame_jpeg_cache_enabled"; // 机身区域JPEG编码缓存开关
+    public static final String KEY_LEARNED_SCREENSHOT_INTERVAL_PREFIX = "learned_screenshot_interval_"; // 按Display学习的截图间隔
+    public static final String KEY_CONCURRENT_CAPTURE_ENABLED = "concurrent_capture_enabled"; // 双屏并发截图
+    public static final String KEY_CAPTURE_BACKEND = "capture_backend"; // 截图后端
+    public static final String KEY_PIPELINED_CAPTURE_ENABLED = "pipelined_capture_enabled"; // 双屏流水线预处理
+    public static final String KEY_PREROLL_ENABLED = "preroll_enabled"; // 预截图
+    public static final String KEY_PREROLL_MEMORY_LIMIT_MB = "preroll_memory_limit_mb"; // 预截图缓存内存上限
+    public static final String KEY_BITMAP_POOL_LIMIT_MB = "bitmap_pool_limit_mb"; // 位图复用池内存上限
+    public static final String KEY_GESTURE_ACTION_PREFIX = "gesture_action_"; // 扩展手势映射的功能
+    public static final String KEY_PARALLEL_PNG_ENABLED = "parallel_png_enabled"; // 多核PNG编码开关
+    public static final String KEY_PNG_PRESET = "png_preset"; // 多核PNG编码预设
+    public static final String KEY_DEFERRED_SAVE_ENABLED = "deferred_save_enabled"; // 延后压缩保存开关
+    public static final String KEY_CAPTURE_CODEC_PREFIX = "capture_codec_"; // 按截图类型选择的保存格式
+    public static final String KEY_LOSSY_QUALITY = "lossy_quality"; // 单屏和双屏截图的有损压缩质量
+    public static final String KEY_CODEC_TIER = "codec_tier"; // 编码档位
+    public static final String KEY_AUTO_QUALITY_ENABLED = "auto_quality_enabled"; // 自动质量开关
+    public static final String KEY_AUTO_QUALITY_TARGET = "auto_quality_target"; // 自动质量的预算类型
+    public static final String KEY_AUTO_QUALITY_MAX_SIZE_KB = "auto_quality_max_size_kb"; // 文件大小上限
+    public static final String KEY_AUTO_QUALITY_MAX_TIME_MS = "auto_quality_max_time_ms"; // 编码耗时上限
+    public static final String KEY_AUTO_QUALITY_MIN = "auto_quality_min"; // 自动质量的最低质量
+    public static final String KEY_OUTPUT_VARIANTS = "output_variants"; // 额外输出规格列表
     
     // 默认值
     public static final boolean DEFAULT_SERVICE_ENABLED = false;
     public static final int DEFAULT_OVERLAY_HEIGHT = 24; // 默认24dp
     public static final int MIN_OVERLAY_HEIGHT = 5;      // 最小5dp
     public static final int MAX_OVERLAY_HEIGHT = 50;     // 最大50dp
-    public static final int DEFAULT_SCREENSHOT_DELAY = 329; // 默认329ms
+    public static final int DEFAULT_SCREENSHOT_DELAY = 329; // 截图间隔学习的初始值329ms
     public static final boolean DEFAULT_HIDE_FROM_RECENTS = false;
     public static final boolean DEFAULT_SOUND_EFFECT_ENABLED = true; // 默认开启截屏音效
     public static final boolean DEFAULT_FRAME_SCREENSHOT_ENABLED = false; // 默认关闭套壳截屏
@@ -34,6 +59,37 @@ public class Constants {
     public static final int DEFAULT_FRAME_IMAGE_QUALITY = 10; // 默认图像质量10(对应PNG格式100%)
     public static final int MIN_FRAME_IMAGE_QUALITY = 6; // 最小图像质量6
     public static final int MAX_FRAME_IMAGE_QUALITY = 10; // 最大图像质量10
+    public static final int FRAME_SCALE_FILTER_BILINEAR = 0; // 双线性过滤
+    public static final int FRAME_SCALE_FILTER_NEAREST = 1; // 最近邻，适合像素画
+    public static final int DEFAULT_FRAME_SCALE_FILTER = FRAME_SCALE_FILTER_BILINEAR;
+    public static final boolean DEFAULT_FRAME_RAW_CACHE_ENABLED = true; // 默认缓存解码后的机身图片
+    public static final boolean DEFAULT_STRIPED_ENCODING_ENABLED = false; // 默认关闭分段编码
+    public static final int DEFAULT_STRIPE_BUDGET_KB = 4096; // 分段缓冲区默认4MB，2400宽时每段约200行
+    public static final boolean DEFAULT_FRAME_JPEG_CACHE_ENABLED = true; // 默认缓存机身区域的JPEG编码结果
+    public static final boolean DEFAULT_CONCURRENT_CAPTURE_ENABLED = true; // 默认双屏同时发起截图
+    public static final int CAPTURE_BACKEND_ACCESSIBILITY = 0; // 无障碍截图
+    public static final int CAPTURE_BACKEND_PROJECTION = 1; // MediaProjection镜像截图
+    public static final int DEFAULT_CAPTURE_BACKEND = CAPTURE_BACKEND_ACCESSIBILITY;
+    public static final boolean DEFAULT_PIPELINED_CAPTURE_ENABLED = true; // 默认在等待副屏时预处理主屏
+    public static final boolean DEFAULT_PREROLL_ENABLED = false; // 默认关闭预截图
+    public static final int DEFAULT_PREROLL_MEMORY_LIMIT_MB = 48; // 预截图缓存默认48MB，约可容纳主副屏各两帧
+    public static final int DEFAULT_BITMAP_POOL_LIMIT_MB = 40; // 位图复用池默认40MB，可容纳一次双屏拼接的临时位图
+    public static final int DEFAULT_GESTURE_ACTION = 0; // 默认扩展手势使用所在区域的功能（FEATURE_NONE）
+    public static final boolean DEFAULT_PARALLEL_PNG_ENABLED = true; // 默认使用多核PNG编码
+    public static final int DEFAULT_PNG_PRESET = PngEncoder.PRESET_BALANCED; // 默认均衡预设
+    public static final boolean DEFAULT_DEFERRED_SAVE_ENABLED = false; // 默认截图时直接压缩保存
+    public static final int CAPTURE_TYPE_SINGLE = 0; // 单屏截图
+    public static final int CAPTURE_TYPE_BOTH = 1; // 双屏拼接截图
+    public static final int CAPTURE_TYPE_FRAMED = 2; // 套壳截图
+    public static final int DEFAULT_LOSSY_QUALITY = 90; // 有损格式默认质量90
+    public static final int DEFAULT_CODEC_TIER = ImageCodec.TIER_BALANCED; // 默认均衡档位
+    public static final boolean DEFAULT_AUTO_QUALITY_ENABLED = false; // 默认使用设置的固定质量
+    public static final int AUTO_QUALITY_TARGET_SIZE = 0; // 按文件大小
+    public static final int AUTO_QUALITY_TARGET_TIME = 1; // 按编码耗时
+    public static final int DEFAULT_AUTO_QUALITY_TARGET = AUTO_QUALITY_TARGET_SIZE;
+    public static final int DEFAULT_AUTO_QUALITY_MAX_SIZE_KB = 1024; // 默认每张不超过1MB
+    public static final int DEFAULT_AUTO_QUALITY_MAX_TIME_MS = 300; // 默认编码不超过300ms
+    public static final int DEFAULT_AUTO_QUALITY_MIN = 70; // 默认最低质量70，再低画面会出现明显的块效应
     public static final int MIN_SCREENSHOT_DELAY = 0;        // 最小0ms
     public static final int MAX_SCREENSHOT_DELAY = 1000;     // 最大1000ms
     
@@ -62,6 +118,11 @@ public class Constants {
     public static final String ACTION_CAPTURE_SUB = "com.dualscreen.ACTION_CAPTURE_SUB";
     public static final String ACTION_CAPTURE_BOTH = "com.dualscreen.ACTION_CAPTURE_BOTH";
     public static final String ACTION_GO_HOME = "com.dualscreen.ACTION_GO_HOME";
+    public static final String ACTION_SPECULATIVE_CAPTURE = "com.dualscreen.ACTION_SPECULATIVE_CAPTURE";
+    public static final String ACTION_SPECULATIVE_CANCEL = "com.dualscreen.ACTION_SPECULATIVE_CANCEL";
+    public static final String ACTION_PROJECTION_GRANTED = "com.dualscreen.ACTION_PROJECTION_GRANTED";
+    public static final String ACTION_PROJECTION_STOP = "com.dualscreen.ACTION_PROJECTION_STOP";
+    public static final String ACTION_PREROLL_CHANGED = "com.dualscreen.ACTION_PREROLL_CHANGED";
     public static final String ACTION_START_SERVICE = "com.dualscreen.action.START_SERVICE";
     public static final String ACTION_STOP_SERVICE = "com.dualscreen.action.STOP_SERVICE";
     public static final String ACTION_CAPTURE_SCREEN = "com.dualscreen.action.CAPTURE_SCREEN";
@@ -70,6 +131,9 @@ public class Constants {
     public static final String EXTRA_PREVIEW_ENABLED = "preview_enabled";
     public static final String EXTRA_SCREEN_TYPE = "com.dualscreen.extra.SCREEN_TYPE";
     public static final String EXTRA_OVERLAY_HEIGHT = "com.dualscreen.extra.OVERLAY_HEIGHT";
+    public static final String EXTRA_PROJECTION_RESULT_CODE = "com.dualscreen.extra.PROJECTION_RESULT_CODE";
+    public static final String EXTRA_PROJECTION_DATA = "com.dualscreen.extra.PROJECTION_DATA";
+    public static final String EXTRA_GESTURE_DOWN_TIME = "com.dualscreen.extra.GESTURE_DOWN_TIME";
     
     // 文件保存相关
     public static final String SCREENSHOT_DIR = "ThorScreenshots";
@@ -0,0 +1,219 @@
+package com.screencap.assistant;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 套壳机身图片缓存
+ * 机身图片为2400x2900的PNG，每次截图都解码一次需要几十毫秒和约28MB内存。
+ * 这里常驻当前所选颜色的解码结果，切换颜色时在后台预取；
+ * 开启原始像素缓存时还会把解码结果写入缓存目录，进程重启后通过内存映射直接载入，不必重新解码PNG。
+ * 内存紧张时（onTrimMemory）只释放引用，不主动 recycle，避免正在拼接的线程读到已回收的位图。
+ * 返回的位图由缓存持有，调用方不能 recycle
+ */
+public class FrameAssetCache {
+
+    private static final String TAG = "FrameAssetCache";
+
+    // 原始像素缓存文件头：宽、高
+    private static final int RAW_HEADER_BYTES = 8;
+
+    private static FrameAssetCache sInstance;
+
+    private final Context mContext;
+    private final ExecutorService mPrefetchExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "frame-prefetch"));
+
+    private int mCachedResId = 0;
+    private Bitmap mCachedBitmap;
+
+    // 统计
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+
+    public static synchronized FrameAssetCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new FrameAssetCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private FrameAssetCache(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * 机身颜色对应的机身图片
+     */
+    public static int getFrameResId(int colorIndex) {
+        switch (colorIndex) {
+            case 1: // 白色
+                return R.drawable.white;
+            case 2: // 灰彩
+                return R.drawable.grey;
+            case 3: // 紫透
+                return R.drawable.purple;
+            case 0: // 黑色
+            default:
+                return R.drawable.black;
+        }
+    }
+
+    /**
+     * 获取指定颜色的机身图片，未缓存时同步载入
+     * 调用方应保留所用的颜色，机身编码缓存需要按同一颜色准备
+     */
+    public synchronized Bitmap get(int colorIndex) {
+        int resId = getFrameResId(colorIndex);
+        if (mCachedBitmap != null && mCachedResId == resId) {
+            mHitCount++;
+            return mCachedBitmap;
+        }
+        mMissCount++;
+        long startTime = SystemClock.uptimeMillis();
+        Bitmap bitmap = load(resId);
+        mCachedResId = resId;
+        mCachedBitmap = bitmap;
+        Log.i(TAG, "载入机身图片 " + colorIndex + ", 耗时 " + (SystemClock.uptimeMillis() - startTime) +
+                "ms, 命中: " + mHitCount + ", 未命中: " + mMissCount);
+        return bitmap;
+    }
+
+    /**
+     * 在后台预取指定颜色的机身图片，切换机身颜色或开启套壳截屏时调用
+     */
+    public void prefetch(int colorIndex) {
+        mPrefetchExecutor.execute(() -> get(colorIndex));
+    }
+
+    /**
+     * 按内存紧张程度释放缓存
+     */
+    public synchronized void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW && mCachedBitmap != null) {
+            Log.i(TAG, "内存紧张(level=" + level + ")，释放机身图片缓存");
+            mCachedBitmap = null;
+            mCachedResId = 0;
+        }
+    }
+
+    private Bitmap load(int resId) {
+        boolean rawCacheEnabled = PreferenceUtil.getFrameRawCacheEnabled(mContext);
+        File rawFile = rawCacheEnabled ? getRawFile(resId) : null;
+        if (rawFile != null && rawFile.exists()) {
+            Bitmap bitmap = loadRaw(rawFile);
+            if (bitmap != null) {
+                return bitmap;
+            }
+            rawFile.delete();
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inScaled = false;
+        Bitmap bitmap = BitmapFactory.decodeResource(mContext.getResources(), resId, options);
+        if (rawFile != null && bitmap != null) {
+            deleteStaleRaw();
+            saveRaw(rawFile, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 删除应用更新前留下的原始像素缓存，当前版本的其他颜色保留
+     */
+    private void deleteStaleRaw() {
+        String current = "_" + getVersionStamp() + ".raw";
+        File[] files = mContext.getCacheDir().listFiles((dir, name) -> name.startsWith("frame_")
+                && (name.endsWith(".raw") || name.endsWith(".raw.tmp")) && !name.contains(current));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.delete()) {
+                Log.i(TAG, "删除过期的原始像素缓存: " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * 通过内存映射载入原始像素缓存
+     */
+    private Bitmap loadRaw(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if (width <= 0 || height <= 0 || channel.size() != RAW_HEADER_BYTES + (long) width * height * 4) {
+                Log.w(TAG, "原始像素缓存已损坏: " + file.getName());
+                return null;
+            }
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmap.copyPixelsFromBuffer(buffer.slice());
+            bitmap.setImmutable();
+            return bitmap;
+        } catch (Exception e) {
+            Log.w(TAG, "读取原始像素缓存失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveRaw(File file, Bitmap bitmap) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile);
+             FileChannel channel = out.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(RAW_HEADER_BYTES);
+            header.putInt(bitmap.getWidth()).putInt(bitmap.getHeight()).flip();
+            channel.write(header);
+            ByteBuffer pixels = ByteBuffer.allocateDirect(bitmap.getByteCount());
+            bitmap.copyPixelsToBuffer(pixels);
+            pixels.flip();
+            while (pixels.hasRemaining()) {
+                channel.write(pixels);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "写入原始像素缓存失败: " + e.getMessage());
+            tempFile.delete();
+            return;
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * 原始像素缓存文件，文件名包含应用更新时间，应用更新后旧缓存自动失效
+     */
+    private File getRawFile(int resId) {
+        String name = mContext.getResources().getResourceEntryName(resId);
+        return new File(mContext.getCacheDir(), "frame_" + name + "_" + getVersionStamp() + ".raw");
+    }
+
+    /**
+     * 应用更新时间，获取失败时为0
+     */
+    private long getVersionStamp() {
+        try {
+            return mContext.getPackageManager()
+                    .getPackageInfo(mContext.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "获取应用信息失败: " + e.getMessage());
+            return 0;
+        }
+    }
+}
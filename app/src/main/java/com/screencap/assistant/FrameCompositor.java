@@ -0,0 +1,199 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * 套壳截图的脏区域拼接
+ * 机身在两次截图之间不会变化，变化的只有两个屏幕窗口。
+ * 这里常驻一张已绘制好机身的底图，并预先按机身透明度计算每个窗口的遮罩：
+ * - 窗口遮罩：窗口内机身不完全不透明的像素，每次截图在此范围内清空并重绘屏幕
+ * - 混合遮罩：窗口内机身半透明的像素（圆角、边缘抗锯齿），重绘屏幕后再叠加机身
+ * 窗口外和机身完全不透明的像素不再触碰。
+ * 返回的位图为常驻底图，调用方不能 recycle，且需在下一次拼接前用完
+ */
+public class FrameCompositor {
+
+    private static final String TAG = "FrameCompositor";
+
+    private final int mWidth;
+    private final int mHeight;
+    private final Rect[] mWindows;
+    private final Path[] mWindowMasks;
+    private final Path[] mBlendMasks;
+    private final long[] mWindowPixels;
+    private final long[] mBlendPixels;
+    private final Matrix mMatrix = new Matrix();
+
+    // 常驻底图，以及生成底图所用的机身图片
+    private Bitmap mTarget;
+    private Canvas mCanvas;
+    private Bitmap mFrame;
+
+    // 统计
+    private int mShotCount = 0;
+    private long mLastTouchedPixels = 0;
+    private long mTotalTouchedPixels = 0;
+
+    /**
+     * @param width 画布宽度
+     * @param height 画布高度
+     * @param windows 屏幕窗口区域，顺序与 compose 传入的截图一致
+     */
+    public FrameCompositor(int width, int height, Rect... windows) {
+        mWidth = width;
+        mHeight = height;
+        mWindows = windows;
+        mWindowMasks = new Path[windows.length];
+        mBlendMasks = new Path[windows.length];
+        mWindowPixels = new long[windows.length];
+        mBlendPixels = new long[windows.length];
+    }
+
+    /**
+     * 把截图拼接到机身中
+     * @param frame 机身图片，与上次不同时重建底图和遮罩
+     * @param screens 各窗口的截图，需为软件位图
+     * @return 常驻底图，不能 recycle
+     */
+    public synchronized Bitmap compose(Bitmap frame, Paint paint, Bitmap... screens) {
+        if (screens.length != mWindows.length) {
+            throw new IllegalArgumentException("截图数量与窗口数量不一致");
+        }
+        ensureBase(frame);
+        long touched = 0;
+        for (int i = 0; i < mWindows.length; i++) {
+            Rect window = mWindows[i];
+            // 清空窗口遮罩内的上一张截图，再绘制本次截图
+            mCanvas.save();
+            mCanvas.clipPath(mWindowMasks[i]);
+            mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            drawIntoRect(screens[i], window.left, window.top, window.width(), window.height(), paint);
+            mCanvas.restore();
+            // 半透明处重新叠加机身
+            if (mBlendPixels[i] > 0) {
+                mCanvas.save();
+                mCanvas.clipPath(mBlendMasks[i]);
+                drawIntoRect(frame, 0, 0, mWidth, mHeight, paint);
+                mCanvas.restore();
+            }
+            touched += mWindowPixels[i] + mBlendPixels[i];
+        }
+        mShotCount++;
+        mLastTouchedPixels = touched;
+        mTotalTouchedPixels += touched;
+        return mTarget;
+    }
+
+    /**
+     * 机身变化时绘制底图并计算遮罩
+     */
+    private void ensureBase(Bitmap frame) {
+        if (mTarget != null && mFrame == frame) {
+            return;
+        }
+        long startTime = SystemClock.uptimeMillis();
+        if (mTarget == null) {
+            mTarget = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mTarget);
+        } else {
+            mTarget.eraseColor(Color.TRANSPARENT);
+        }
+        if (frame.getWidth() != mWidth || frame.getHeight() != mHeight) {
+            Log.w(TAG, "机身图片尺寸不匹配: " + frame.getWidth() + "x" + frame.getHeight() +
+                    ", 期望: " + mWidth + "x" + mHeight);
+        }
+        drawIntoRect(frame, 0, 0, mWidth, mHeight, null);
+        mFrame = frame;
+
+        int[] row = new int[mWidth];
+        for (int i = 0; i < mWindows.length; i++) {
+            Rect window = mWindows[i];
+            Region windowRegion = new Region();
+            Region blendRegion = new Region();
+            long windowPixels = 0;
+            long blendPixels = 0;
+            for (int y = window.top; y < window.bottom; y++) {
+                mTarget.getPixels(row, 0, window.width(), window.left, y, window.width(), 1);
+                windowPixels += addRuns(windowRegion, row, window.width(), window.left, y, false);
+                blendPixels += addRuns(blendRegion, row, window.width(), window.left, y, true);
+            }
+            mWindowMasks[i] = windowRegion.getBoundaryPath();
+            mBlendMasks[i] = blendRegion.getBoundaryPath();
+            mWindowPixels[i] = windowPixels;
+            mBlendPixels[i] = blendPixels;
+            Log.i(TAG, "窗口 " + window.toShortString() + ": 重绘 " + windowPixels + " 像素, 混合 " + blendPixels + " 像素");
+        }
+        Log.i(TAG, "重建机身底图, 耗时 " + (SystemClock.uptimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * 把一行中满足条件的连续像素加入区域
+     * @param blendOnly true 时只取半透明像素，否则取所有不完全不透明的像素
+     * @return 加入的像素数
+     */
+    private static int addRuns(Region region, int[] row, int length, int left, int y, boolean blendOnly) {
+        int count = 0;
+        int runStart = -1;
+        for (int x = 0; x <= length; x++) {
+            boolean inMask = false;
+            if (x < length) {
+                int alpha = Color.alpha(row[x]);
+                inMask = alpha < 255 && (!blendOnly || alpha > 0);
+            }
+            if (inMask && runStart < 0) {
+                runStart = x;
+            } else if (!inMask && runStart >= 0) {
+                region.op(left + runStart, y, left + x, y + 1, Region.Op.UNION);
+                count += x - runStart;
+                runStart = -1;
+            }
+        }
+        return count;
+    }
+
+    private void drawIntoRect(Bitmap bitmap, int x, int y, int width, int height, Paint paint) {
+        mMatrix.setScale((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight());
+        mMatrix.postTranslate(x, y);
+        mCanvas.drawBitmap(bitmap, mMatrix, paint);
+    }
+
+    /**
+     * 位图是否为常驻底图
+     */
+    public synchronized boolean isTarget(Bitmap bitmap) {
+        return bitmap != null && bitmap == mTarget;
+    }
+
+    /**
+     * 释放底图，下次拼接时重建
+     * 只释放引用，不 recycle，避免仍在编码的调用方读到已回收的位图
+     */
+    public synchronized void release() {
+        mTarget = null;
+        mCanvas = null;
+        mFrame = null;
+    }
+
+    /**
+     * 触碰像素统计
+     */
+    public synchronized String getStats() {
+        long canvasPixels = (long) mWidth * mHeight;
+        float ratio = canvasPixels > 0 ? mLastTouchedPixels * 100f / canvasPixels : 0;
+        long average = mShotCount > 0 ? mTotalTouchedPixels / mShotCount : 0;
+        return String.format(Locale.US, "拼接 %d 次, 本次触碰 %d 像素 (画布的 %.1f%%), 平均 %d 像素",
+                mShotCount, mLastTouchedPixels, ratio, average);
+    }
+}
@@ -0,0 +1,154 @@
+package com.screencap.assistant;
+
+import android.graphics.Rect;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * 套壳截图机身区域的JPEG编码缓存
+ * 套壳截图按重启间隔分段编码，不与屏幕区域相交的段只由机身图片决定，
+ * 对同一机身颜色、JPEG质量和缩放过滤方式，每次编码的结果都完全相同。
+ * 第一次编码时缓存这些段的熵编码数据，之后只编码与屏幕区域相交的段。
+ * 自动质量下每次截图的质量可能不同，按质量分别缓存最近用过的几组
+ */
+public class FrameJpegCache {
+
+    // 每段的目标MCU数，段越短可跳过的面积越大，但重启标记和DC预测清零的开销越多
+    private static final int TARGET_SEGMENT_MCUS = 10;
+    // 最多同时缓存的质量数，超过后淘汰最久未用的
+    private static final int MAX_QUALITIES = 3;
+
+    private final int mRestartInterval;
+    private final boolean[] mStatic;
+    // 按质量缓存的各段数据，按访问顺序排列
+    private final LinkedHashMap<Integer, byte[][]> mSegments = new LinkedHashMap<>(MAX_QUALITIES + 1, 0.75f, true);
+    // 机身颜色和缩放过滤方式，变化时所有质量的缓存都失效
+    private String mKey;
+
+    /**
+     * @param windows 屏幕区域，与这些区域相交的段每次都重新编码
+     */
+    public FrameJpegCache(int width, int height, Rect... windows) {
+        int mcusPerRow = (width + JpegStreamEncoder.MCU_SIZE - 1) / JpegStreamEncoder.MCU_SIZE;
+        int mcuRows = (height + JpegStreamEncoder.MCU_SIZE - 1) / JpegStreamEncoder.MCU_SIZE;
+        mRestartInterval = chooseRestartInterval(mcusPerRow, TARGET_SEGMENT_MCUS);
+        int segmentsPerRow = mcusPerRow / mRestartInterval;
+        mStatic = new boolean[segmentsPerRow * mcuRows];
+        int segmentWidth = mRestartInterval * JpegStreamEncoder.MCU_SIZE;
+        Rect segmentRect = new Rect();
+        for (int i = 0; i < mStatic.length; i++) {
+            int left = (i % segmentsPerRow) * segmentWidth;
+            int top = (i / segmentsPerRow) * JpegStreamEncoder.MCU_SIZE;
+            segmentRect.set(left, top, left + segmentWidth, top + JpegStreamEncoder.MCU_SIZE);
+            boolean isStatic = true;
+            for (Rect window : windows) {
+                // 外扩1像素，双线性缩放可能影响屏幕区域边缘的像素
+                if (Rect.intersects(segmentRect, new Rect(window.left - 1, window.top - 1,
+                        window.right + 1, window.bottom + 1))) {
+                    isStatic = false;
+                    break;
+                }
+            }
+            mStatic[i] = isStatic;
+        }
+    }
+
+    /**
+     * 选择不超过目标值、且能整除每行MCU数的重启间隔，使每段都不跨MCU行
+     */
+    static int chooseRestartInterval(int mcusPerRow, int target) {
+        for (int interval = Math.min(target, mcusPerRow); interval > 1; interval--) {
+            if (mcusPerRow % interval == 0) {
+                return interval;
+            }
+        }
+        return 1;
+    }
+
+    public int getRestartInterval() {
+        return mRestartInterval;
+    }
+
+    /**
+     * 取得指定机身颜色、JPEG质量和缩放过滤方式的段缓存
+     * 机身颜色或缩放过滤方式变化时清空所有质量的缓存
+     */
+    public synchronized JpegStreamEncoder.SegmentCache prepare(int colorIndex, int quality, int scaleFilter) {
+        String key = colorIndex + "/" + scaleFilter;
+        if (!key.equals(mKey)) {
+            mKey = key;
+            mSegments.clear();
+        }
+        byte[][] segments = mSegments.get(quality);
+        if (segments == null) {
+            segments = new byte[mStatic.length][];
+            mSegments.put(quality, segments);
+            Iterator<byte[][]> iterator = mSegments.values().iterator();
+            while (mSegments.size() > MAX_QUALITIES) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return new Segments(segments);
+    }
+
+    /**
+     * 释放缓存，下次编码重新生成
+     */
+    public synchronized void clear() {
+        mKey = null;
+        mSegments.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        int staticCount = 0;
+        for (boolean isStatic : mStatic) {
+            if (isStatic) {
+                staticCount++;
+            }
+        }
+        long cachedBytes = 0;
+        for (byte[][] segments : mSegments.values()) {
+            for (byte[] data : segments) {
+                cachedBytes += data != null ? data.length : 0;
+            }
+        }
+        return String.format(Locale.US, "机身编码缓存: 重启间隔 %d, 可缓存段 %d/%d, 质量 %s, 占用 %.1fKB",
+                mRestartInterval, staticCount, mStatic.length, mSegments.keySet(), cachedBytes / 1024f);
+    }
+
+    /**
+     * 一种质量的段缓存，被淘汰后继续写入也不再影响缓存
+     */
+    private final class Segments implements JpegStreamEncoder.SegmentCache {
+        private final byte[][] mData;
+
+        Segments(byte[][] data) {
+            mData = data;
+        }
+
+        @Override
+        public byte[] get(int segment) {
+            synchronized (FrameJpegCache.this) {
+                return mData[segment];
+            }
+        }
+
+        @Override
+        public boolean isCacheable(int segment) {
+            return mStatic[segment];
+        }
+
+        @Override
+        public void put(int segment, byte[] data) {
+            synchronized (FrameJpegCache.this) {
+                if (mData[segment] == null) {
+                    mData[segment] = data;
+                }
+            }
+        }
+    }
+}
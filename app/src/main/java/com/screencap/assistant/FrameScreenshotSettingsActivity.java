@@ -29,6 +29,12 @@ public class FrameScreenshotSettingsActivity extends AppCompatActivity {
     private MaterialTextView mColorSelectText;
     private MaterialTextView mImageQualityText;
     private Slider mImageQualitySlider;
+    private MaterialCardView mScaleFilterCard;
+    private SwitchCompat mScaleFilterSwitch;
+    private MaterialCardView mStripedEncodingCard;
+    private SwitchCompat mStripedEncodingSwitch;
+    private MaterialCardView mFrameJpegCacheCard;
+    private SwitchCompat mFrameJpegCacheSwitch;
     private List<String> mColorOptions;
     private int mSelectedColorIndex;
 
@@ -51,6 +57,12 @@ public class FrameScreenshotSettingsActivity extends AppCompatActivity {
         mColorSelectText = findViewById(R.id.color_select_text);
         mImageQualityText = findViewById(R.id.image_quality_text);
         mImageQualitySlider = findViewById(R.id.image_quality_slider);
+        mScaleFilterCard = findViewById(R.id.scale_filter_card);
+        mScaleFilterSwitch = findViewById(R.id.scale_filter_switch);
+        mStripedEncodingCard = findViewById(R.id.striped_encoding_card);
+        mStripedEncodingSwitch = findViewById(R.id.striped_encoding_switch);
+        mFrameJpegCacheCard = findViewById(R.id.frame_jpeg_cache_card);
+        mFrameJpegCacheSwitch = findViewById(R.id.frame_jpeg_cache_switch);
         
         // 设置 Toolbar 的返回按钮监听
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -88,6 +100,9 @@ public class FrameScreenshotSettingsActivity extends AppCompatActivity {
         mEnableFrameSwitch.setChecked(enableFrame);
         updateColorSelectCardState(enableFrame);
         updateImageQualityCardState(enableFrame);
+        updateScaleFilterCardState(enableFrame);
+        updateStripedEncodingCardState(enableFrame);
+        updateFrameJpegCacheCardState(enableFrame);
 
         // 加载机身颜色选择
         mSelectedColorIndex = PreferenceUtil.getFrameColorIndex(this);
@@ -97,6 +112,16 @@ public class FrameScreenshotSettingsActivity extends AppCompatActivity {
         int imageQuality = PreferenceUtil.getFrameImageQuality(this);
         mImageQualitySlider.setValue(imageQuality);
         updateImageQualityText(imageQuality);
+        
+        // 加载缩放过滤方式
+        mScaleFilterSwitch.setChecked(
+                PreferenceUtil.getFrameScaleFilter(this) == Constants.FRAME_SCALE_FILTER_NEAREST);
+        
+        // 加载分段编码开关
+        mStripedEncodingSwitch.setChecked(PreferenceUtil.getStripedEncodingEnabled(this));
+        
+        // 加载机身编码缓存开关
+        mFrameJpegCacheSwitch.setChecked(PreferenceUtil.getFrameJpegCacheEnabled(this));
     }
 
     private void setupListeners() {
@@ -107,6 +132,13 @@ public class FrameScreenshotSettingsActivity extends AppCompatActivity {
                 PreferenceUtil.saveEnableFrameScreenshot(FrameScreenshotSettingsActivity.this, isChecked);
                 updateColorSelectCardState(isChecked);
                 updateImageQualityCardState(isChecked);
+                updateScaleFilterCardState(isChecked);
+                updateStripedEncodingCardState(isChecked);
+                updateFrameJpegCacheCardState(isChecked);
+                if (isChecked) {
+                    FrameAssetCache.getInstance(FrameScreenshotSettingsActivity.this)
+                            .prefetch(mSelectedColorIndex);
+                }
             }
         });
 
@@ -127,6 +159,31 @@ public class FrameScreenshotSettingsActivity extends AppCompatActivity {
                 updateImageQualityText(quality);
             }
         });
+        
+        // 像素风缩放开关监听
+        mScaleFilterSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceUtil.saveFrameScaleFilter(FrameScreenshotSettingsActivity.this,
+                        isChecked ? Constants.FRAME_SCALE_FILTER_NEAREST : Constants.FRAME_SCALE_FILTER_BILINEAR);
+            }
+        });
+        
+        // 分段编码开关监听
+        mStripedEncodingSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceUtil.saveStripedEncodingEnabled(FrameScreenshotSettingsActivity.this, isChecked);
+            }
+        });
+        
+        // 机身编码缓存开关监听
+        mFrameJpegCacheSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceUtil.saveFrameJpegCacheEnabled(FrameScreenshotSettingsActivity.this, isChecked);
+            }
+        });
     }
 
     private void updateColorSelectCardState(boolean enabled) {
@@ -142,6 +199,24 @@ public class FrameScreenshotSettingsActivity extends AppCompatActivity {
         mImageQualityCard.setAlpha(alpha);
     }
     
+    private void updateScaleFilterCardState(boolean enabled) {
+        mScaleFilterCard.setEnabled(enabled);
+        mScaleFilterSwitch.setEnabled(enabled);
+        mScaleFilterCard.setAlpha(enabled ? 1.0f : 0.5f);
+    }
+    
+    private void updateStripedEncodingCardState(boolean enabled) {
+        mStripedEncodingCard.setEnabled(enabled);
+        mStripedEncodingSwitch.setEnabled(enabled);
+        mStripedEncodingCard.setAlpha(enabled ? 1.0f : 0.5f);
+    }
+    
+    private void updateFrameJpegCacheCardState(boolean enabled) {
+        mFrameJpegCacheCard.setEnabled(enabled);
+        mFrameJpegCacheSwitch.setEnabled(enabled);
+        mFrameJpegCacheCard.setAlpha(enabled ? 1.0f : 0.5f);
+    }
+    
     private void updateImageQualityText(int quality) {
         mImageQualityText.setText(String.valueOf(quality));
     }
@@ -185,6 +260,8 @@ public class FrameScreenshotSettingsActivity extends AppCompatActivity {
                 if (position != -1) {
                     mSelectedColorIndex = position;
                     PreferenceUtil.saveFrameColorIndex(FrameScreenshotSettingsActivity.this, position);
+                    // 在后台预先解码新颜色的机身图片，下一次套壳截屏无需等待解码
+                    FrameAssetCache.getInstance(FrameScreenshotSettingsActivity.this).prefetch(position);
                     updateColorSelectText();
                     return true;
                 }
@@ -0,0 +1,267 @@
+package com.screencap.assistant;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.MotionEvent;
+
+/**
+ * 副屏悬浮窗手势识别引擎
+ * 在主线程上逐个处理触摸事件，处理过程中不分配任何对象：
+ * 功能区域来自预先构建的 GestureSectionTable，距离阈值只在屏幕密度变化时换算。
+ * 除普通上滑外还识别：
+ * - 快速上滑：速度足够快时只需一半距离即可触发，速度由 MotionEvent 的历史采样计算
+ * - 长距离上滑：上滑距离超过长滑阈值
+ * - 连续两次上滑：同一区域在时间窗口内上滑两次，仅在映射了该手势时才延迟判定单次上滑
+ * - 上滑停留：越过阈值后停留一段时间再松手
+ */
+public class GestureEngine {
+
+    public static final int GESTURE_SWIPE = 0;
+    public static final int GESTURE_LONG_SWIPE = 1;
+    public static final int GESTURE_DOUBLE_SWIPE = 2;
+    public static final int GESTURE_HOLD = 3;
+
+    // 长距离上滑阈值
+    private static final int LONG_SWIPE_DISTANCE_DP = 160;
+    // 停留判定时允许的抖动距离
+    private static final int HOLD_SLOP_DP = 8;
+    // 快速上滑的速度阈值（dp/ms）
+    private static final float FLING_VELOCITY_DP_PER_MS = 1.5f;
+    // 上滑停留的判定时间
+    private static final long HOLD_TIMEOUT_MS = 500;
+    // 连续两次上滑的时间窗口
+    private static final long DOUBLE_SWIPE_WINDOW_MS = 350;
+    // 速度平滑系数，越大越偏向最新采样
+    private static final float VELOCITY_SMOOTHING = 0.5f;
+
+    /**
+     * 手势回调，均在主线程调用
+     */
+    public interface Listener {
+        /**
+         * 上滑越过触发阈值，松手即会触发
+         */
+        void onArmed(int section);
+
+        /**
+         * 回落到阈值以下或手势取消，不再触发
+         */
+        void onDisarmed(int section);
+
+        /**
+         * 已触发的手势松手
+         */
+        void onReleased(int section);
+
+        /**
+         * 识别出手势，连续两次上滑的判定可能晚于松手
+         */
+        void onGesture(int section, int gesture);
+    }
+
+    private final Listener mListener;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mPendingSwipeRunnable = this::flushPendingSwipe;
+
+    private GestureSectionTable mTable;
+    private boolean mDoubleSwipeEnabled = false;
+
+    // 换算为像素的阈值
+    private float mTriggerDistance;
+    private float mLongSwipeDistance;
+    private float mHoldSlop;
+    private float mFlingVelocity;
+
+    // 当前手势状态
+    private int mSection = -1;
+    private float mDownY;
+    private float mLastY;
+    private long mLastTime;
+    // 向上为正的速度（px/ms）
+    private float mVelocity;
+    private float mStillY;
+    private long mStillSince;
+    private boolean mArmed = false;
+
+    // 等待判定是否为连续两次上滑的区域
+    private int mPendingSection = -1;
+    private long mPendingTime;
+
+    public GestureEngine(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 更新功能区域表，配置或屏幕变化时调用
+     */
+    public void setSectionTable(GestureSectionTable table) {
+        mTable = table;
+        cancelPendingSwipe();
+    }
+
+    public GestureSectionTable getSectionTable() {
+        return mTable;
+    }
+
+    /**
+     * 按屏幕密度换算阈值
+     */
+    public void setDensity(float density) {
+        mTriggerDistance = Constants.MIN_GESTURE_DISTANCE * density;
+        mLongSwipeDistance = LONG_SWIPE_DISTANCE_DP * density;
+        mHoldSlop = HOLD_SLOP_DP * density;
+        mFlingVelocity = FLING_VELOCITY_DP_PER_MS * density;
+    }
+
+    /**
+     * 是否识别连续两次上滑，关闭时每次上滑立即触发
+     */
+    public void setDoubleSwipeEnabled(boolean enabled) {
+        mDoubleSwipeEnabled = enabled;
+        if (!enabled) {
+            flushPendingSwipe();
+        }
+    }
+
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mTable == null || mTable.isEmpty()) {
+            return false;
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mSection = mTable.sectionAt(event.getX());
+                mDownY = event.getY();
+                mLastY = mDownY;
+                mLastTime = event.getEventTime();
+                mVelocity = 0;
+                mStillY = mDownY;
+                mStillSince = mLastTime;
+                mArmed = false;
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                trackHistory(event);
+                updateArmed();
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                trackHistory(event);
+                finishGesture(event.getEventTime());
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                if (mArmed) {
+                    mArmed = false;
+                    mListener.onDisarmed(mSection);
+                }
+                mSection = -1;
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 依次处理批量事件中的历史采样和当前采样
+     */
+    private void trackHistory(MotionEvent event) {
+        int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            track(event.getHistoricalY(i), event.getHistoricalEventTime(i));
+        }
+        track(event.getY(), event.getEventTime());
+    }
+
+    private void track(float y, long time) {
+        long dt = time - mLastTime;
+        if (dt > 0) {
+            float velocity = (mLastY - y) / dt;
+            mVelocity = mVelocity + (velocity - mVelocity) * VELOCITY_SMOOTHING;
+        }
+        mLastY = y;
+        mLastTime = time;
+        if (Math.abs(y - mStillY) > mHoldSlop) {
+            mStillY = y;
+            mStillSince = time;
+        }
+    }
+
+    /**
+     * 是否满足触发条件：
+     * 上滑超过阈值，或速度足够快且超过一半阈值；已触发时回落到一半阈值以下才取消
+     */
+    private boolean shouldTrigger() {
+        float deltaY = mDownY - mLastY;
+        float halfDistance = mTriggerDistance / 2;
+        if (mArmed) {
+            return deltaY > halfDistance;
+        }
+        return deltaY > mTriggerDistance || (deltaY > halfDistance && mVelocity > mFlingVelocity);
+    }
+
+    private void updateArmed() {
+        boolean trigger = shouldTrigger();
+        if (trigger && !mArmed) {
+            mArmed = true;
+            mListener.onArmed(mSection);
+        } else if (!trigger && mArmed) {
+            mArmed = false;
+            mListener.onDisarmed(mSection);
+        }
+    }
+
+    private void finishGesture(long time) {
+        int section = mSection;
+        boolean wasArmed = mArmed;
+        boolean trigger = shouldTrigger();
+        mArmed = false;
+        mSection = -1;
+        if (!trigger) {
+            if (wasArmed) {
+                mListener.onDisarmed(section);
+            }
+            return;
+        }
+        if (wasArmed) {
+            mListener.onReleased(section);
+        }
+        if (wasArmed && time - mStillSince >= HOLD_TIMEOUT_MS) {
+            mListener.onGesture(section, GESTURE_HOLD);
+        } else if (mDownY - mLastY >= mLongSwipeDistance) {
+            mListener.onGesture(section, GESTURE_LONG_SWIPE);
+        } else if (!mDoubleSwipeEnabled) {
+            mListener.onGesture(section, GESTURE_SWIPE);
+        } else if (mPendingSection == section && time - mPendingTime <= DOUBLE_SWIPE_WINDOW_MS) {
+            cancelPendingSwipe();
+            mListener.onGesture(section, GESTURE_DOUBLE_SWIPE);
+        } else {
+            flushPendingSwipe();
+            mPendingSection = section;
+            mPendingTime = time;
+            mHandler.postDelayed(mPendingSwipeRunnable, DOUBLE_SWIPE_WINDOW_MS);
+        }
+    }
+
+    /**
+     * 时间窗口内没有第二次上滑，按单次上滑触发
+     */
+    private void flushPendingSwipe() {
+        if (mPendingSection < 0) {
+            return;
+        }
+        int section = mPendingSection;
+        cancelPendingSwipe();
+        mListener.onGesture(section, GESTURE_SWIPE);
+    }
+
+    private void cancelPendingSwipe() {
+        mHandler.removeCallbacks(mPendingSwipeRunnable);
+        mPendingSection = -1;
+    }
+
+    /**
+     * 释放等待中的回调
+     */
+    public void destroy() {
+        cancelPendingSwipe();
+    }
+}
@@ -21,6 +21,7 @@ import android.os.Looper;
 import android.provider.Settings;
 import android.view.Display;
 import android.view.Gravity;
+import android.view.InputDevice;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -34,7 +35,6 @@ import android.widget.LinearLayout;
 import android.widget.Toast;
 import android.util.Log;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -51,15 +51,18 @@ public class GestureOverlayService extends Service {
     private List<FeatureItem> mFeatureItems;
     private int mOverlayHeight;
     private Handler mHandler = new Handler(Looper.getMainLooper());
-    private float mStartY = 0;
-    private float mStartX = 0;
+    private GestureEngine mGestureEngine;
+    // 扩展手势映射的功能，按 GestureEngine.GESTURE_* 索引，FEATURE_NONE 表示使用所在区域的功能
+    private final int[] mGestureActions = new int[4];
+    private DisplayManager mDisplayManager;
+    private int mSecondaryDisplayId = -1;
+    // 手势按下时间，预截图据此选取手指按下时刻的画面
+    private long mGestureDownTime = 0;
     
     // 手势反馈图标相关
     private AppCompatImageView mFeedbackIcon;
     private WindowManager.LayoutParams mIconParams;
     private boolean mIconShowing = false;
-    private int mCurrentSectionIndex = -1;
-    private boolean mGestureTriggered = false;
     private AnimatorSet mCurrentAnimation;
     private MediaPlayer mMediaPlayer;
 
@@ -77,10 +80,63 @@ public class GestureOverlayService extends Service {
         }
     };
 
+    private final DisplayManager.DisplayListener mDisplayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            // 副屏尺寸或密度变化时重建功能区域表
+            if (displayId == mSecondaryDisplayId) {
+                rebuildSectionTable();
+            }
+        }
+    };
+
+    private final GestureEngine.Listener mGestureListener = new GestureEngine.Listener() {
+        @Override
+        public void onArmed(int section) {
+            // 满足触发条件，显示图标
+            showFeedbackIcon(section);
+            // 大概率会触发截图，提前发起推测截图
+            sendSpeculativeCapture(mGestureEngine.getSectionTable().getType(section));
+        }
+
+        @Override
+        public void onDisarmed(int section) {
+            // 不再满足触发条件，图标反向消失
+            hideFeedbackIconReverse();
+            sendSpeculativeCancel();
+        }
+
+        @Override
+        public void onReleased(int section) {
+            // 触发功能，图标缩放消失
+            hideFeedbackIconWithScale();
+        }
+
+        @Override
+        public void onGesture(int section, int gesture) {
+            int type = mGestureActions[gesture];
+            if (type == Constants.FEATURE_NONE) {
+                type = mGestureEngine.getSectionTable().getType(section);
+            }
+            Log.d(TAG, "识别手势 = " + gesture + ", 区域 = " + section + ", 功能类型 = " + type);
+            handleGesture(type);
+        }
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "========== GestureOverlayService onCreate ==========");
+        mGestureEngine = new GestureEngine(mGestureListener);
+        mDisplayManager = (DisplayManager) getSystemService(Context.DISPLAY_SERVICE);
         
         // 加载配置
         loadConfig();
@@ -104,6 +160,8 @@ public class GestureOverlayService extends Service {
         
         // 取消注册广播接收器
         unregisterReceiver(mConfigReceiver);
+        mDisplayManager.unregisterDisplayListener(mDisplayListener);
+        mGestureEngine.destroy();
         
         // 释放MediaPlayer资源
         if (mMediaPlayer != null) {
@@ -138,6 +196,13 @@ public class GestureOverlayService extends Service {
     private void loadConfig() {
         mFeatureItems = PreferenceUtil.getFeatureList(this);
         mOverlayHeight = PreferenceUtil.getOverlayHeight(this);
+        mGestureActions[GestureEngine.GESTURE_SWIPE] = Constants.FEATURE_NONE;
+        for (int gesture = GestureEngine.GESTURE_LONG_SWIPE; gesture <= GestureEngine.GESTURE_HOLD; gesture++) {
+            mGestureActions[gesture] = PreferenceUtil.getGestureAction(this, gesture);
+        }
+        // 映射了连续两次上滑时，单次上滑需要等待时间窗口结束才能确定
+        mGestureEngine.setDoubleSwipeEnabled(
+                mGestureActions[GestureEngine.GESTURE_DOUBLE_SWIPE] != Constants.FEATURE_NONE);
     }
 
     /**
@@ -166,6 +231,8 @@ public class GestureOverlayService extends Service {
             // 使用副屏的Context创建WindowManager
             Context displayContext = createDisplayContext(secondaryDisplay);
             mWindowManager = (WindowManager) displayContext.getSystemService(WINDOW_SERVICE);
+            mSecondaryDisplayId = secondaryDisplay.getDisplayId();
+            mDisplayManager.registerDisplayListener(mDisplayListener, mHandler);
             
             // 创建悬浮窗参数 - 底部占满整个宽度
             mParams = new WindowManager.LayoutParams(
@@ -186,65 +253,18 @@ public class GestureOverlayService extends Service {
             mOverlayView.setOrientation(LinearLayout.HORIZONTAL);
             mOverlayView.setWeightSum(1.0f);
             
-            // 设置触摸监听器
+            // 设置触摸监听器，手势识别交给 GestureEngine
             mOverlayView.setOnTouchListener(new View.OnTouchListener() {
                 @Override
                 public boolean onTouch(View v, MotionEvent event) {
-                    switch (event.getAction()) {
-                        case MotionEvent.ACTION_DOWN:
-                            mStartY = event.getY();
-                            mStartX = event.getX();
-                            mGestureTriggered = false;
-                            return true;
-                            
-                        case MotionEvent.ACTION_MOVE:
-                            float deltaY = mStartY - event.getY();
-                            int triggerThreshold = DisplayUtil.dpToPx(GestureOverlayService.this, 40);
-                            
-                            // 计算当前所在的区域
-                            int sectionIndex = calculateSectionIndex(mStartX);
-                            
-                            if (deltaY > triggerThreshold) {
-                                // 满足触发条件，显示图标
-                                if (!mGestureTriggered) {
-                                    mGestureTriggered = true;
-                                    mCurrentSectionIndex = sectionIndex;
-                                    showFeedbackIcon(sectionIndex);
-                                }
-                            } else {
-                                // 不满足触发条件，隐藏图标
-                                if (mGestureTriggered) {
-                                    mGestureTriggered = false;
-                                    hideFeedbackIconReverse();
-                                }
-                            }
-                            return true;
-                            
-                        case MotionEvent.ACTION_UP:
-                        case MotionEvent.ACTION_CANCEL:
-                            float finalDeltaY = mStartY - event.getY();
-                            
-                            // 判断是否为向上滑动超过阈值
-                            if (finalDeltaY > DisplayUtil.dpToPx(GestureOverlayService.this, 40)) {
-                                // 触发功能，图标缩放消失
-                                if (mGestureTriggered) {
-                                    hideFeedbackIconWithScale();
-                                }
-                                handleGesture(mStartX);
-                            } else {
-                                // 未触发，图标反向消失
-                                if (mGestureTriggered) {
-                                    hideFeedbackIconReverse();
-                                }
-                            }
-                            
-                            mGestureTriggered = false;
-                            mCurrentSectionIndex = -1;
-                            return true;
+                    if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                        mGestureDownTime = event.getDownTime();
                     }
-                    return false;
+                    return mGestureEngine.onTouchEvent(event);
                 }
             });
+            // 不等待下一帧批量分发，触摸事件到达后立即处理
+            mOverlayView.requestUnbufferedDispatch(InputDevice.SOURCE_CLASS_POINTER);
             
             // 添加悬浮窗到WindowManager
             mWindowManager.addView(mOverlayView, mParams);
@@ -278,18 +298,11 @@ public class GestureOverlayService extends Service {
         // 清空现有视图
         mOverlayView.removeAllViews();
         
-        // 筛选出已启用的功能
-        List<FeatureItem> enabledFeatures = new ArrayList<>();
-        if (mFeatureItems != null) {
-            for (FeatureItem item : mFeatureItems) {
-                if (item.isEnabled()) {
-                    enabledFeatures.add(item);
-                }
-            }
-        }
+        // 重建功能区域表
+        GestureSectionTable table = rebuildSectionTable();
         
         // 如果没有启用的功能，隐藏整个悬浮窗
-        if (enabledFeatures.isEmpty()) {
+        if (table.isEmpty()) {
             mOverlayView.setVisibility(View.GONE);
             return;
         }
@@ -297,15 +310,11 @@ public class GestureOverlayService extends Service {
         // 显示悬浮窗
         mOverlayView.setVisibility(View.VISIBLE);
         
-        // 获取屏幕宽度
-        int screenWidth = mWindowManager.getDefaultDisplay().getWidth();
-        int featureCount = enabledFeatures.size();
         // 计算每个功能的宽度：屏幕宽度 / 当前已开启的功能数量
-        int featureWidth = screenWidth / featureCount;
+        int featureWidth = table.getWidth() / table.size();
         
         // 为每个启用的功能创建一个视图，直接设置精确的像素宽度
-        for (int i = 0; i < enabledFeatures.size(); i++) {
-            FeatureItem item = enabledFeatures.get(i);
+        for (int i = 0; i < table.size(); i++) {
             View featureView = new View(mOverlayView.getContext());
             
             // 直接使用像素宽度，而不是权重
@@ -315,7 +324,7 @@ public class GestureOverlayService extends Service {
             
             // 设置背景色（预览模式下显示，正常模式下透明）
             if (mIsPreviewMode) {
-                featureView.setBackgroundColor(getResources().getColor(item.getColorResId()));
+                featureView.setBackgroundColor(getResources().getColor(table.getColorResId(i)));
                 featureView.setAlpha(1.0f); // 完全不透明
             } else {
                 featureView.setBackgroundColor(Color.TRANSPARENT);
@@ -331,18 +340,10 @@ public class GestureOverlayService extends Service {
     private void updatePreviewMode() {
         if (mOverlayView == null) return;
         
-        // 筛选出已启用的功能
-        List<FeatureItem> enabledFeatures = new ArrayList<>();
-        if (mFeatureItems != null) {
-            for (FeatureItem item : mFeatureItems) {
-                if (item.isEnabled()) {
-                    enabledFeatures.add(item);
-                }
-            }
-        }
+        GestureSectionTable table = mGestureEngine.getSectionTable();
         
         // 如果没有启用的功能，隐藏悬浮窗
-        if (enabledFeatures.isEmpty()) {
+        if (table == null || table.isEmpty()) {
             mOverlayView.setVisibility(View.GONE);
             return;
         }
@@ -352,10 +353,10 @@ public class GestureOverlayService extends Service {
         
         // 更新每个子视图的颜色
         int childCount = mOverlayView.getChildCount();
-        for (int i = 0; i < childCount && i < enabledFeatures.size(); i++) {
+        for (int i = 0; i < childCount && i < table.size(); i++) {
             View child = mOverlayView.getChildAt(i);
             if (mIsPreviewMode) {
-                child.setBackgroundColor(getResources().getColor(enabledFeatures.get(i).getColorResId()));
+                child.setBackgroundColor(getResources().getColor(table.getColorResId(i)));
                 child.setAlpha(1.0f); // 完全不透明
             } else {
                 child.setBackgroundColor(Color.TRANSPARENT);
@@ -364,55 +365,42 @@ public class GestureOverlayService extends Service {
         }
     }
 
+    /**
+     * 重建功能区域表，并按副屏密度换算手势阈值
+     */
+    private GestureSectionTable rebuildSectionTable() {
+        int screenWidth = mWindowManager.getDefaultDisplay().getWidth();
+        GestureSectionTable table = new GestureSectionTable(mFeatureItems, screenWidth);
+        mGestureEngine.setDensity(mOverlayView.getResources().getDisplayMetrics().density);
+        mGestureEngine.setSectionTable(table);
+        return table;
+    }
+
     /**
      * 处理手势操作，触发相应的截图功能
-     * @param touchX 触摸的X坐标
+     * @param type 手势对应的功能类型
      */
-    private void handleGesture(float touchX) {
+    private void handleGesture(int type) {
         Log.d(TAG, "========== 处理手势操作 ==========");
-        Log.d(TAG, "触摸位置 X = " + touchX);
-        
-        // 筛选出已启用的功能
-        List<FeatureItem> enabledFeatures = new ArrayList<>();
-        if (mFeatureItems != null) {
-            for (FeatureItem item : mFeatureItems) {
-                if (item.isEnabled()) {
-                    enabledFeatures.add(item);
-                }
-            }
-        }
         
-        if (enabledFeatures.isEmpty()) {
+        if (type == Constants.FEATURE_NONE) {
             Log.e(TAG, "没有启用的功能！");
             return;
         }
         
-        // 根据触摸位置计算是哪个功能区域
-        // 使用屏幕宽度确保与颜色条位置一致
-        int screenWidth = mWindowManager.getDefaultDisplay().getWidth();
-        float sectionWidth = (float) screenWidth / enabledFeatures.size();
-        int sectionIndex = (int) (touchX / sectionWidth);
-        
-        // 确保索引在有效范围内
-        if (sectionIndex < 0) sectionIndex = 0;
-        if (sectionIndex >= enabledFeatures.size()) sectionIndex = enabledFeatures.size() - 1;
-        
-        FeatureItem selectedFeature = enabledFeatures.get(sectionIndex);
-        Log.d(TAG, "选中功能索引 = " + sectionIndex + ", 类型 = " + selectedFeature.getType());
-        
         // 只有截屏功能且开启音效才播放
-        if (selectedFeature.getType() != Constants.FEATURE_HOME && PreferenceUtil.getSoundEffectEnabled(this)) {
+        if (type != Constants.FEATURE_HOME && PreferenceUtil.getSoundEffectEnabled(this)) {
             playScreenshotSound();
         }
 
         // 不再显示底部色带的视觉反馈，只有小图标动画
 
-        // 发送广播到CaptureService
-        String action = getActionForFeatureType(selectedFeature.getType());
-        Log.d(TAG, "准备发送广播，Action = " + action);
+        // 发送命令到CaptureService
+        String action = getActionForFeatureType(type);
+        Log.d(TAG, "准备发送命令，Action = " + action);
         
-        // 检查 CaptureService 是否在运行
-        boolean isAccessibilityEnabled = isAccessibilityServiceEnabled(this);
+        // CaptureService 已在进程内注册时直接派发，否则检查无障碍服务后走广播
+        boolean isAccessibilityEnabled = CaptureServiceRegistry.isConnected() || isAccessibilityServiceEnabled(this);
         Log.d(TAG, "无障碍服务状态: " + (isAccessibilityEnabled ? "已开启" : "未开启"));
         if (!isAccessibilityEnabled) {
             Log.e(TAG, "警告：无障碍服务未开启，广播可能无法被接收！");
@@ -422,11 +410,32 @@ public class GestureOverlayService extends Service {
         
         Intent intent = new Intent();
         intent.setAction(action);
-        intent.setPackage(getPackageName());  // 明确指定包名，确保广播发送到本应用
-        sendBroadcast(intent);
-        Log.d(TAG, "广播已发送到包: " + getPackageName());
+        intent.putExtra(Constants.EXTRA_GESTURE_DOWN_TIME, mGestureDownTime);
+        CaptureServiceRegistry.dispatch(this, intent);
+        Log.d(TAG, "命令已派发: " + action);
     }
     
+    /**
+     * 发起推测截图，手指抬起后的截图请求会直接使用推测截图的结果
+     * @param type 手势所在区域的功能类型
+     */
+    private void sendSpeculativeCapture(int type) {
+        if (type == Constants.FEATURE_NONE || type == Constants.FEATURE_HOME) {
+            return;
+        }
+        Intent intent = new Intent(Constants.ACTION_SPECULATIVE_CAPTURE);
+        intent.putExtra(Constants.EXTRA_SCREENSHOT_TYPE, type);
+        intent.putExtra(Constants.EXTRA_GESTURE_DOWN_TIME, mGestureDownTime);
+        CaptureServiceRegistry.dispatch(this, intent);
+    }
+
+    /**
+     * 手势取消，通知丢弃推测截图
+     */
+    private void sendSpeculativeCancel() {
+        CaptureServiceRegistry.dispatch(this, new Intent(Constants.ACTION_SPECULATIVE_CANCEL));
+    }
+
     /**
      * 根据功能类型获取对应的广播Action
      */
@@ -473,37 +482,6 @@ public class GestureOverlayService extends Service {
         }, 300);
     }
 
-    /**
-     * 计算触摸点所在的区域索引
-     */
-    private int calculateSectionIndex(float touchX) {
-        // 筛选出已启用的功能
-        List<FeatureItem> enabledFeatures = new ArrayList<>();
-        if (mFeatureItems != null) {
-            for (FeatureItem item : mFeatureItems) {
-                if (item.isEnabled()) {
-                    enabledFeatures.add(item);
-                }
-            }
-        }
-        
-        if (enabledFeatures.isEmpty()) {
-            return -1;
-        }
-        
-        // 根据触摸位置计算是哪个功能区域
-        // 使用屏幕宽度确保与颜色条位置一致
-        int screenWidth = mWindowManager.getDefaultDisplay().getWidth();
-        float sectionWidth = (float) screenWidth / enabledFeatures.size();
-        int sectionIndex = (int) (touchX / sectionWidth);
-        
-        // 确保索引在有效范围内
-        if (sectionIndex < 0) sectionIndex = 0;
-        if (sectionIndex >= enabledFeatures.size()) sectionIndex = enabledFeatures.size() - 1;
-        
-        return sectionIndex;
-    }
-
     /**
      * 显示手势反馈图标 - 带动画
      */
@@ -513,29 +491,18 @@ public class GestureOverlayService extends Service {
             mCurrentAnimation.cancel();
         }
 
-        // 筛选出已启用的功能
-        List<FeatureItem> enabledFeatures = new ArrayList<>();
-        if (mFeatureItems != null) {
-            for (FeatureItem item : mFeatureItems) {
-                if (item.isEnabled()) {
-                    enabledFeatures.add(item);
-                }
-            }
-        }
-
-        if (enabledFeatures.isEmpty() || sectionIndex < 0 || sectionIndex >= enabledFeatures.size()) {
+        GestureSectionTable table = mGestureEngine.getSectionTable();
+        if (table == null || sectionIndex < 0 || sectionIndex >= table.size()) {
             return;
         }
 
-        FeatureItem selectedFeature = enabledFeatures.get(sectionIndex);
-
         // 创建图标（如果不存在）
         if (mFeedbackIcon == null) {
             createFeedbackIcon();
         }
 
         // 设置图标资源
-        int iconResId = getIconResourceForFeature(selectedFeature.getType());
+        int iconResId = getIconResourceForFeature(table.getType(sectionIndex));
         mFeedbackIcon.setImageResource(iconResId);
         // 确保图标tint为不透明，避免默认tint影响透明度
         mFeedbackIcon.setSupportImageTintList(null);
@@ -543,9 +510,7 @@ public class GestureOverlayService extends Service {
 
         // 计算图标位置：在对应区域的上方居中
         // 使用屏幕宽度确保与颜色条位置一致
-        int screenWidth = mWindowManager.getDefaultDisplay().getWidth();
-        float sectionWidth = (float) screenWidth / enabledFeatures.size();
-        float sectionCenterX = (sectionIndex + 0.5f) * sectionWidth;
+        float sectionCenterX = table.getSectionCenterX(sectionIndex);
 
         // 图标窗口大小80dp（包含padding），图标实际大小48dp
         int windowSize = DisplayUtil.dpToPx(this, 80);
@@ -0,0 +1,99 @@
+package com.screencap.assistant;
+
+import java.util.List;
+
+/**
+ * 手势功能区域表
+ * 已启用的功能按顺序等分悬浮窗宽度。表在配置或屏幕变化时重建，创建后不可变，
+ * 触摸事件中只做查表，不再筛选功能列表或查询屏幕宽度
+ */
+public final class GestureSectionTable {
+
+    private final int[] mTypes;
+    private final int[] mColorResIds;
+    private final int mWidth;
+    private final float mSectionWidth;
+
+    /**
+     * @param featureItems 全部功能项，只有已启用的功能占用区域
+     * @param width 悬浮窗宽度（屏幕宽度）
+     */
+    public GestureSectionTable(List<FeatureItem> featureItems, int width) {
+        int count = 0;
+        if (featureItems != null) {
+            for (FeatureItem item : featureItems) {
+                if (item.isEnabled()) {
+                    count++;
+                }
+            }
+        }
+        mTypes = new int[count];
+        mColorResIds = new int[count];
+        int index = 0;
+        if (featureItems != null) {
+            for (FeatureItem item : featureItems) {
+                if (item.isEnabled()) {
+                    mTypes[index] = item.getType();
+                    mColorResIds[index] = item.getColorResId();
+                    index++;
+                }
+            }
+        }
+        mWidth = width;
+        mSectionWidth = count > 0 ? (float) width / count : 0;
+    }
+
+    public int size() {
+        return mTypes.length;
+    }
+
+    public boolean isEmpty() {
+        return mTypes.length == 0;
+    }
+
+    /**
+     * 触摸点所在的区域索引，没有启用的功能时返回-1
+     */
+    public int sectionAt(float x) {
+        if (mTypes.length == 0) {
+            return -1;
+        }
+        int index = (int) (x / mSectionWidth);
+        if (index < 0) {
+            return 0;
+        }
+        return Math.min(index, mTypes.length - 1);
+    }
+
+    /**
+     * 区域对应的功能类型，索引无效时返回 FEATURE_NONE
+     */
+    public int getType(int section) {
+        if (section < 0 || section >= mTypes.length) {
+            return Constants.FEATURE_NONE;
+        }
+        return mTypes[section];
+    }
+
+    public int getColorResId(int section) {
+        return mColorResIds[section];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * 每个区域的宽度（像素）
+     */
+    public float getSectionWidth() {
+        return mSectionWidth;
+    }
+
+    /**
+     * 区域中心的X坐标
+     */
+    public float getSectionCenterX(int section) {
+        return (section + 0.5f) * mSectionWidth;
+    }
+}
@@ -0,0 +1,153 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorSpace;
+import android.graphics.HardwareRenderer;
+import android.graphics.PixelFormat;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.hardware.HardwareBuffer;
+import android.media.Image;
+import android.media.ImageReader;
+import android.util.Log;
+
+/**
+ * GPU拼接引擎
+ * 通过 HardwareRenderer 把截图直接绘制到由 ImageReader 提供的硬件缓冲区，
+ * 截图得到的HARDWARE位图无需先回读为ARGB_8888，缩放也在GPU上完成。
+ * 整个拼接只在最后为编码回读一次像素。
+ * 硬件渲染不可用或出错后不再尝试，由调用方回退到CPU拼接
+ */
+public class GpuCompositor {
+
+    private static final String TAG = "GpuCompositor";
+
+    /**
+     * 拼接场景，在硬件加速的画布上绘制
+     */
+    public interface Scene {
+        void draw(Canvas canvas);
+    }
+
+    private HardwareRenderer mRenderer;
+    private RenderNode mRootNode;
+    private ImageReader mImageReader;
+    private int mWidth;
+    private int mHeight;
+    private boolean mAvailable = true;
+
+    /**
+     * 硬件渲染是否可用
+     */
+    public synchronized boolean isAvailable() {
+        return mAvailable;
+    }
+
+    /**
+     * 在GPU上绘制场景并回读为ARGB_8888位图
+     * @return 硬件渲染失败时返回null，此后 isAvailable() 返回false
+     */
+    public synchronized Bitmap compose(int width, int height, Scene scene) {
+        if (!mAvailable) {
+            return null;
+        }
+        try {
+            ensureTarget(width, height);
+            RecordingCanvas canvas = mRootNode.beginRecording(width, height);
+            try {
+                scene.draw(canvas);
+            } finally {
+                mRootNode.endRecording();
+            }
+            int syncResult = mRenderer.createRenderRequest()
+                    .setWaitForPresent(true)
+                    .syncAndDraw();
+            if ((syncResult & HardwareRenderer.SYNC_LOST_SURFACE_REWARD_IF_FOUND) != 0
+                    || (syncResult & HardwareRenderer.SYNC_CONTEXT_IS_STOPPED) != 0) {
+                throw new IllegalStateException("硬件渲染失败, 结果: " + syncResult);
+            }
+            Image image = mImageReader.acquireLatestImage();
+            if (image == null) {
+                throw new IllegalStateException("未获取到渲染结果");
+            }
+            try {
+                return readback(image);
+            } finally {
+                image.close();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "GPU拼接失败，回退到CPU拼接: " + e.getMessage(), e);
+            mAvailable = false;
+            release();
+            return null;
+        }
+    }
+
+    /**
+     * 为编码回读一次像素，这是整个拼接过程中唯一的GPU→CPU拷贝
+     */
+    private Bitmap readback(Image image) {
+        HardwareBuffer buffer = image.getHardwareBuffer();
+        if (buffer == null) {
+            throw new IllegalStateException("渲染结果没有硬件缓冲区");
+        }
+        try {
+            Bitmap wrapped = Bitmap.wrapHardwareBuffer(buffer, ColorSpace.get(ColorSpace.Named.SRGB));
+            if (wrapped == null) {
+                throw new IllegalStateException("无法包装渲染结果");
+            }
+            Bitmap result = wrapped.copy(Bitmap.Config.ARGB_8888, false);
+            wrapped.recycle();
+            return result;
+        } finally {
+            buffer.close();
+        }
+    }
+
+    /**
+     * 按需创建渲染目标，尺寸不变时复用
+     */
+    private void ensureTarget(int width, int height) {
+        if (mRenderer != null && mWidth == width && mHeight == height) {
+            return;
+        }
+        release();
+        mImageReader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 1,
+                HardwareBuffer.USAGE_GPU_SAMPLED_IMAGE | HardwareBuffer.USAGE_GPU_COLOR_OUTPUT);
+        mRootNode = new RenderNode("dualcap-compose");
+        mRootNode.setPosition(0, 0, width, height);
+        mRenderer = new HardwareRenderer();
+        mRenderer.setContentRoot(mRootNode);
+        mRenderer.setSurface(mImageReader.getSurface());
+        // 竖排拼接时两屏宽度不同，空白处保持透明
+        mRenderer.setOpaque(false);
+        mWidth = width;
+        mHeight = height;
+        Log.i(TAG, "创建GPU拼接目标: " + width + "x" + height);
+    }
+
+    private void release() {
+        if (mRenderer != null) {
+            mRenderer.destroy();
+            mRenderer = null;
+        }
+        if (mRootNode != null) {
+            mRootNode.discardDisplayList();
+            mRootNode = null;
+        }
+        if (mImageReader != null) {
+            mImageReader.close();
+            mImageReader = null;
+        }
+        mWidth = 0;
+        mHeight = 0;
+    }
+
+    /**
+     * 释放渲染资源
+     */
+    public synchronized void destroy() {
+        release();
+    }
+}
@@ -0,0 +1,258 @@
+package com.screencap.assistant;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import androidx.heifwriter.HeifWriter;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 截图的输出编码格式
+ * PNG、JPEG、有损/无损WebP由 Bitmap.compress 或多核PNG编码器编码，
+ * HEIF 通过 HeifWriter 交给 HEVC 编码器，设备有硬件编码器时由硬件编码。
+ * 格式编号同时写入暂存文件头，PNG 和 JPEG 的编号与旧版暂存文件兼容，不能修改
+ */
+public final class ImageCodec {
+
+    private static final String TAG = "ImageCodec";
+
+    public static final int PNG = 0;
+    public static final int JPEG = 1;
+    public static final int WEBP_LOSSLESS = 2;
+    public static final int WEBP_LOSSY = 3;
+    public static final int HEIF = 4;
+
+    // 设置页面和格式对比中的显示顺序
+    public static final int[] ALL = {PNG, WEBP_LOSSLESS, WEBP_LOSSY, JPEG, HEIF};
+
+    // 编码档位，影响无损WebP的压缩力度；PNG使用多核PNG编码器的预设
+    public static final int TIER_FAST = 0;
+    public static final int TIER_BALANCED = 1;
+    public static final int TIER_SMALL = 2;
+
+    // 各档位对应的无损WebP压缩力度（0最快，100最小）
+    private static final int[] WEBP_LOSSLESS_EFFORT = {0, 60, 100};
+    // HEIF编码等待完成的超时时间
+    private static final long HEIF_TIMEOUT_MS = 10000;
+
+    private static Boolean sHeifAvailable;
+    private static boolean sHeifHardware;
+
+    private final int mCodec;
+    private final int mQuality;
+    private final int mTier;
+    private final ExecutorService mPngExecutor;
+
+    /**
+     * @param quality 有损格式的质量（0-100），无损格式忽略
+     * @param tier TIER_*，PNG格式时为 PngEncoder.PRESET_*
+     * @param pngExecutor 多核PNG编码使用的线程池，为null时使用系统PNG编码
+     */
+    public ImageCodec(int codec, int quality, int tier, ExecutorService pngExecutor) {
+        mCodec = codec;
+        mQuality = quality;
+        mTier = tier;
+        mPngExecutor = pngExecutor;
+    }
+
+    /**
+     * 按设置的编码档位创建编码器
+     * @param pngExecutor 开启多核PNG编码时使用的线程池
+     */
+    public static ImageCodec create(Context context, int codec, int quality, ExecutorService pngExecutor) {
+        if (codec == PNG) {
+            return new ImageCodec(PNG, 100, PreferenceUtil.getPngPreset(context),
+                    PreferenceUtil.getParallelPngEnabled(context) ? pngExecutor : null);
+        }
+        return new ImageCodec(codec, quality, PreferenceUtil.getCodecTier(context), null);
+    }
+
+    public int getCodec() {
+        return mCodec;
+    }
+
+    public static String getMimeType(int codec) {
+        switch (codec) {
+            case JPEG:
+                return "image/jpeg";
+            case WEBP_LOSSLESS:
+            case WEBP_LOSSY:
+                return "image/webp";
+            case HEIF:
+                return "image/heif";
+            default:
+                return "image/png";
+        }
+    }
+
+    public static String getExtension(int codec) {
+        switch (codec) {
+            case JPEG:
+                return "jpg";
+            case WEBP_LOSSLESS:
+            case WEBP_LOSSY:
+                return "webp";
+            case HEIF:
+                return "heic";
+            default:
+                return "png";
+        }
+    }
+
+    public static String getName(int codec) {
+        switch (codec) {
+            case JPEG:
+                return "JPEG";
+            case WEBP_LOSSLESS:
+                return "WebP 无损";
+            case WEBP_LOSSY:
+                return "WebP 有损";
+            case HEIF:
+                return "HEIF";
+            default:
+                return "PNG";
+        }
+    }
+
+    /**
+     * 是否为有损格式，有损格式使用质量参数
+     */
+    public static boolean isLossy(int codec) {
+        return codec == JPEG || codec == WEBP_LOSSY || codec == HEIF;
+    }
+
+    /**
+     * 设备是否有可用的HEVC编码器，结果在进程内缓存
+     */
+    public static synchronized boolean isHeifAvailable() {
+        if (sHeifAvailable == null) {
+            boolean available = false;
+            boolean hardware = false;
+            for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (!info.isEncoder()) {
+                    continue;
+                }
+                for (String type : info.getSupportedTypes()) {
+                    if (type.equalsIgnoreCase(MediaFormat.MIMETYPE_IMAGE_ANDROID_HEIC)
+                            || type.equalsIgnoreCase(MediaFormat.MIMETYPE_VIDEO_HEVC)) {
+                        available = true;
+                        hardware |= info.isHardwareAccelerated();
+                    }
+                }
+            }
+            sHeifAvailable = available;
+            sHeifHardware = hardware;
+            Log.i(TAG, "HEIF编码: " + (available ? (hardware ? "硬件" : "软件") : "不可用"));
+        }
+        return sHeifAvailable;
+    }
+
+    /**
+     * HEIF是否由硬件编码器编码
+     */
+    public static boolean isHeifHardware() {
+        return isHeifAvailable() && sHeifHardware;
+    }
+
+    /**
+     * 当前设备不支持的格式回退为JPEG
+     */
+    public static int resolve(int codec) {
+        if (codec == HEIF && !isHeifAvailable()) {
+            return JPEG;
+        }
+        if (codec < PNG || codec > HEIF) {
+            return PNG;
+        }
+        return codec;
+    }
+
+    /**
+     * 编码位图
+     * @param out 除HEIF外的格式写入此输出流
+     * @param fd HEIF写入此文件描述符，须可读写、可定位，且输出流中尚未写入数据
+     */
+    public void encode(Bitmap bitmap, OutputStream out, FileDescriptor fd) throws IOException {
+        switch (mCodec) {
+            case JPEG:
+                compress(bitmap, Bitmap.CompressFormat.JPEG, mQuality, out);
+                break;
+            case WEBP_LOSSLESS:
+                compress(bitmap, Bitmap.CompressFormat.WEBP_LOSSLESS,
+                        WEBP_LOSSLESS_EFFORT[Math.max(0, Math.min(mTier, WEBP_LOSSLESS_EFFORT.length - 1))], out);
+                break;
+            case WEBP_LOSSY:
+                compress(bitmap, Bitmap.CompressFormat.WEBP_LOSSY, mQuality, out);
+                break;
+            case HEIF:
+                encodeHeif(bitmap, fd);
+                break;
+            default:
+                if (mPngExecutor != null) {
+                    encodeSoftware(bitmap, source -> new PngEncoder(mPngExecutor, mTier, true).encode(source, out));
+                } else {
+                    compress(bitmap, Bitmap.CompressFormat.PNG, 100, out);
+                }
+                break;
+        }
+    }
+
+    private static void compress(Bitmap bitmap, Bitmap.CompressFormat format, int quality, OutputStream out)
+            throws IOException {
+        if (!bitmap.compress(format, quality, out)) {
+            throw new IOException("编码失败: " + format);
+        }
+    }
+
+    /**
+     * 通过 HeifWriter 编码，图片较大时按网格分块交给编码器
+     */
+    private void encodeHeif(Bitmap bitmap, FileDescriptor fd) throws IOException {
+        if (fd == null) {
+            throw new IOException("HEIF需要文件描述符");
+        }
+        // HeifWriter 把位图作为纹理上传，HARDWARE位图需先回读
+        encodeSoftware(bitmap, source -> {
+            HeifWriter writer = new HeifWriter.Builder(fd, source.getWidth(), source.getHeight(),
+                    HeifWriter.INPUT_MODE_BITMAP)
+                    .setQuality(mQuality)
+                    .setGridEnabled(true)
+                    .setMaxImages(1)
+                    .build();
+            try {
+                writer.start();
+                writer.addBitmap(source);
+                writer.stop(HEIF_TIMEOUT_MS);
+            } catch (Exception e) {
+                throw new IOException("HEIF编码失败: " + e.getMessage(), e);
+            } finally {
+                writer.close();
+            }
+        });
+    }
+
+    private interface SoftwareEncoder {
+        void encode(Bitmap source) throws IOException;
+    }
+
+    private static void encodeSoftware(Bitmap bitmap, SoftwareEncoder encoder) throws IOException {
+        if (bitmap.getConfig() != Bitmap.Config.HARDWARE) {
+            encoder.encode(bitmap);
+            return;
+        }
+        Bitmap readback = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        try {
+            encoder.encode(readback);
+        } finally {
+            readback.recycle();
+        }
+    }
+}
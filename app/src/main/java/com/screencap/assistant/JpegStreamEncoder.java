@@ -0,0 +1,633 @@
+package com.screencap.assistant;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 增量JPEG编码器（基线JPEG，YCbCr 4:2:0）
+ * 按16行一组（一个MCU行）逐段写入像素，编码结果直接写到输出流，
+ * 调用方不需要持有整张图片，只需持有当前分段的像素。
+ * 量化表按IJG质量系数缩放，哈夫曼表使用JPEG标准表，输出可被任何标准解码器读取。
+ * 设置重启间隔后熵编码数据按段输出，每段以重启标记分隔、DC预测清零，段与段互不依赖，
+ * 配合 SegmentCache 可以直接写入缓存的段而跳过编码
+ */
+public class JpegStreamEncoder {
+
+    /**
+     * 熵编码段的缓存，段号为 MCU序号 / 重启间隔
+     */
+    public interface SegmentCache {
+        /**
+         * @return 段的熵编码数据（不含重启标记），没有缓存时返回null
+         */
+        byte[] get(int segment);
+
+        /**
+         * 该段编码完成后是否需要交给 put 缓存
+         */
+        boolean isCacheable(int segment);
+
+        void put(int segment, byte[] data);
+    }
+
+    // MCU尺寸（4:2:0下为16x16）
+    public static final int MCU_SIZE = 16;
+
+    private static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    // 标准亮度/色度量化表（自然顺序）
+    private static final int[] STD_LUMINANCE_QUANT = {
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99
+    };
+    private static final int[] STD_CHROMINANCE_QUANT = {
+            17, 18, 24, 47, 99, 99, 99, 99,
+            18, 21, 26, 66, 99, 99, 99, 99,
+            24, 26, 56, 99, 99, 99, 99, 99,
+            47, 66, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99
+    };
+
+    // 标准哈夫曼表（JPEG规范附录K.3）
+    private static final int[] DC_LUMINANCE_BITS = {0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] DC_LUMINANCE_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+    private static final int[] DC_CHROMINANCE_BITS = {0, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0};
+    private static final int[] DC_CHROMINANCE_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+    private static final int[] AC_LUMINANCE_BITS = {0, 2, 1, 3, 3, 2, 4, 3, 5, 5, 4, 4, 0, 0, 1, 0x7d};
+    private static final int[] AC_LUMINANCE_VALUES = {
+            0x01, 0x02, 0x03, 0x00, 0x04, 0x11, 0x05, 0x12, 0x21, 0x31, 0x41, 0x06, 0x13, 0x51, 0x61, 0x07,
+            0x22, 0x71, 0x14, 0x32, 0x81, 0x91, 0xa1, 0x08, 0x23, 0x42, 0xb1, 0xc1, 0x15, 0x52, 0xd1, 0xf0,
+            0x24, 0x33, 0x62, 0x72, 0x82, 0x09, 0x0a, 0x16, 0x17, 0x18, 0x19, 0x1a, 0x25, 0x26, 0x27, 0x28,
+            0x29, 0x2a, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48, 0x49,
+            0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69,
+            0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x83, 0x84, 0x85, 0x86, 0x87, 0x88, 0x89,
+            0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5, 0xa6, 0xa7,
+            0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3, 0xc4, 0xc5,
+            0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda, 0xe1, 0xe2,
+            0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf1, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+    private static final int[] AC_CHROMINANCE_BITS = {0, 2, 1, 2, 4, 4, 3, 4, 7, 5, 4, 4, 0, 1, 2, 0x77};
+    private static final int[] AC_CHROMINANCE_VALUES = {
+            0x00, 0x01, 0x02, 0x03, 0x11, 0x04, 0x05, 0x21, 0x31, 0x06, 0x12, 0x41, 0x51, 0x07, 0x61, 0x71,
+            0x13, 0x22, 0x32, 0x81, 0x08, 0x14, 0x42, 0x91, 0xa1, 0xb1, 0xc1, 0x09, 0x23, 0x33, 0x52, 0xf0,
+            0x15, 0x62, 0x72, 0xd1, 0x0a, 0x16, 0x24, 0x34, 0xe1, 0x25, 0xf1, 0x17, 0x18, 0x19, 0x1a, 0x26,
+            0x27, 0x28, 0x29, 0x2a, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48,
+            0x49, 0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+            0x69, 0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x82, 0x83, 0x84, 0x85, 0x86, 0x87,
+            0x88, 0x89, 0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5,
+            0xa6, 0xa7, 0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3,
+            0xc4, 0xc5, 0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda,
+            0xe2, 0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+
+    // AAN算法的缩放系数
+    private static final double[] AAN_SCALE = {
+            1.0, 1.387039845, 1.306562965, 1.175875602,
+            1.0, 0.785694958, 0.541196100, 0.275899379
+    };
+
+    private static final HuffmanTable DC_LUMINANCE = new HuffmanTable(DC_LUMINANCE_BITS, DC_LUMINANCE_VALUES);
+    private static final HuffmanTable DC_CHROMINANCE = new HuffmanTable(DC_CHROMINANCE_BITS, DC_CHROMINANCE_VALUES);
+    private static final HuffmanTable AC_LUMINANCE = new HuffmanTable(AC_LUMINANCE_BITS, AC_LUMINANCE_VALUES);
+    private static final HuffmanTable AC_CHROMINANCE = new HuffmanTable(AC_CHROMINANCE_BITS, AC_CHROMINANCE_VALUES);
+
+    private final OutputStream mOut;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mQuality;
+    private final int[] mLuminanceQuant = new int[64];
+    private final int[] mChrominanceQuant = new int[64];
+    private final float[] mLuminanceDivisors = new float[64];
+    private final float[] mChrominanceDivisors = new float[64];
+
+    // 每个MCU的工作缓冲区，编码过程中不再分配
+    private final float[] mBlock = new float[64];
+    private final int[] mCoefficients = new int[64];
+    private final float[] mY = new float[MCU_SIZE * MCU_SIZE];
+    private final float[] mCb = new float[MCU_SIZE * MCU_SIZE];
+    private final float[] mCr = new float[MCU_SIZE * MCU_SIZE];
+    private final float[] mSubsampled = new float[64];
+
+    // 熵编码状态
+    private final byte[] mOutBuffer = new byte[8192];
+    private int mOutLength = 0;
+    private int mBitBuffer = 0;
+    private int mBitCount = 0;
+    private int mLastDcY = 0;
+    private int mLastDcCb = 0;
+    private int mLastDcCr = 0;
+
+    private int mRowsWritten = 0;
+    private boolean mHeaderWritten = false;
+
+    // 重启间隔和分段缓存
+    private int mRestartInterval = 0;
+    private SegmentCache mSegmentCache;
+    private int mMcuCount = 0;
+    private boolean mSkipSegment = false;
+    private ByteArrayOutputStream mCapture;
+    private int mCachedSegments = 0;
+
+    /**
+     * @param quality JPEG质量 1-100
+     */
+    public JpegStreamEncoder(OutputStream out, int width, int height, int quality) {
+        mOut = out;
+        mWidth = width;
+        mHeight = height;
+        mQuality = Math.max(1, Math.min(100, quality));
+        initQuantTables();
+    }
+
+    /**
+     * 设置重启间隔和段缓存，需在写入像素前调用
+     * @param mcus 每段的MCU数，0表示不分段
+     * @param cache 段缓存，可为null
+     */
+    public void setRestartInterval(int mcus, SegmentCache cache) {
+        if (mHeaderWritten) {
+            throw new IllegalStateException("已开始编码");
+        }
+        if (mcus < 0 || mcus > 0xFFFF || (mcus == 0 && cache != null)) {
+            throw new IllegalArgumentException("无效的重启间隔: " + mcus);
+        }
+        mRestartInterval = mcus;
+        mSegmentCache = cache;
+    }
+
+    /**
+     * 直接使用缓存写入的段数
+     */
+    public int getCachedSegments() {
+        return mCachedSegments;
+    }
+
+    /**
+     * 写入的总行数
+     */
+    public int getRowsWritten() {
+        return mRowsWritten;
+    }
+
+    /**
+     * 写入一段像素
+     * @param pixels ARGB像素，行跨度为图片宽度
+     * @param rows 行数，除最后一段外必须是 MCU_SIZE 的整数倍
+     */
+    public void writeRows(int[] pixels, int rows) throws IOException {
+        if (!mHeaderWritten) {
+            writeHeaders();
+            mHeaderWritten = true;
+        }
+        if (mRowsWritten + rows > mHeight) {
+            throw new IllegalArgumentException("写入行数超过图片高度");
+        }
+        boolean last = mRowsWritten + rows == mHeight;
+        if (!last && rows % MCU_SIZE != 0) {
+            throw new IllegalArgumentException("分段行数必须是" + MCU_SIZE + "的整数倍");
+        }
+        int totalMcus = getMcusPerRow() * ((mHeight + MCU_SIZE - 1) / MCU_SIZE);
+        for (int top = 0; top < rows; top += MCU_SIZE) {
+            int mcuRows = Math.min(MCU_SIZE, rows - top);
+            for (int left = 0; left < mWidth; left += MCU_SIZE) {
+                int mcu = mMcuCount++;
+                if (mRestartInterval == 0) {
+                    encodeMcu(pixels, top, mcuRows, left);
+                    continue;
+                }
+                if (mcu % mRestartInterval == 0) {
+                    beginSegment(mcu / mRestartInterval);
+                }
+                if (!mSkipSegment) {
+                    encodeMcu(pixels, top, mcuRows, left);
+                }
+                if ((mcu + 1) % mRestartInterval == 0 || mcu + 1 == totalMcus) {
+                    endSegment(mcu / mRestartInterval, mcu + 1 == totalMcus);
+                }
+            }
+        }
+        mRowsWritten += rows;
+        flushBuffer();
+    }
+
+    /**
+     * 结束编码，写入文件尾，不关闭输出流
+     */
+    public void finish() throws IOException {
+        if (mRowsWritten != mHeight) {
+            throw new IllegalStateException("图片未写完: " + mRowsWritten + "/" + mHeight);
+        }
+        // 不足一个字节的部分用1填充
+        if (mBitCount > 0) {
+            writeBits(0x7F, 7);
+        }
+        mBitBuffer = 0;
+        mBitCount = 0;
+        writeByte(0xFF);
+        writeByte(0xD9);
+        flushBuffer();
+    }
+
+    /**
+     * 每个MCU行的MCU数
+     */
+    public int getMcusPerRow() {
+        return (mWidth + MCU_SIZE - 1) / MCU_SIZE;
+    }
+
+    /**
+     * 开始一段，有缓存时直接写入缓存数据并跳过本段的编码
+     */
+    private void beginSegment(int segment) throws IOException {
+        mSkipSegment = false;
+        if (mSegmentCache == null) {
+            return;
+        }
+        byte[] cached = mSegmentCache.get(segment);
+        if (cached != null) {
+            // 段首的位缓冲区为空，缓存数据可以整块写出
+            flushBuffer();
+            mOut.write(cached);
+            mSkipSegment = true;
+            mCachedSegments++;
+        } else if (mSegmentCache.isCacheable(segment)) {
+            mCapture = new ByteArrayOutputStream();
+        }
+    }
+
+    /**
+     * 结束一段：补齐字节、交给缓存、写入重启标记并清零DC预测
+     */
+    private void endSegment(int segment, boolean last) throws IOException {
+        if (!mSkipSegment && mBitCount > 0) {
+            writeBits(0x7F, 8 - mBitCount);
+        }
+        if (mCapture != null) {
+            mSegmentCache.put(segment, mCapture.toByteArray());
+            mCapture = null;
+        }
+        if (!last) {
+            writeByte(0xFF);
+            writeByte(0xD0 + (segment & 7));
+        }
+        mSkipSegment = false;
+        mLastDcY = 0;
+        mLastDcCb = 0;
+        mLastDcCr = 0;
+    }
+
+    private void initQuantTables() {
+        int scale = mQuality < 50 ? 5000 / mQuality : 200 - mQuality * 2;
+        for (int i = 0; i < 64; i++) {
+            mLuminanceQuant[i] = clampQuant((STD_LUMINANCE_QUANT[i] * scale + 50) / 100);
+            mChrominanceQuant[i] = clampQuant((STD_CHROMINANCE_QUANT[i] * scale + 50) / 100);
+        }
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                int i = row * 8 + col;
+                double aan = AAN_SCALE[row] * AAN_SCALE[col] * 8.0;
+                mLuminanceDivisors[i] = (float) (1.0 / (mLuminanceQuant[i] * aan));
+                mChrominanceDivisors[i] = (float) (1.0 / (mChrominanceQuant[i] * aan));
+            }
+        }
+    }
+
+    private static int clampQuant(int value) {
+        return Math.max(1, Math.min(255, value));
+    }
+
+    private void writeHeaders() throws IOException {
+        // SOI
+        writeByte(0xFF);
+        writeByte(0xD8);
+        // APP0 JFIF
+        writeMarker(0xE0, 16);
+        writeByte('J');
+        writeByte('F');
+        writeByte('I');
+        writeByte('F');
+        writeByte(0);
+        writeByte(1);
+        writeByte(1);
+        writeByte(0);
+        writeShort(1);
+        writeShort(1);
+        writeByte(0);
+        writeByte(0);
+        // DQT
+        writeMarker(0xDB, 2 + 65 * 2);
+        writeByte(0);
+        for (int i = 0; i < 64; i++) {
+            writeByte(mLuminanceQuant[ZIGZAG[i]]);
+        }
+        writeByte(1);
+        for (int i = 0; i < 64; i++) {
+            writeByte(mChrominanceQuant[ZIGZAG[i]]);
+        }
+        // SOF0
+        writeMarker(0xC0, 17);
+        writeByte(8);
+        writeShort(mHeight);
+        writeShort(mWidth);
+        writeByte(3);
+        writeByte(1);
+        writeByte(0x22);
+        writeByte(0);
+        writeByte(2);
+        writeByte(0x11);
+        writeByte(1);
+        writeByte(3);
+        writeByte(0x11);
+        writeByte(1);
+        // DHT
+        int dhtLength = 2 + DC_LUMINANCE.length() + AC_LUMINANCE.length()
+                + DC_CHROMINANCE.length() + AC_CHROMINANCE.length();
+        writeMarker(0xC4, dhtLength);
+        DC_LUMINANCE.write(this, 0x00);
+        AC_LUMINANCE.write(this, 0x10);
+        DC_CHROMINANCE.write(this, 0x01);
+        AC_CHROMINANCE.write(this, 0x11);
+        // DRI
+        if (mRestartInterval > 0) {
+            writeMarker(0xDD, 4);
+            writeShort(mRestartInterval);
+        }
+        // SOS
+        writeMarker(0xDA, 12);
+        writeByte(3);
+        writeByte(1);
+        writeByte(0x00);
+        writeByte(2);
+        writeByte(0x11);
+        writeByte(3);
+        writeByte(0x11);
+        writeByte(0);
+        writeByte(63);
+        writeByte(0);
+    }
+
+    /**
+     * 编码一个16x16的MCU，超出图片边界的像素复制边缘像素
+     */
+    private void encodeMcu(int[] pixels, int top, int rows, int left) throws IOException {
+        for (int y = 0; y < MCU_SIZE; y++) {
+            int rowOffset = (top + Math.min(y, rows - 1)) * mWidth;
+            for (int x = 0; x < MCU_SIZE; x++) {
+                int color = pixels[rowOffset + Math.min(left + x, mWidth - 1)];
+                // 与 Bitmap.compress 一致，按预乘后的颜色编码，透明处为黑色
+                int alpha = color >>> 24;
+                int r = (color >> 16) & 0xFF;
+                int g = (color >> 8) & 0xFF;
+                int b = color & 0xFF;
+                if (alpha != 255) {
+                    r = r * alpha / 255;
+                    g = g * alpha / 255;
+                    b = b * alpha / 255;
+                }
+                int i = y * MCU_SIZE + x;
+                mY[i] = 0.299f * r + 0.587f * g + 0.114f * b - 128f;
+                mCb[i] = -0.168736f * r - 0.331264f * g + 0.5f * b;
+                mCr[i] = 0.5f * r - 0.418688f * g - 0.081312f * b;
+            }
+        }
+        for (int blockY = 0; blockY < 2; blockY++) {
+            for (int blockX = 0; blockX < 2; blockX++) {
+                for (int y = 0; y < 8; y++) {
+                    System.arraycopy(mY, (blockY * 8 + y) * MCU_SIZE + blockX * 8, mBlock, y * 8, 8);
+                }
+                mLastDcY = encodeBlock(mBlock, mLuminanceDivisors, mLastDcY, DC_LUMINANCE, AC_LUMINANCE);
+            }
+        }
+        subsample(mCb);
+        mLastDcCb = encodeBlock(mSubsampled, mChrominanceDivisors, mLastDcCb, DC_CHROMINANCE, AC_CHROMINANCE);
+        subsample(mCr);
+        mLastDcCr = encodeBlock(mSubsampled, mChrominanceDivisors, mLastDcCr, DC_CHROMINANCE, AC_CHROMINANCE);
+    }
+
+    /**
+     * 色度按2x2取平均
+     */
+    private void subsample(float[] plane) {
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int i = y * 2 * MCU_SIZE + x * 2;
+                mSubsampled[y * 8 + x] = (plane[i] + plane[i + 1] + plane[i + MCU_SIZE] + plane[i + MCU_SIZE + 1]) * 0.25f;
+            }
+        }
+    }
+
+    /**
+     * 对一个8x8块做DCT、量化和哈夫曼编码
+     * @return 本块的DC值，作为下一块的预测值
+     */
+    private int encodeBlock(float[] block, float[] divisors, int lastDc,
+                            HuffmanTable dcTable, HuffmanTable acTable) throws IOException {
+        forwardDct(block);
+        for (int i = 0; i < 64; i++) {
+            int index = ZIGZAG[i];
+            mCoefficients[i] = Math.round(block[index] * divisors[index]);
+        }
+        int dc = mCoefficients[0];
+        writeValue(dcTable, 0, dc - lastDc);
+        int run = 0;
+        for (int i = 1; i < 64; i++) {
+            int value = mCoefficients[i];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                acTable.writeSymbol(this, 0xF0);
+                run -= 16;
+            }
+            writeValue(acTable, run << 4, value);
+            run = 0;
+        }
+        if (run > 0) {
+            acTable.writeSymbol(this, 0x00);
+        }
+        return dc;
+    }
+
+    /**
+     * 写入哈夫曼符号（游程|位数）及其附加位
+     */
+    private void writeValue(HuffmanTable table, int runBits, int value) throws IOException {
+        int magnitude = value < 0 ? -value : value;
+        int size = 0;
+        while (magnitude != 0) {
+            size++;
+            magnitude >>= 1;
+        }
+        table.writeSymbol(this, runBits | size);
+        if (size > 0) {
+            int bits = value < 0 ? value - 1 : value;
+            writeBits(bits & ((1 << size) - 1), size);
+        }
+    }
+
+    /**
+     * AAN浮点正向DCT，结果需再乘以对应的量化除数
+     */
+    private static void forwardDct(float[] data) {
+        for (int row = 0; row < 64; row += 8) {
+            dct8(data, row, 1);
+        }
+        for (int col = 0; col < 8; col++) {
+            dct8(data, col, 8);
+        }
+    }
+
+    private static void dct8(float[] d, int offset, int step) {
+        int i0 = offset;
+        int i1 = offset + step;
+        int i2 = offset + step * 2;
+        int i3 = offset + step * 3;
+        int i4 = offset + step * 4;
+        int i5 = offset + step * 5;
+        int i6 = offset + step * 6;
+        int i7 = offset + step * 7;
+        float tmp0 = d[i0] + d[i7];
+        float tmp7 = d[i0] - d[i7];
+        float tmp1 = d[i1] + d[i6];
+        float tmp6 = d[i1] - d[i6];
+        float tmp2 = d[i2] + d[i5];
+        float tmp5 = d[i2] - d[i5];
+        float tmp3 = d[i3] + d[i4];
+        float tmp4 = d[i3] - d[i4];
+
+        float tmp10 = tmp0 + tmp3;
+        float tmp13 = tmp0 - tmp3;
+        float tmp11 = tmp1 + tmp2;
+        float tmp12 = tmp1 - tmp2;
+        d[i0] = tmp10 + tmp11;
+        d[i4] = tmp10 - tmp11;
+        float z1 = (tmp12 + tmp13) * 0.707106781f;
+        d[i2] = tmp13 + z1;
+        d[i6] = tmp13 - z1;
+
+        tmp10 = tmp4 + tmp5;
+        tmp11 = tmp5 + tmp6;
+        tmp12 = tmp6 + tmp7;
+        float z5 = (tmp10 - tmp12) * 0.382683433f;
+        float z2 = 0.541196100f * tmp10 + z5;
+        float z4 = 1.306562965f * tmp12 + z5;
+        float z3 = tmp11 * 0.707106781f;
+        float z11 = tmp7 + z3;
+        float z13 = tmp7 - z3;
+        d[i5] = z13 + z2;
+        d[i3] = z13 - z2;
+        d[i1] = z11 + z4;
+        d[i7] = z11 - z4;
+    }
+
+    /**
+     * 写入熵编码数据位，0xFF后补0
+     */
+    void writeBits(int bits, int count) throws IOException {
+        mBitBuffer = (mBitBuffer << count) | (bits & ((1 << count) - 1));
+        mBitCount += count;
+        while (mBitCount >= 8) {
+            int value = (mBitBuffer >> (mBitCount - 8)) & 0xFF;
+            writeByte(value);
+            if (value == 0xFF) {
+                writeByte(0);
+            }
+            mBitCount -= 8;
+        }
+        mBitBuffer &= (1 << mBitCount) - 1;
+    }
+
+    private void writeMarker(int marker, int length) throws IOException {
+        writeByte(0xFF);
+        writeByte(marker);
+        writeShort(length);
+    }
+
+    private void writeShort(int value) throws IOException {
+        writeByte((value >> 8) & 0xFF);
+        writeByte(value & 0xFF);
+    }
+
+    void writeByte(int value) throws IOException {
+        if (mOutLength == mOutBuffer.length) {
+            flushBuffer();
+        }
+        mOutBuffer[mOutLength++] = (byte) value;
+        if (mCapture != null) {
+            mCapture.write(value);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (mOutLength > 0) {
+            mOut.write(mOutBuffer, 0, mOutLength);
+            mOutLength = 0;
+        }
+    }
+
+    /**
+     * 哈夫曼编码表，由码长分布和符号列表生成
+     */
+    private static final class HuffmanTable {
+        private final int[] mBits;
+        private final int[] mValues;
+        private final int[] mCodes = new int[256];
+        private final int[] mSizes = new int[256];
+
+        HuffmanTable(int[] bits, int[] values) {
+            mBits = bits;
+            mValues = values;
+            int code = 0;
+            int k = 0;
+            for (int length = 1; length <= 16; length++) {
+                for (int i = 0; i < bits[length - 1]; i++) {
+                    mCodes[values[k]] = code;
+                    mSizes[values[k]] = length;
+                    code++;
+                    k++;
+                }
+                code <<= 1;
+            }
+        }
+
+        int length() {
+            return 1 + 16 + mValues.length;
+        }
+
+        void write(JpegStreamEncoder encoder, int tableClassAndId) throws IOException {
+            encoder.writeByte(tableClassAndId);
+            for (int bit : mBits) {
+                encoder.writeByte(bit);
+            }
+            for (int value : mValues) {
+                encoder.writeByte(value);
+            }
+        }
+
+        void writeSymbol(JpegStreamEncoder encoder, int symbol) throws IOException {
+            encoder.writeBits(mCodes[symbol], mSizes[symbol]);
+        }
+    }
+}
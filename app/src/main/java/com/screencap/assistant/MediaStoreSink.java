@@ -0,0 +1,162 @@
+package com.screencap.assistant;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 直接写入MediaStore的截图输出
+ * 先插入一条 IS_PENDING 的记录，编码器的输出经大缓冲区直接写入其文件描述符，
+ * 写完后一次 update 填入尺寸、MIME类型并取消 IS_PENDING 发布到相册。
+ * 记录的元数据由这里直接给出，媒体扫描不需要再读取和解析文件。
+ * 未发布就 close 时删除这条记录，相册中不会留下半个文件
+ */
+public final class MediaStoreSink implements Closeable {
+
+    private static final String TAG = "MediaStoreSink";
+
+    // 写入缓冲区大小，按块写入文件描述符，减少系统调用
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final String mMimeType;
+    private final ParcelFileDescriptor mDescriptor;
+    private final OutputStream mOut;
+    private long mSize = -1;
+    private boolean mPublished = false;
+    private boolean mClosed = false;
+
+    private MediaStoreSink(ContentResolver resolver, Uri uri, String mimeType, ParcelFileDescriptor descriptor) {
+        mResolver = resolver;
+        mUri = uri;
+        mMimeType = mimeType;
+        mDescriptor = descriptor;
+        mOut = new BufferedOutputStream(new FileOutputStream(descriptor.getFileDescriptor()), BUFFER_SIZE);
+    }
+
+    /**
+     * 在 Pictures/ThorScreenshots 下创建待发布的图片记录
+     * @param displayName 文件名，重名时由MediaStore自动改名
+     * @param dateTaken 拍摄时间（毫秒）
+     */
+    public static MediaStoreSink open(Context context, String displayName, String mimeType, long dateTaken)
+            throws IOException {
+        return open(context, Constants.SCREENSHOT_DIR, displayName, mimeType, dateTaken);
+    }
+
+    /**
+     * 在 Pictures 下的指定目录创建待发布的图片记录
+     * @param directory 相对于 Pictures 的目录，不存在时由MediaStore创建
+     */
+    public static MediaStoreSink open(Context context, String directory, String displayName, String mimeType,
+                                      long dateTaken) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, displayName);
+        values.put(MediaStore.Images.Media.MIME_TYPE, mimeType);
+        values.put(MediaStore.Images.Media.RELATIVE_PATH,
+                Environment.DIRECTORY_PICTURES + "/" + directory);
+        values.put(MediaStore.Images.Media.DATE_TAKEN, dateTaken);
+        values.put(MediaStore.Images.Media.IS_PENDING, 1);
+        Uri uri = resolver.insert(
+                MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY), values);
+        if (uri == null) {
+            throw new IOException("创建相册记录失败: " + displayName);
+        }
+        try {
+            // 以读写方式打开，HEIF由 MediaMuxer 写入，需要可定位回写的文件描述符
+            ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "rw");
+            if (descriptor == null) {
+                throw new IOException("打开相册记录失败: " + uri);
+            }
+            return new MediaStoreSink(resolver, uri, mimeType, descriptor);
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
+        }
+    }
+
+    /**
+     * 编码器的输出流，由 publish 或 close 负责关闭
+     */
+    public OutputStream getOutputStream() {
+        return mOut;
+    }
+
+    /**
+     * 记录的文件描述符，供不经输出流、直接写文件的编码器（HEIF）使用
+     */
+    public FileDescriptor getFileDescriptor() {
+        return mDescriptor.getFileDescriptor();
+    }
+
+    public Uri getUri() {
+        return mUri;
+    }
+
+    /**
+     * 写入的字节数，发布后有效
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * 写完后发布到相册，尺寸和MIME类型在同一次 update 中写入
+     */
+    public Uri publish(int width, int height) throws IOException {
+        closeStreams();
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.WIDTH, width);
+        values.put(MediaStore.Images.Media.HEIGHT, height);
+        values.put(MediaStore.Images.Media.MIME_TYPE, mMimeType);
+        values.put(MediaStore.Images.Media.IS_PENDING, 0);
+        if (mResolver.update(mUri, values, null, null) == 0) {
+            throw new IOException("发布相册记录失败: " + mUri);
+        }
+        mPublished = true;
+        return mUri;
+    }
+
+    /**
+     * 关闭输出，尚未发布时删除记录
+     */
+    @Override
+    public void close() {
+        try {
+            closeStreams();
+        } catch (IOException e) {
+            Log.w(TAG, "关闭输出失败: " + e.getMessage());
+        }
+        if (!mPublished) {
+            mResolver.delete(mUri, null, null);
+        }
+    }
+
+    private void closeStreams() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            mOut.flush();
+            mSize = mDescriptor.getStatSize();
+            mOut.close();
+        } finally {
+            mDescriptor.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.screencap.assistant;
+
+/**
+ * 额外输出规格，截图保存时按规格另存一份不同尺寸、格式或目录的副本
+ */
+public class OutputVariant {
+    // 文件名中不允许出现的字符
+    static final String INVALID_NAME_CHARS = "/\\:*?\"<>|";
+    // 文件名后缀的最大长度
+    private static final int MAX_SUFFIX_LENGTH = 32;
+
+    private String name;
+    // 相对原图的缩放百分比，100为原尺寸
+    private int scalePercent;
+    // 短边上限（像素），0为不限制，例如720
+    private int maxShortSide;
+    private int codec;
+    private int quality;
+    // 相对于 Pictures 的保存目录
+    private String directory;
+    private boolean enabled;
+
+    public OutputVariant(String name, int scalePercent, int maxShortSide, int codec, int quality,
+                         String directory, boolean enabled) {
+        this.name = name;
+        this.scalePercent = scalePercent;
+        this.maxShortSide = maxShortSide;
+        this.codec = codec;
+        this.quality = quality;
+        this.directory = directory;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 对给定尺寸的原图的缩放比例，不放大
+     */
+    public float getScale(int width, int height) {
+        float scale = Math.min(1f, Math.max(1, scalePercent) / 100f);
+        if (maxShortSide > 0) {
+            scale = Math.min(scale, (float) maxShortSide / Math.min(width, height));
+        }
+        return scale;
+    }
+
+    /**
+     * 保存目录，未设置时为截图目录
+     */
+    public String getDirectoryOrDefault() {
+        String trimmed = directory != null ? directory.trim().replaceAll("^/+|/+$", "") : "";
+        return trimmed.isEmpty() ? Constants.SCREENSHOT_DIR : trimmed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 名称是否包含文件名中不允许的字符
+     */
+    public static boolean isValidName(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x20 || INVALID_NAME_CHARS.indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 用作文件名后缀的名称
+     * 不允许的字符替换为下划线，去掉首尾的点和空白并限制长度，为空时使用 variant
+     */
+    public String getFileNameSuffix() {
+        StringBuilder builder = new StringBuilder();
+        String source = name != null ? name : "";
+        for (int i = 0; i < source.length() && builder.length() < MAX_SUFFIX_LENGTH; i++) {
+            char c = source.charAt(i);
+            builder.append(c < 0x20 || INVALID_NAME_CHARS.indexOf(c) >= 0 ? '_' : c);
+        }
+        String suffix = builder.toString().replaceAll("^[.\\s]+|[.\\s]+$", "");
+        return suffix.isEmpty() ? "variant" : suffix;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getScalePercent() {
+        return scalePercent;
+    }
+
+    public void setScalePercent(int scalePercent) {
+        this.scalePercent = scalePercent;
+    }
+
+    public int getMaxShortSide() {
+        return maxShortSide;
+    }
+
+    public void setMaxShortSide(int maxShortSide) {
+        this.maxShortSide = maxShortSide;
+    }
+
+    public int getCodec() {
+        return codec;
+    }
+
+    public void setCodec(int codec) {
+        this.codec = codec;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    public void setQuality(int quality) {
+        this.quality = quality;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
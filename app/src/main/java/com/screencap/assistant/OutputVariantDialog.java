@@ -0,0 +1,215 @@
+package com.screencap.assistant;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.Window;
+import android.view.WindowManager;
+import android.widget.EditText;
+import android.widget.PopupMenu;
+import android.widget.RadioGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.material.slider.Slider;
+
+/**
+ * 编辑额外输出规格的对话框
+ */
+public class OutputVariantDialog extends Dialog {
+    private Context mContext;
+    private OutputVariant mVariant;
+    private boolean mIsNew;
+    private int mCodec;
+    private OnVariantChangeListener mOnVariantChangeListener;
+
+    private EditText mNameEdit;
+    private RadioGroup mSizeGroup;
+    private TextView mCodecText;
+    private TextView mQualityText;
+    private Slider mQualitySlider;
+    private EditText mDirectoryEdit;
+
+    public interface OnVariantChangeListener {
+        void onVariantSave(OutputVariant variant);
+
+        void onVariantDelete(OutputVariant variant);
+    }
+
+    /**
+     * @param isNew 新添加的规格不显示删除按钮
+     */
+    public OutputVariantDialog(@NonNull Context context, OutputVariant variant, boolean isNew) {
+        super(context, R.style.BottomSheetDialogStyle);
+        this.mContext = context;
+        this.mVariant = variant;
+        this.mIsNew = isNew;
+        this.mCodec = variant.getCodec();
+        init();
+    }
+
+    private void init() {
+        View view = LayoutInflater.from(mContext).inflate(R.layout.dialog_output_variant, null);
+        setContentView(view);
+
+        // 设置对话框宽度为屏幕宽度
+        Window window = getWindow();
+        WindowManager.LayoutParams layoutParams = window.getAttributes();
+        layoutParams.width = WindowManager.LayoutParams.MATCH_PARENT;
+        window.setAttributes(layoutParams);
+        window.setGravity(Gravity.BOTTOM);
+
+        mNameEdit = view.findViewById(R.id.output_variant_name_edit);
+        mSizeGroup = view.findViewById(R.id.output_variant_size_group);
+        mCodecText = view.findViewById(R.id.output_variant_codec_text);
+        mQualityText = view.findViewById(R.id.output_variant_quality_text);
+        mQualitySlider = view.findViewById(R.id.output_variant_quality_slider);
+        mDirectoryEdit = view.findViewById(R.id.output_variant_directory_edit);
+
+        // 加载规格
+        mNameEdit.setText(mVariant.getName());
+        mSizeGroup.check(getSizeButtonId(mVariant));
+        mCodecText.setText(ImageCodec.getName(mCodec));
+        int quality = Math.max(50, Math.min(100, mVariant.getQuality() / 5 * 5));
+        mQualitySlider.setValue(quality);
+        mQualityText.setText(String.valueOf(quality));
+        mDirectoryEdit.setText(mVariant.getDirectory());
+        updateQualityState();
+
+        view.findViewById(R.id.output_variant_codec_row).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showCodecMenu();
+            }
+        });
+
+        mQualitySlider.addOnChangeListener(new Slider.OnChangeListener() {
+            @Override
+            public void onValueChange(Slider slider, float value, boolean fromUser) {
+                mQualityText.setText(String.valueOf((int) value));
+            }
+        });
+
+        View deleteButton = view.findViewById(R.id.output_variant_delete);
+        deleteButton.setVisibility(mIsNew ? View.INVISIBLE : View.VISIBLE);
+        deleteButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (mOnVariantChangeListener != null) {
+                    mOnVariantChangeListener.onVariantDelete(mVariant);
+                }
+                dismiss();
+            }
+        });
+
+        view.findViewById(R.id.output_variant_cancel).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                dismiss();
+            }
+        });
+
+        view.findViewById(R.id.output_variant_save).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                save();
+            }
+        });
+    }
+
+    private void save() {
+        String name = mNameEdit.getText().toString().trim();
+        if (name.isEmpty()) {
+            Toast.makeText(mContext, R.string.output_variant_name_empty, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (!OutputVariant.isValidName(name)) {
+            Toast.makeText(mContext, R.string.output_variant_name_invalid, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        mVariant.setName(name);
+        int checkedId = mSizeGroup.getCheckedRadioButtonId();
+        if (checkedId == R.id.output_variant_size_half) {
+            mVariant.setScalePercent(50);
+            mVariant.setMaxShortSide(0);
+        } else if (checkedId == R.id.output_variant_size_720p) {
+            mVariant.setScalePercent(100);
+            mVariant.setMaxShortSide(720);
+        } else if (checkedId == R.id.output_variant_size_quarter) {
+            mVariant.setScalePercent(25);
+            mVariant.setMaxShortSide(0);
+        } else {
+            mVariant.setScalePercent(100);
+            mVariant.setMaxShortSide(0);
+        }
+        mVariant.setCodec(mCodec);
+        mVariant.setQuality((int) mQualitySlider.getValue());
+        mVariant.setDirectory(mDirectoryEdit.getText().toString().trim());
+        if (mOnVariantChangeListener != null) {
+            mOnVariantChangeListener.onVariantSave(mVariant);
+        }
+        dismiss();
+    }
+
+    private static int getSizeButtonId(OutputVariant variant) {
+        if (variant.getMaxShortSide() > 0) {
+            return R.id.output_variant_size_720p;
+        }
+        if (variant.getScalePercent() <= 25) {
+            return R.id.output_variant_size_quarter;
+        }
+        if (variant.getScalePercent() < 100) {
+            return R.id.output_variant_size_half;
+        }
+        return R.id.output_variant_size_full;
+    }
+
+    /**
+     * 无损格式没有质量设置
+     */
+    private void updateQualityState() {
+        boolean lossy = ImageCodec.isLossy(mCodec);
+        mQualitySlider.setEnabled(lossy);
+        mQualitySlider.setAlpha(lossy ? 1.0f : 0.5f);
+        mQualityText.setAlpha(lossy ? 1.0f : 0.5f);
+    }
+
+    private void showCodecMenu() {
+        // 锚定在格式文字上，菜单在右侧弹出
+        PopupMenu popupMenu = new PopupMenu(mContext, mCodecText, Gravity.END, 0, R.style.RoundedPopupMenuStyle);
+        popupMenu.getMenuInflater().inflate(R.menu.menu_codec, popupMenu.getMenu());
+        if (mCodec >= 0 && mCodec < CodecSettingsActivity.CODEC_MENU_IDS.length) {
+            popupMenu.getMenu().findItem(CodecSettingsActivity.CODEC_MENU_IDS[mCodec]).setChecked(true);
+        }
+
+        popupMenu.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
+            @Override
+            public boolean onMenuItemClick(MenuItem item) {
+                for (int i = 0; i < CodecSettingsActivity.CODEC_MENU_IDS.length; i++) {
+                    if (item.getItemId() != CodecSettingsActivity.CODEC_MENU_IDS[i]) {
+                        continue;
+                    }
+                    mCodec = i;
+                    mCodecText.setText(ImageCodec.getName(i));
+                    updateQualityState();
+                    if (i == ImageCodec.HEIF && !ImageCodec.isHeifAvailable()) {
+                        Toast.makeText(mContext, R.string.codec_heif_unavailable, Toast.LENGTH_SHORT).show();
+                    }
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        popupMenu.show();
+    }
+
+    public void setOnVariantChangeListener(OnVariantChangeListener listener) {
+        this.mOnVariantChangeListener = listener;
+    }
+}
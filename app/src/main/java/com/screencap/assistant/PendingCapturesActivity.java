@@ -0,0 +1,220 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.DateFormat;
+import android.view.LayoutInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.OnBackPressedCallback;
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+
+import com.google.android.material.card.MaterialCardView;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 待转换截图页面，查看暂存区中尚未转换为最终格式的截图，也可以立即触发转换
+ */
+public class PendingCapturesActivity extends AppCompatActivity {
+
+    // 缩略图的目标边长（像素）
+    private static final int THUMBNAIL_SIZE = 216;
+    // 原图预览的目标宽度（像素）
+    private static final int PREVIEW_WIDTH = 1080;
+
+    private final ExecutorService mLoadExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "pending-captures-load"));
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private LinearLayout mListContainer;
+    private TextView mSummaryText;
+    private MaterialCardView mConvertNowCard;
+    private ImageView mPreviewImage;
+    private final OnBackPressedCallback mClosePreviewCallback = new OnBackPressedCallback(false) {
+        @Override
+        public void handleOnBackPressed() {
+            closePreview();
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_pending_captures);
+
+        initViews();
+        setupActionBar();
+        setupListeners();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadEntries();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mLoadExecutor.shutdownNow();
+    }
+
+    private void initViews() {
+        mListContainer = findViewById(R.id.pending_captures_list);
+        mSummaryText = findViewById(R.id.pending_captures_summary);
+        mConvertNowCard = findViewById(R.id.convert_now_card);
+        mPreviewImage = findViewById(R.id.pending_capture_preview);
+
+        // 设置 Toolbar 的返回按钮监听
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (toolbar != null) {
+            toolbar.setNavigationOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    finish();
+                }
+            });
+        }
+    }
+
+    private void setupActionBar() {
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+            actionBar.setTitle(R.string.pending_captures_title);
+        }
+    }
+
+    private void setupListeners() {
+        // 立即转换卡片点击监听
+        mConvertNowCard.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (SpillStore.count(PendingCapturesActivity.this) == 0) {
+                    return;
+                }
+                SpillConvertJobService.runNow(PendingCapturesActivity.this);
+                Toast.makeText(PendingCapturesActivity.this, R.string.pending_captures_converting,
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+
+        // 点击预览关闭
+        mPreviewImage.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                closePreview();
+            }
+        });
+
+        // 显示预览时返回键先关闭预览
+        getOnBackPressedDispatcher().addCallback(this, mClosePreviewCallback);
+    }
+
+    /**
+     * 在后台列出暂存截图并逐张生成缩略图
+     */
+    private void loadEntries() {
+        mLoadExecutor.execute(() -> {
+            List<SpillStore.Entry> entries = SpillStore.list(this);
+            mMainHandler.post(() -> showEntries(entries));
+            for (SpillStore.Entry entry : entries) {
+                int sampleSize = Math.max(1, Math.max(entry.width, entry.height) / THUMBNAIL_SIZE);
+                Bitmap thumbnail = SpillStore.load(entry, sampleSize);
+                if (thumbnail != null) {
+                    mMainHandler.post(() -> showThumbnail(entry, thumbnail));
+                }
+            }
+        });
+    }
+
+    private void showEntries(List<SpillStore.Entry> entries) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        mListContainer.removeAllViews();
+        mSummaryText.setText(entries.isEmpty() ? getString(R.string.pending_captures_empty)
+                : getString(R.string.pending_captures_summary, entries.size()));
+        mConvertNowCard.setAlpha(entries.isEmpty() ? 0.5f : 1.0f);
+        LayoutInflater inflater = LayoutInflater.from(this);
+        for (SpillStore.Entry entry : entries) {
+            View item = inflater.inflate(R.layout.item_pending_capture, mListContainer, false);
+            item.setTag(entry);
+            TextView nameText = item.findViewById(R.id.pending_capture_name);
+            TextView infoText = item.findViewById(R.id.pending_capture_info);
+            nameText.setText(entry.fileName);
+            infoText.setText(String.format(Locale.getDefault(), "%dx%d · %s · %s",
+                    entry.width, entry.height,
+                    ImageCodec.isLossy(entry.format) ? ImageCodec.getName(entry.format) + " "
+                            + (entry.quality == SpillStore.QUALITY_AUTO ? "自动" : entry.quality)
+                            : ImageCodec.getName(entry.format),
+                    DateFormat.format("MM-dd HH:mm:ss", entry.createdAt)));
+            item.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    openPreview(entry);
+                }
+            });
+            mListContainer.addView(item);
+        }
+    }
+
+    private void showThumbnail(SpillStore.Entry entry, Bitmap thumbnail) {
+        View item = mListContainer.findViewWithTag(entry);
+        if (item == null) {
+            return;
+        }
+        ImageView thumbnailView = item.findViewById(R.id.pending_capture_thumbnail);
+        thumbnailView.setImageBitmap(thumbnail);
+    }
+
+    /**
+     * 按屏幕宽度降采样载入暂存截图并全屏显示
+     */
+    private void openPreview(SpillStore.Entry entry) {
+        mLoadExecutor.execute(() -> {
+            int sampleSize = Math.max(1, entry.width / PREVIEW_WIDTH);
+            Bitmap preview = SpillStore.load(entry, sampleSize);
+            mMainHandler.post(() -> {
+                if (preview == null) {
+                    // 已被转换任务处理，刷新列表
+                    loadEntries();
+                    return;
+                }
+                mPreviewImage.setImageBitmap(preview);
+                mPreviewImage.setVisibility(View.VISIBLE);
+                mClosePreviewCallback.setEnabled(true);
+            });
+        });
+    }
+
+    private void closePreview() {
+        mClosePreviewCallback.setEnabled(false);
+        mPreviewImage.setVisibility(View.GONE);
+        mPreviewImage.setImageDrawable(null);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            // 返回上一级活动
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -0,0 +1,542 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 多核无损PNG编码器
+ * 图片按行分段，各段在线程池上并行完成滤波和deflate压缩：
+ * - 每段使用独立的原始deflate流，非最后一段以 SYNC_FLUSH 结束并按字节对齐，依次拼接即为一个完整的deflate流
+ * - 各段的adler32分别计算后合并，zlib头尾与单线程编码完全一致，任何标准解码器都能读取
+ * - 每行在 None/Sub/Up/Average/Paeth 中选择绝对值和最小的滤波方式
+ * - 颜色数不超过256的截图（界面、像素画）输出为索引色PNG，体积通常只有真彩色的几分之一
+ */
+public class PngEncoder {
+
+    // 速度优先：压缩级别1，固定使用Up滤波
+    public static final int PRESET_FAST = 0;
+    // 均衡：压缩级别6，自适应滤波
+    public static final int PRESET_BALANCED = 1;
+    // 体积优先：压缩级别9，自适应滤波
+    public static final int PRESET_SMALL = 2;
+
+    // 每段的行数，过小会因为每段重置字典降低压缩率
+    private static final int STRIPE_ROWS = 128;
+    private static final int MAX_PALETTE_SIZE = 256;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_INDEXED = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    /**
+     * 按行提供ARGB像素（非预乘）
+     */
+    public interface PixelSource {
+        void getRows(int[] pixels, int y, int rows);
+    }
+
+    private final ExecutorService mExecutor;
+    private final int mLevel;
+    private final boolean mAdaptiveFilter;
+    private final boolean mPaletteEnabled;
+
+    /**
+     * @param executor 并行编码使用的线程池
+     * @param paletteEnabled 是否允许输出索引色PNG
+     */
+    public PngEncoder(ExecutorService executor, int preset, boolean paletteEnabled) {
+        mExecutor = executor;
+        switch (preset) {
+            case PRESET_FAST:
+                mLevel = 1;
+                mAdaptiveFilter = false;
+                break;
+            case PRESET_SMALL:
+                mLevel = 9;
+                mAdaptiveFilter = true;
+                break;
+            case PRESET_BALANCED:
+            default:
+                mLevel = 6;
+                mAdaptiveFilter = true;
+                break;
+        }
+        mPaletteEnabled = paletteEnabled;
+    }
+
+    /**
+     * 编码软件位图，HARDWARE位图需先回读
+     */
+    public void encode(Bitmap bitmap, OutputStream out) throws IOException {
+        int width = bitmap.getWidth();
+        encode((pixels, y, rows) -> bitmap.getPixels(pixels, 0, width, 0, y, width, rows),
+                width, bitmap.getHeight(), out);
+    }
+
+    /**
+     * 编码图片并写入输出流，不关闭输出流
+     */
+    public void encode(PixelSource source, int width, int height, OutputStream out) throws IOException {
+        int stripeCount = (height + STRIPE_ROWS - 1) / STRIPE_ROWS;
+
+        // 第一遍：并行统计颜色和透明度
+        List<Future<ColorStats>> statsFutures = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            int top = i * STRIPE_ROWS;
+            int rows = Math.min(STRIPE_ROWS, height - top);
+            statsFutures.add(mExecutor.submit(() -> scanColors(source, width, top, rows)));
+        }
+        ColorStats colors = new ColorStats(mPaletteEnabled);
+        for (Future<ColorStats> future : statsFutures) {
+            colors.merge(await(future));
+        }
+        int[] palette = colors.getPalette();
+        int colorType = palette != null ? COLOR_TYPE_INDEXED
+                : colors.hasAlpha() ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB;
+
+        writeHeader(out, width, height, colorType, palette);
+
+        // 第二遍：并行滤波和压缩，按顺序写出
+        List<Future<Stripe>> stripeFutures = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            int top = i * STRIPE_ROWS;
+            int rows = Math.min(STRIPE_ROWS, height - top);
+            boolean last = i == stripeCount - 1;
+            stripeFutures.add(mExecutor.submit(
+                    () -> encodeStripe(source, width, top, rows, colorType, palette, last)));
+        }
+        long adler = 1;
+        for (int i = 0; i < stripeCount; i++) {
+            Stripe stripe = await(stripeFutures.get(i));
+            adler = combineAdler32(adler, stripe.adler, stripe.rawLength);
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(stripe.data.length + 6);
+            if (i == 0) {
+                writeZlibHeader(chunk);
+            }
+            chunk.write(stripe.data, 0, stripe.length);
+            if (i == stripeCount - 1) {
+                writeInt(chunk, (int) adler);
+            }
+            writeChunk(out, "IDAT", chunk.toByteArray());
+        }
+        writeChunk(out, "IEND", new byte[0]);
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("PNG编码被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("PNG编码失败: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private ColorStats scanColors(PixelSource source, int width, int top, int rows) {
+        int[] pixels = new int[width * rows];
+        source.getRows(pixels, top, rows);
+        ColorStats stats = new ColorStats(mPaletteEnabled);
+        stats.scan(pixels);
+        return stats;
+    }
+
+    private void writeHeader(OutputStream out, int width, int height, int colorType, int[] palette)
+            throws IOException {
+        out.write(SIGNATURE);
+        ByteArrayOutputStream ihdr = new ByteArrayOutputStream(13);
+        writeInt(ihdr, width);
+        writeInt(ihdr, height);
+        ihdr.write(8);
+        ihdr.write(colorType);
+        ihdr.write(0);
+        ihdr.write(0);
+        ihdr.write(0);
+        writeChunk(out, "IHDR", ihdr.toByteArray());
+        if (palette == null) {
+            return;
+        }
+        byte[] plte = new byte[palette.length * 3];
+        int lastTranslucent = -1;
+        for (int i = 0; i < palette.length; i++) {
+            plte[i * 3] = (byte) (palette[i] >> 16);
+            plte[i * 3 + 1] = (byte) (palette[i] >> 8);
+            plte[i * 3 + 2] = (byte) palette[i];
+            if ((palette[i] >>> 24) != 0xFF) {
+                lastTranslucent = i;
+            }
+        }
+        writeChunk(out, "PLTE", plte);
+        if (lastTranslucent >= 0) {
+            byte[] trns = new byte[lastTranslucent + 1];
+            for (int i = 0; i <= lastTranslucent; i++) {
+                trns[i] = (byte) (palette[i] >>> 24);
+            }
+            writeChunk(out, "tRNS", trns);
+        }
+    }
+
+    /**
+     * 滤波并压缩一段，结果为原始deflate数据
+     */
+    private Stripe encodeStripe(PixelSource source, int width, int top, int rows, int colorType,
+                                int[] palette, boolean last) {
+        int bpp = colorType == COLOR_TYPE_INDEXED ? 1 : colorType == COLOR_TYPE_RGBA ? 4 : 3;
+        int rowBytes = width * bpp;
+        // 多取上一行，Up/Average/Paeth 滤波需要参考
+        int firstRow = top > 0 ? top - 1 : top;
+        int fetchRows = rows + (top - firstRow);
+        int[] pixels = new int[width * fetchRows];
+        source.getRows(pixels, firstRow, fetchRows);
+
+        byte[] filtered = new byte[rows * (rowBytes + 1)];
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        byte[][] candidates = mAdaptiveFilter && colorType != COLOR_TYPE_INDEXED
+                ? new byte[5][rowBytes] : null;
+        ColorIndex index = palette != null ? new ColorIndex(palette) : null;
+
+        if (firstRow < top) {
+            toRowBytes(pixels, 0, width, colorType, index, previous);
+        }
+        int pixelRowOffset = firstRow < top ? 1 : 0;
+        int out = 0;
+        for (int y = 0; y < rows; y++) {
+            toRowBytes(pixels, (y + pixelRowOffset) * width, width, colorType, index, current);
+            if (colorType == COLOR_TYPE_INDEXED) {
+                // 索引色图片按规范建议不滤波
+                filtered[out++] = FILTER_NONE;
+                System.arraycopy(current, 0, filtered, out, rowBytes);
+            } else if (candidates == null) {
+                filtered[out++] = FILTER_UP;
+                filterRow(FILTER_UP, current, previous, bpp, filtered, out);
+            } else {
+                int best = FILTER_NONE;
+                long bestSum = Long.MAX_VALUE;
+                for (int filter = FILTER_NONE; filter <= FILTER_PAETH; filter++) {
+                    filterRow(filter, current, previous, bpp, candidates[filter], 0);
+                    long sum = absSum(candidates[filter], bestSum);
+                    if (sum < bestSum) {
+                        bestSum = sum;
+                        best = filter;
+                    }
+                }
+                filtered[out++] = (byte) best;
+                System.arraycopy(candidates[best], 0, filtered, out, rowBytes);
+            }
+            out += rowBytes;
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        Adler32 adler32 = new Adler32();
+        adler32.update(filtered, 0, filtered.length);
+
+        Deflater deflater = new Deflater(mLevel, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(filtered.length / 4 + 64);
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            deflater.setInput(filtered);
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, length);
+                }
+            } else {
+                // 以SYNC_FLUSH结束本段，输出按字节对齐，可与下一段直接拼接
+                int length;
+                do {
+                    length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, length);
+                } while (length == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        Stripe stripe = new Stripe();
+        stripe.data = compressed.toByteArray();
+        stripe.length = stripe.data.length;
+        stripe.adler = adler32.getValue();
+        stripe.rawLength = filtered.length;
+        return stripe;
+    }
+
+    private static void toRowBytes(int[] pixels, int offset, int width, int colorType, ColorIndex index,
+                                   byte[] row) {
+        int out = 0;
+        for (int x = 0; x < width; x++) {
+            int color = pixels[offset + x];
+            switch (colorType) {
+                case COLOR_TYPE_INDEXED:
+                    row[out++] = (byte) index.indexOf(color);
+                    break;
+                case COLOR_TYPE_RGBA:
+                    row[out++] = (byte) (color >> 16);
+                    row[out++] = (byte) (color >> 8);
+                    row[out++] = (byte) color;
+                    row[out++] = (byte) (color >>> 24);
+                    break;
+                default:
+                    row[out++] = (byte) (color >> 16);
+                    row[out++] = (byte) (color >> 8);
+                    row[out++] = (byte) color;
+                    break;
+            }
+        }
+    }
+
+    private static void filterRow(int filter, byte[] current, byte[] previous, int bpp, byte[] out, int offset) {
+        int length = current.length;
+        switch (filter) {
+            case FILTER_NONE:
+                System.arraycopy(current, 0, out, offset, length);
+                break;
+            case FILTER_SUB:
+                for (int i = 0; i < length; i++) {
+                    int left = i >= bpp ? current[i - bpp] & 0xFF : 0;
+                    out[offset + i] = (byte) ((current[i] & 0xFF) - left);
+                }
+                break;
+            case FILTER_UP:
+                for (int i = 0; i < length; i++) {
+                    out[offset + i] = (byte) ((current[i] & 0xFF) - (previous[i] & 0xFF));
+                }
+                break;
+            case FILTER_AVERAGE:
+                for (int i = 0; i < length; i++) {
+                    int left = i >= bpp ? current[i - bpp] & 0xFF : 0;
+                    out[offset + i] = (byte) ((current[i] & 0xFF) - ((left + (previous[i] & 0xFF)) >> 1));
+                }
+                break;
+            case FILTER_PAETH:
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? current[i - bpp] & 0xFF : 0;
+                    int b = previous[i] & 0xFF;
+                    int c = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+                    out[offset + i] = (byte) ((current[i] & 0xFF) - paeth(a, b, c));
+                }
+                break;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * 按有符号字节求绝对值和，超过当前最优值时提前结束
+     */
+    private static long absSum(byte[] row, long limit) {
+        long sum = 0;
+        for (byte value : row) {
+            sum += Math.abs((int) value);
+            if (sum >= limit) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 合并两段数据的adler32，与zlib的 adler32_combine 相同
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long rem = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + base - rem;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private void writeZlibHeader(OutputStream out) throws IOException {
+        out.write(0x78);
+        if (mLevel <= 1) {
+            out.write(0x01);
+        } else if (mLevel <= 5) {
+            out.write(0x5E);
+        } else if (mLevel == 6) {
+            out.write(0x9C);
+        } else {
+            out.write(0xDA);
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        writeInt(out, data.length);
+        out.write(typeBytes);
+        out.write(data);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static final class Stripe {
+        byte[] data;
+        int length;
+        long adler;
+        long rawLength;
+    }
+
+    /**
+     * 颜色统计：是否含透明像素，以及颜色数不超过256时的调色板
+     */
+    private static final class ColorStats {
+        private ColorIndex mColors;
+        private boolean mHasAlpha = false;
+
+        ColorStats(boolean collectPalette) {
+            mColors = collectPalette ? new ColorIndex() : null;
+        }
+
+        void scan(int[] pixels) {
+            int lastColor = 0;
+            boolean hasLast = false;
+            for (int color : pixels) {
+                if (hasLast && color == lastColor) {
+                    continue;
+                }
+                hasLast = true;
+                lastColor = color;
+                if ((color >>> 24) != 0xFF) {
+                    mHasAlpha = true;
+                }
+                if (mColors != null && !mColors.add(color)) {
+                    mColors = null;
+                }
+            }
+        }
+
+        void merge(ColorStats other) {
+            mHasAlpha |= other.mHasAlpha;
+            if (mColors == null) {
+                return;
+            }
+            if (other.mColors == null) {
+                mColors = null;
+                return;
+            }
+            for (int color : other.mColors.getColors()) {
+                if (!mColors.add(color)) {
+                    mColors = null;
+                    return;
+                }
+            }
+        }
+
+        boolean hasAlpha() {
+            return mHasAlpha;
+        }
+
+        int[] getPalette() {
+            return mColors != null ? mColors.getColors() : null;
+        }
+    }
+
+    /**
+     * 不超过256种颜色的开放寻址哈希表，颜色到调色板索引
+     */
+    private static final class ColorIndex {
+        private static final int CAPACITY = 1024;
+        private final int[] mKeys = new int[CAPACITY];
+        private final short[] mIndices = new short[CAPACITY];
+        private final boolean[] mUsed = new boolean[CAPACITY];
+        private final int[] mColors = new int[MAX_PALETTE_SIZE];
+        private int mSize = 0;
+
+        ColorIndex() {
+        }
+
+        ColorIndex(int[] palette) {
+            for (int color : palette) {
+                add(color);
+            }
+        }
+
+        /**
+         * @return 颜色数超过256时返回false
+         */
+        boolean add(int color) {
+            int slot = slot(color);
+            if (mUsed[slot]) {
+                return true;
+            }
+            if (mSize == MAX_PALETTE_SIZE) {
+                return false;
+            }
+            mUsed[slot] = true;
+            mKeys[slot] = color;
+            mIndices[slot] = (short) mSize;
+            mColors[mSize++] = color;
+            return true;
+        }
+
+        int indexOf(int color) {
+            return mIndices[slot(color)];
+        }
+
+        int[] getColors() {
+            int[] colors = new int[mSize];
+            System.arraycopy(mColors, 0, colors, 0, mSize);
+            return colors;
+        }
+
+        private int slot(int color) {
+            int slot = (color * 0x9E3779B1) >>> 22;
+            while (mUsed[slot] && mKeys[slot] != color) {
+                slot = (slot + 1) & (CAPACITY - 1);
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.screencap.assistant;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.hardware.HardwareBuffer;
+import android.hardware.display.DisplayManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.Display;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 预截图缓冲区
+ * 开启后以平台允许的最高频率轮流截取主副屏，每个Display保留最近几帧HARDWARE位图。
+ * 手势触发时直接取出最接近手指按下时刻的一帧，不再等待截图，画面中也不会出现手势反馈图标。
+ * 所有缓存帧的总内存不超过设置的上限，所有屏幕熄灭时自动暂停并释放缓存。
+ * 有截图正在进行或排队时暂缓预截图，不与实时截图争抢平台的截图频率限制
+ */
+public class PreRollBuffer {
+
+    private static final String TAG = "PreRollBuffer";
+
+    // 每个Display最多缓存的帧数
+    private static final int MAX_FRAMES_PER_DISPLAY = 4;
+    // 两次预截图之间的最短间隔，避免无需等待的截图后端空转
+    private static final long MIN_REFRESH_PERIOD_MS = 100;
+    // 与目标时刻相差超过该值的帧视为过期，改为实时截图
+    private static final long MAX_FRAME_AGE_MS = 1000;
+
+    private final Context mContext;
+    private final Supplier<CaptureBackend> mBackendSupplier;
+    private final BooleanSupplier mCaptureInFlight;
+    private final DisplayManager mDisplayManager;
+    private final HandlerThread mRefreshThread;
+    private final Handler mRefreshHandler;
+    private final SparseArray<ArrayDeque<CaptureResult>> mFrames = new SparseArray<>();
+
+    private long mMemoryLimitBytes;
+    private long mUsedBytes = 0;
+    private boolean mRunning = false;
+    private boolean mPaused = false;
+    private boolean mRefreshPending = false;
+    // 下一次预截图的Display序号，主副屏轮流截取
+    private int mNextDisplayIndex = 0;
+
+    // 统计
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+    private int mEvictedCount = 0;
+
+    private final DisplayManager.DisplayListener mDisplayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+            updatePausedState();
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+            synchronized (PreRollBuffer.this) {
+                clearDisplay(displayId);
+            }
+            updatePausedState();
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            updatePausedState();
+        }
+    };
+
+    /**
+     * @param captureInFlight 是否有实时截图或推测截图正在进行
+     */
+    public PreRollBuffer(Context context, Supplier<CaptureBackend> backendSupplier,
+            BooleanSupplier captureInFlight) {
+        mContext = context;
+        mBackendSupplier = backendSupplier;
+        mCaptureInFlight = captureInFlight;
+        mDisplayManager = context.getSystemService(DisplayManager.class);
+        mRefreshThread = new HandlerThread("preroll-refresh");
+        mRefreshThread.start();
+        mRefreshHandler = new Handler(mRefreshThread.getLooper());
+    }
+
+    /**
+     * 开始预截图
+     * @param memoryLimitMb 缓存帧的总内存上限
+     */
+    public synchronized void start(int memoryLimitMb) {
+        mMemoryLimitBytes = memoryLimitMb * 1024L * 1024L;
+        trimToLimit();
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mDisplayManager.registerDisplayListener(mDisplayListener, mRefreshHandler);
+        mPaused = !isAnyDisplayOn();
+        Log.i(TAG, "预截图已开启, 内存上限: " + memoryLimitMb + "MB" + (mPaused ? ", 屏幕已熄灭，暂停" : ""));
+        scheduleRefresh(0);
+    }
+
+    /**
+     * 停止预截图并释放所有缓存帧
+     */
+    public synchronized void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mDisplayManager.unregisterDisplayListener(mDisplayListener);
+        mRefreshHandler.removeCallbacksAndMessages(null);
+        mRefreshPending = false;
+        clear();
+        Log.i(TAG, "预截图已关闭, " + getStats());
+    }
+
+    public synchronized boolean isRunning() {
+        return mRunning && !mPaused;
+    }
+
+    /**
+     * 取出该Display最接近目标时刻的一帧，取出的帧归调用方所有
+     * @param targetTime 目标时刻（SystemClock.uptimeMillis 时基）
+     * @return 没有可用帧时返回null
+     */
+    public synchronized CaptureResult take(int displayId, long targetTime) {
+        ArrayDeque<CaptureResult> frames = mFrames.get(displayId);
+        CaptureResult best = null;
+        if (frames != null) {
+            for (CaptureResult frame : frames) {
+                if (best == null || Math.abs(frame.getTimestamp() - targetTime)
+                        < Math.abs(best.getTimestamp() - targetTime)) {
+                    best = frame;
+                }
+            }
+        }
+        if (best == null || Math.abs(best.getTimestamp() - targetTime) > MAX_FRAME_AGE_MS) {
+            mMissCount++;
+            Log.d(TAG, "Display " + displayId + " 没有可用的预截图帧, " + getStats());
+            return null;
+        }
+        frames.remove(best);
+        mUsedBytes -= frameBytes(best);
+        mHitCount++;
+        Log.i(TAG, "Display " + displayId + " 使用预截图帧, 与目标时刻相差 " +
+                (best.getTimestamp() - targetTime) + "ms, " + getStats());
+        return best;
+    }
+
+    private synchronized void scheduleRefresh(long delayMs) {
+        if (!mRunning || mPaused || mRefreshPending) {
+            return;
+        }
+        mRefreshPending = true;
+        mRefreshHandler.postDelayed(this::refresh, delayMs);
+    }
+
+    /**
+     * 截取下一个Display，完成后安排下一次预截图
+     */
+    private void refresh() {
+        // 在锁外查询，调度器发起截图时会持有自身的锁取预截图帧
+        boolean captureInFlight = mCaptureInFlight.getAsBoolean();
+        int displayId;
+        synchronized (this) {
+            mRefreshPending = false;
+            if (!mRunning || mPaused) {
+                return;
+            }
+            if (captureInFlight) {
+                // 实时截图优先，稍后再试
+                scheduleRefresh(MIN_REFRESH_PERIOD_MS);
+                return;
+            }
+            int secondaryDisplayId = DisplayUtil.getSecondaryDisplayId(mContext);
+            int displayCount = secondaryDisplayId == -1 ? 1 : 2;
+            mNextDisplayIndex = (mNextDisplayIndex + 1) % displayCount;
+            displayId = mNextDisplayIndex == 0 ? Display.DEFAULT_DISPLAY : secondaryDisplayId;
+        }
+        final long startTime = SystemClock.uptimeMillis();
+        mBackendSupplier.get().captureThrottled(displayId).thenAccept(result -> {
+            if (result.isSuccess()) {
+                addFrame(result);
+            } else {
+                result.close();
+            }
+            long elapsed = SystemClock.uptimeMillis() - startTime;
+            scheduleRefresh(Math.max(0, MIN_REFRESH_PERIOD_MS - elapsed));
+        });
+    }
+
+    private synchronized void addFrame(CaptureResult frame) {
+        if (!mRunning || mPaused) {
+            frame.close();
+            return;
+        }
+        long bytes = frameBytes(frame);
+        if (bytes > mMemoryLimitBytes) {
+            Log.w(TAG, "单帧大小超过内存上限，丢弃, Display ID: " + frame.getDisplayId());
+            frame.close();
+            return;
+        }
+        ArrayDeque<CaptureResult> frames = mFrames.get(frame.getDisplayId());
+        if (frames == null) {
+            frames = new ArrayDeque<>();
+            mFrames.put(frame.getDisplayId(), frames);
+        }
+        frames.addLast(frame);
+        mUsedBytes += bytes;
+        if (frames.size() > MAX_FRAMES_PER_DISPLAY) {
+            evict(frames.pollFirst());
+        }
+        trimToLimit();
+    }
+
+    /**
+     * 超出内存上限时淘汰所有Display中最旧的帧
+     */
+    private void trimToLimit() {
+        while (mUsedBytes > mMemoryLimitBytes) {
+            ArrayDeque<CaptureResult> oldestFrames = null;
+            for (int i = 0; i < mFrames.size(); i++) {
+                CaptureResult first = mFrames.valueAt(i).peekFirst();
+                if (first != null && (oldestFrames == null
+                        || first.getTimestamp() < oldestFrames.peekFirst().getTimestamp())) {
+                    oldestFrames = mFrames.valueAt(i);
+                }
+            }
+            if (oldestFrames == null) {
+                mUsedBytes = 0;
+                return;
+            }
+            evict(oldestFrames.pollFirst());
+        }
+    }
+
+    private void evict(CaptureResult frame) {
+        mUsedBytes -= frameBytes(frame);
+        mEvictedCount++;
+        frame.close();
+    }
+
+    private void clearDisplay(int displayId) {
+        ArrayDeque<CaptureResult> frames = mFrames.get(displayId);
+        if (frames == null) {
+            return;
+        }
+        Iterator<CaptureResult> iterator = frames.iterator();
+        while (iterator.hasNext()) {
+            CaptureResult frame = iterator.next();
+            mUsedBytes -= frameBytes(frame);
+            frame.close();
+            iterator.remove();
+        }
+        mFrames.remove(displayId);
+    }
+
+    private void clear() {
+        while (mFrames.size() > 0) {
+            clearDisplay(mFrames.keyAt(0));
+        }
+        mUsedBytes = 0;
+    }
+
+    /**
+     * 所有屏幕熄灭时暂停并释放缓存，任一屏幕点亮后恢复
+     */
+    private void updatePausedState() {
+        boolean anyOn = isAnyDisplayOn();
+        synchronized (this) {
+            if (!mRunning || mPaused == !anyOn) {
+                return;
+            }
+            mPaused = !anyOn;
+            if (mPaused) {
+                mRefreshHandler.removeCallbacksAndMessages(null);
+                mRefreshPending = false;
+                clear();
+                Log.i(TAG, "屏幕已熄灭，暂停预截图");
+            } else {
+                Log.i(TAG, "屏幕已点亮，恢复预截图");
+            }
+        }
+        scheduleRefresh(0);
+    }
+
+    private boolean isAnyDisplayOn() {
+        for (Display display : mDisplayManager.getDisplays()) {
+            if (display.getState() == Display.STATE_ON) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 估算帧占用的内存
+     * HARDWARE位图的分配大小不可查询，按硬件缓冲区的尺寸和像素格式计算，不含行对齐，
+     * 因此内存上限是近似值
+     */
+    private static long frameBytes(CaptureResult frame) {
+        HardwareBuffer buffer = frame.getHardwareBuffer();
+        if (buffer != null) {
+            return (long) buffer.getWidth() * buffer.getHeight() * buffer.getLayers()
+                    * bytesPerPixel(buffer.getFormat());
+        }
+        Bitmap bitmap = frame.getBitmap();
+        if (bitmap.getConfig() != Bitmap.Config.HARDWARE) {
+            return bitmap.getAllocationByteCount();
+        }
+        return (long) bitmap.getWidth() * bitmap.getHeight() * 4;
+    }
+
+    private static int bytesPerPixel(int format) {
+        switch (format) {
+            case HardwareBuffer.RGBA_FP16:
+                return 8;
+            case HardwareBuffer.RGB_565:
+                return 2;
+            case HardwareBuffer.RGB_888:
+                return 3;
+            default:
+                // RGBA_8888、RGBX_8888、RGBA_1010102
+                return 4;
+        }
+    }
+
+    public synchronized String getStats() {
+        return "缓存: " + (mUsedBytes / 1024 / 1024) + "/" + (mMemoryLimitBytes / 1024 / 1024) + "MB" +
+                ", 命中: " + mHitCount +
+                ", 未命中: " + mMissCount +
+                ", 淘汰: " + mEvictedCount;
+    }
+
+    /**
+     * 停止预截图并释放刷新线程
+     */
+    public void shutdown() {
+        stop();
+        mRefreshThread.quitSafely();
+    }
+}
@@ -7,6 +7,7 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -128,6 +129,23 @@ public class PreferenceUtil {
                 Constants.KEY_SCREENSHOT_DELAY, Constants.DEFAULT_SCREENSHOT_DELAY);
     }
 
+    /**
+     * 保存某个Display学习到的截图间隔
+     */
+    public static void saveLearnedScreenshotInterval(Context context, int displayId, int intervalMs) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_LEARNED_SCREENSHOT_INTERVAL_PREFIX + displayId, intervalMs)
+                .apply();
+    }
+
+    /**
+     * 获取某个Display学习到的截图间隔，未学习过时返回用户设置的截屏间隔
+     */
+    public static int getLearnedScreenshotInterval(Context context, int displayId) {
+        return getPreferences(context).getInt(
+                Constants.KEY_LEARNED_SCREENSHOT_INTERVAL_PREFIX + displayId, getScreenshotDelay(context));
+    }
+
     /**
      * 保存在任务管理器中隐藏设置
      */
@@ -215,4 +233,422 @@ public class PreferenceUtil {
         return getPreferences(context).getInt(
                 Constants.KEY_FRAME_IMAGE_QUALITY, Constants.DEFAULT_FRAME_IMAGE_QUALITY);
     }
-}
\ No newline at end of file
+
+    /**
+     * 保存套壳截屏缩放过滤方式
+     */
+    public static void saveFrameScaleFilter(Context context, int filter) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_FRAME_SCALE_FILTER, filter)
+                .apply();
+    }
+
+    /**
+     * 获取套壳截屏缩放过滤方式
+     */
+    public static int getFrameScaleFilter(Context context) {
+        return getPreferences(context).getInt(
+                Constants.KEY_FRAME_SCALE_FILTER, Constants.DEFAULT_FRAME_SCALE_FILTER);
+    }
+
+    /**
+     * 保存机身图片原始像素缓存开关状态
+     */
+    public static void saveFrameRawCacheEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_FRAME_RAW_CACHE_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取机身图片原始像素缓存开关状态
+     */
+    public static boolean getFrameRawCacheEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_FRAME_RAW_CACHE_ENABLED, Constants.DEFAULT_FRAME_RAW_CACHE_ENABLED);
+    }
+
+    /**
+     * 保存套壳截屏分段编码开关状态
+     */
+    public static void saveStripedEncodingEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_STRIPED_ENCODING_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取套壳截屏分段编码开关状态
+     */
+    public static boolean getStripedEncodingEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_STRIPED_ENCODING_ENABLED, Constants.DEFAULT_STRIPED_ENCODING_ENABLED);
+    }
+
+    /**
+     * 保存分段编码的分段缓冲区预算（KB）
+     */
+    public static void saveStripeBudgetKb(Context context, int budgetKb) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_STRIPE_BUDGET_KB, budgetKb)
+                .apply();
+    }
+
+    /**
+     * 获取分段编码的分段缓冲区预算（KB）
+     */
+    public static int getStripeBudgetKb(Context context) {
+        return getPreferences(context).getInt(
+                Constants.KEY_STRIPE_BUDGET_KB, Constants.DEFAULT_STRIPE_BUDGET_KB);
+    }
+
+    /**
+     * 保存机身区域JPEG编码缓存开关状态
+     */
+    public static void saveFrameJpegCacheEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_FRAME_JPEG_CACHE_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取机身区域JPEG编码缓存开关状态
+     */
+    public static boolean getFrameJpegCacheEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_FRAME_JPEG_CACHE_ENABLED, Constants.DEFAULT_FRAME_JPEG_CACHE_ENABLED);
+    }
+
+    /**
+     * 保存双屏并发截图开关状态
+     */
+    public static void saveConcurrentCaptureEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_CONCURRENT_CAPTURE_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取双屏并发截图开关状态
+     */
+    public static boolean getConcurrentCaptureEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_CONCURRENT_CAPTURE_ENABLED, Constants.DEFAULT_CONCURRENT_CAPTURE_ENABLED);
+    }
+
+    /**
+     * 保存双屏流水线预处理开关状态
+     */
+    public static void savePipelinedCaptureEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_PIPELINED_CAPTURE_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取双屏流水线预处理开关状态
+     */
+    public static boolean getPipelinedCaptureEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_PIPELINED_CAPTURE_ENABLED, Constants.DEFAULT_PIPELINED_CAPTURE_ENABLED);
+    }
+
+    /**
+     * 保存截图后端
+     */
+    public static void saveCaptureBackend(Context context, int backend) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_CAPTURE_BACKEND, backend)
+                .apply();
+    }
+
+    /**
+     * 获取截图后端
+     */
+    public static int getCaptureBackend(Context context) {
+        return getPreferences(context).getInt(
+                Constants.KEY_CAPTURE_BACKEND, Constants.DEFAULT_CAPTURE_BACKEND);
+    }
+
+    /**
+     * 保存预截图开关状态
+     */
+    public static void savePreRollEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_PREROLL_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取预截图开关状态
+     */
+    public static boolean getPreRollEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_PREROLL_ENABLED, Constants.DEFAULT_PREROLL_ENABLED);
+    }
+
+    /**
+     * 保存预截图缓存内存上限（MB）
+     */
+    public static void savePreRollMemoryLimitMb(Context context, int limitMb) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_PREROLL_MEMORY_LIMIT_MB, limitMb)
+                .apply();
+    }
+
+    /**
+     * 获取预截图缓存内存上限（MB）
+     */
+    public static int getPreRollMemoryLimitMb(Context context) {
+        return getPreferences(context).getInt(
+                Constants.KEY_PREROLL_MEMORY_LIMIT_MB, Constants.DEFAULT_PREROLL_MEMORY_LIMIT_MB);
+    }
+
+    /**
+     * 保存位图复用池内存上限（MB）
+     */
+    public static void saveBitmapPoolLimitMb(Context context, int limitMb) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_BITMAP_POOL_LIMIT_MB, limitMb)
+                .apply();
+    }
+
+    /**
+     * 获取位图复用池内存上限（MB）
+     */
+    public static int getBitmapPoolLimitMb(Context context) {
+        return getPreferences(context).getInt(
+                Constants.KEY_BITMAP_POOL_LIMIT_MB, Constants.DEFAULT_BITMAP_POOL_LIMIT_MB);
+    }
+
+    /**
+     * 保存扩展手势映射的功能
+     * @param gesture GestureEngine.GESTURE_* 手势类型
+     * @param featureType 功能类型，FEATURE_NONE 表示使用所在区域的功能
+     */
+    public static void saveGestureAction(Context context, int gesture, int featureType) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_GESTURE_ACTION_PREFIX + gesture, featureType)
+                .apply();
+    }
+
+    /**
+     * 获取扩展手势映射的功能
+     */
+    public static int getGestureAction(Context context, int gesture) {
+        return getPreferences(context).getInt(
+                Constants.KEY_GESTURE_ACTION_PREFIX + gesture, Constants.DEFAULT_GESTURE_ACTION);
+    }
+
+    /**
+     * 保存是否使用多核PNG编码
+     */
+    public static void saveParallelPngEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_PARALLEL_PNG_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取是否使用多核PNG编码
+     */
+    public static boolean getParallelPngEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_PARALLEL_PNG_ENABLED, Constants.DEFAULT_PARALLEL_PNG_ENABLED);
+    }
+
+    /**
+     * 保存多核PNG编码预设
+     * @param preset PngEncoder.PRESET_*
+     */
+    public static void savePngPreset(Context context, int preset) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_PNG_PRESET, preset)
+                .apply();
+    }
+
+    /**
+     * 获取多核PNG编码预设
+     */
+    public static int getPngPreset(Context context) {
+        return getPreferences(context).getInt(Constants.KEY_PNG_PRESET, Constants.DEFAULT_PNG_PRESET);
+    }
+
+    /**
+     * 保存延后压缩保存开关状态
+     */
+    public static void saveDeferredSaveEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_DEFERRED_SAVE_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取延后压缩保存开关状态
+     */
+    public static boolean getDeferredSaveEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_DEFERRED_SAVE_ENABLED, Constants.DEFAULT_DEFERRED_SAVE_ENABLED);
+    }
+
+    /**
+     * 保存某类截图的保存格式
+     * @param captureType Constants.CAPTURE_TYPE_*
+     * @param codec ImageCodec 的格式编号
+     */
+    public static void saveCaptureCodec(Context context, int captureType, int codec) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_CAPTURE_CODEC_PREFIX + captureType, codec)
+                .apply();
+    }
+
+    /**
+     * 获取某类截图的保存格式，套壳截图默认JPEG，其他默认PNG
+     */
+    public static int getCaptureCodec(Context context, int captureType) {
+        int defaultCodec = captureType == Constants.CAPTURE_TYPE_FRAMED ? ImageCodec.JPEG : ImageCodec.PNG;
+        return getPreferences(context).getInt(Constants.KEY_CAPTURE_CODEC_PREFIX + captureType, defaultCodec);
+    }
+
+    /**
+     * 保存单屏和双屏截图的有损压缩质量
+     */
+    public static void saveLossyQuality(Context context, int quality) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_LOSSY_QUALITY, quality)
+                .apply();
+    }
+
+    /**
+     * 获取单屏和双屏截图的有损压缩质量（0-100）
+     */
+    public static int getLossyQuality(Context context) {
+        return getPreferences(context).getInt(Constants.KEY_LOSSY_QUALITY, Constants.DEFAULT_LOSSY_QUALITY);
+    }
+
+    /**
+     * 保存编码档位
+     * @param tier ImageCodec.TIER_*
+     */
+    public static void saveCodecTier(Context context, int tier) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_CODEC_TIER, tier)
+                .apply();
+    }
+
+    /**
+     * 获取编码档位
+     */
+    public static int getCodecTier(Context context) {
+        return getPreferences(context).getInt(Constants.KEY_CODEC_TIER, Constants.DEFAULT_CODEC_TIER);
+    }
+
+    /**
+     * 保存自动质量开关状态
+     */
+    public static void saveAutoQualityEnabled(Context context, boolean enabled) {
+        getPreferences(context).edit()
+                .putBoolean(Constants.KEY_AUTO_QUALITY_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * 获取是否按预算自动选择有损格式的质量
+     */
+    public static boolean getAutoQualityEnabled(Context context) {
+        return getPreferences(context).getBoolean(
+                Constants.KEY_AUTO_QUALITY_ENABLED, Constants.DEFAULT_AUTO_QUALITY_ENABLED);
+    }
+
+    /**
+     * 保存自动质量的预算类型
+     * @param target Constants.AUTO_QUALITY_TARGET_*
+     */
+    public static void saveAutoQualityTarget(Context context, int target) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_AUTO_QUALITY_TARGET, target)
+                .apply();
+    }
+
+    /**
+     * 获取自动质量的预算类型
+     */
+    public static int getAutoQualityTarget(Context context) {
+        return getPreferences(context).getInt(
+                Constants.KEY_AUTO_QUALITY_TARGET, Constants.DEFAULT_AUTO_QUALITY_TARGET);
+    }
+
+    /**
+     * 保存自动质量的文件大小上限（KB）
+     */
+    public static void saveAutoQualityMaxSizeKb(Context context, int sizeKb) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_AUTO_QUALITY_MAX_SIZE_KB, sizeKb)
+                .apply();
+    }
+
+    /**
+     * 获取自动质量的文件大小上限（KB）
+     */
+    public static int getAutoQualityMaxSizeKb(Context context) {
+        return getPreferences(context).getInt(
+                Constants.KEY_AUTO_QUALITY_MAX_SIZE_KB, Constants.DEFAULT_AUTO_QUALITY_MAX_SIZE_KB);
+    }
+
+    /**
+     * 保存自动质量的编码耗时上限（毫秒）
+     */
+    public static void saveAutoQualityMaxTimeMs(Context context, int timeMs) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_AUTO_QUALITY_MAX_TIME_MS, timeMs)
+                .apply();
+    }
+
+    /**
+     * 获取自动质量的编码耗时上限（毫秒）
+     */
+    public static int getAutoQualityMaxTimeMs(Context context) {
+        return getPreferences(context).getInt(
+                Constants.KEY_AUTO_QUALITY_MAX_TIME_MS, Constants.DEFAULT_AUTO_QUALITY_MAX_TIME_MS);
+    }
+
+    /**
+     * 保存自动质量的最低质量
+     */
+    public static void saveAutoQualityMin(Context context, int quality) {
+        getPreferences(context).edit()
+                .putInt(Constants.KEY_AUTO_QUALITY_MIN, quality)
+                .apply();
+    }
+
+    /**
+     * 获取自动质量的最低质量（0-100）
+     */
+    public static int getAutoQualityMin(Context context) {
+        return getPreferences(context).getInt(Constants.KEY_AUTO_QUALITY_MIN, Constants.DEFAULT_AUTO_QUALITY_MIN);
+    }
+
+    /**
+     * 保存额外输出规格列表
+     */
+    public static void saveOutputVariants(Context context, List<OutputVariant> variants) {
+        Gson gson = new Gson();
+        getPreferences(context).edit()
+                .putString(Constants.KEY_OUTPUT_VARIANTS, gson.toJson(variants))
+                .apply();
+    }
+
+    /**
+     * 获取额外输出规格列表，未设置时为空列表
+     */
+    public static List<OutputVariant> getOutputVariants(Context context) {
+        String json = getPreferences(context).getString(Constants.KEY_OUTPUT_VARIANTS, null);
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        Gson gson = new Gson();
+        Type type = new TypeToken<List<OutputVariant>>() {}.getType();
+        List<OutputVariant> variants = gson.fromJson(json, type);
+        return variants != null ? variants : new ArrayList<>();
+    }
+}
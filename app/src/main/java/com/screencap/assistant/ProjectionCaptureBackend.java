@@ -0,0 +1,240 @@
+package com.screencap.assistant;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.ColorSpace;
+import android.graphics.PixelFormat;
+import android.hardware.HardwareBuffer;
+import android.hardware.display.DisplayManager;
+import android.hardware.display.VirtualDisplay;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.projection.MediaProjection;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.Display;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MediaProjection截图后端
+ * 通过MediaProjection虚拟显示把主屏镜像到ImageReader，始终持有最新一帧，
+ * 截图时直接取用最新帧，不需要每次调用平台截图接口，也不受无障碍截图的频率限制。
+ * 公开API的MediaProjection只能镜像默认显示器，副屏以及投屏尚未就绪时交给无障碍后端截取
+ */
+public class ProjectionCaptureBackend implements CaptureBackend {
+
+    private static final String TAG = "ProjectionCapture";
+
+    // ImageReader最多同时持有的帧数
+    // 截图结果直接引用镜像帧直到关闭（预截图最多缓存4帧），留出余量让ImageReader继续获取新帧
+    private static final int MAX_IMAGES = 6;
+
+    private final Context mContext;
+    private final CaptureBackend mFallback;
+    private final HandlerThread mImageThread;
+    private final Handler mImageHandler;
+
+    private MediaProjection mProjection;
+    private VirtualDisplay mVirtualDisplay;
+    private ImageReader mImageReader;
+    // 主屏最新一帧
+    private SharedImage mLatestImage;
+
+    private final MediaProjection.Callback mProjectionCallback = new MediaProjection.Callback() {
+        @Override
+        public void onStop() {
+            Log.w(TAG, "MediaProjection已停止，回退到无障碍截图");
+            release();
+        }
+    };
+
+    /**
+     * @param fallback 无法镜像的Display使用的后端
+     */
+    public ProjectionCaptureBackend(Context context, CaptureBackend fallback) {
+        mContext = context;
+        mFallback = fallback;
+        mImageThread = new HandlerThread("projection-image");
+        mImageThread.start();
+        mImageHandler = new Handler(mImageThread.getLooper());
+    }
+
+    /**
+     * 使用用户授权的MediaProjection开始镜像主屏
+     */
+    public synchronized void start(MediaProjection projection) {
+        release();
+        Display display = DisplayUtil.getDisplayById(mContext, Display.DEFAULT_DISPLAY);
+        if (display == null) {
+            Log.e(TAG, "未找到主屏，无法启动MediaProjection截图");
+            projection.stop();
+            return;
+        }
+        DisplayMetrics metrics = new DisplayMetrics();
+        display.getRealMetrics(metrics);
+        Log.i(TAG, "启动主屏镜像: " + metrics.widthPixels + "x" + metrics.heightPixels);
+
+        mProjection = projection;
+        mProjection.registerCallback(mProjectionCallback, mImageHandler);
+        mImageReader = ImageReader.newInstance(metrics.widthPixels, metrics.heightPixels,
+                PixelFormat.RGBA_8888, MAX_IMAGES, HardwareBuffer.USAGE_GPU_SAMPLED_IMAGE);
+        mImageReader.setOnImageAvailableListener(this::onImageAvailable, mImageHandler);
+        mVirtualDisplay = mProjection.createVirtualDisplay("dualcap-main",
+                metrics.widthPixels, metrics.heightPixels, metrics.densityDpi,
+                DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
+                mImageReader.getSurface(), null, mImageHandler);
+    }
+
+    /**
+     * 停止镜像并释放资源
+     */
+    public synchronized void stop() {
+        if (mProjection != null) {
+            mProjection.stop();
+        }
+        release();
+    }
+
+    public synchronized boolean isRunning() {
+        return mProjection != null;
+    }
+
+    /**
+     * 新帧到达时只保留最新一帧
+     */
+    private void onImageAvailable(ImageReader reader) {
+        Image image;
+        try {
+            image = reader.acquireLatestImage();
+        } catch (Exception e) {
+            Log.e(TAG, "获取镜像帧失败: " + e.getMessage(), e);
+            return;
+        }
+        if (image == null) {
+            return;
+        }
+        synchronized (this) {
+            if (mLatestImage != null) {
+                mLatestImage.close();
+            }
+            mLatestImage = new SharedImage(image);
+        }
+    }
+
+    @Override
+    public CompletableFuture<CaptureResult> capture(int displayId) {
+        CaptureResult result = takeLatestFrame(displayId);
+        if (result != null) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return mFallback.capture(displayId);
+    }
+
+    @Override
+    public CompletableFuture<CaptureResult> captureThrottled(int displayId) {
+        CaptureResult result = takeLatestFrame(displayId);
+        if (result != null) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return mFallback.captureThrottled(displayId);
+    }
+
+    @Override
+    public long getLearnedInterval(int displayId) {
+        synchronized (this) {
+            if (displayId == Display.DEFAULT_DISPLAY && mLatestImage != null) {
+                return 0;
+            }
+        }
+        return mFallback.getLearnedInterval(displayId);
+    }
+
+    /**
+     * 把最新一帧包装为HARDWARE位图，不拷贝像素
+     * 截图结果持有镜像帧的引用，关闭前该帧不会归还给ImageReader，缓冲区不会被生产者复用
+     * @return 该Display没有可用镜像帧时返回null
+     */
+    private synchronized CaptureResult takeLatestFrame(int displayId) {
+        if (displayId != Display.DEFAULT_DISPLAY || mLatestImage == null) {
+            return null;
+        }
+        Image image = mLatestImage.image;
+        HardwareBuffer buffer = image.getHardwareBuffer();
+        if (buffer == null) {
+            return null;
+        }
+        Bitmap wrapped;
+        try {
+            wrapped = Bitmap.wrapHardwareBuffer(buffer, ColorSpace.get(ColorSpace.Named.SRGB));
+        } catch (Exception e) {
+            Log.e(TAG, "包装镜像帧失败: " + e.getMessage(), e);
+            wrapped = null;
+        }
+        if (wrapped == null) {
+            buffer.close();
+            return null;
+        }
+        CaptureResult result = new CaptureResult(displayId);
+        result.setBitmap(wrapped);
+        result.setHardwareBuffer(buffer);
+        result.setBufferOwner(mLatestImage.retain());
+        // Image时间戳为纳秒单位的单调时钟，与 SystemClock.uptimeMillis 时基一致
+        result.setTimestamp(image.getTimestamp() / 1000000L);
+        result.setRequestTime(result.getTimestamp());
+        Log.i(TAG, "使用镜像帧截图，Display ID: " + displayId + ", 时间戳: " + result.getTimestamp());
+        return result;
+    }
+
+    private synchronized void release() {
+        if (mVirtualDisplay != null) {
+            mVirtualDisplay.release();
+            mVirtualDisplay = null;
+        }
+        if (mLatestImage != null) {
+            mLatestImage.close();
+            mLatestImage = null;
+        }
+        if (mImageReader != null) {
+            mImageReader.close();
+            mImageReader = null;
+        }
+        if (mProjection != null) {
+            mProjection.unregisterCallback(mProjectionCallback);
+            mProjection = null;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        stop();
+        mImageThread.quitSafely();
+    }
+
+    /**
+     * 被后端和截图结果共同引用的镜像帧，所有引用都关闭后才归还给ImageReader
+     */
+    private static final class SharedImage implements AutoCloseable {
+        final Image image;
+        private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+        SharedImage(Image image) {
+            this.image = image;
+        }
+
+        SharedImage retain() {
+            mRefCount.incrementAndGet();
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (mRefCount.decrementAndGet() == 0) {
+                image.close();
+            }
+        }
+    }
+}
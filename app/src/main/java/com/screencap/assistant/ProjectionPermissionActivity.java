@@ -0,0 +1,43 @@
+package com.screencap.assistant;
+
+import android.content.Intent;
+import android.media.projection.MediaProjectionManager;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+
+/**
+ * 屏幕录制授权页（透明），用于为MediaProjection截图后端申请授权
+ * 授权结果通过广播交给CaptureService启动镜像
+ */
+public class ProjectionPermissionActivity extends BaseActivity {
+
+    private static final String TAG = "ProjectionPermission";
+
+    private final ActivityResultLauncher<Intent> mProjectionLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(), result -> {
+                Intent data = result.getData();
+                if (result.getResultCode() == RESULT_OK && data != null) {
+                    Log.i(TAG, "屏幕录制已授权");
+                    Intent intent = new Intent(Constants.ACTION_PROJECTION_GRANTED);
+                    intent.putExtra(Constants.EXTRA_PROJECTION_RESULT_CODE, result.getResultCode());
+                    intent.putExtra(Constants.EXTRA_PROJECTION_DATA, data);
+                    CaptureServiceRegistry.dispatch(this, intent);
+                } else {
+                    Log.w(TAG, "屏幕录制未授权，继续使用无障碍截图");
+                    PreferenceUtil.saveCaptureBackend(this, Constants.CAPTURE_BACKEND_ACCESSIBILITY);
+                    Toast.makeText(this, "未授权屏幕录制，继续使用无障碍截图", Toast.LENGTH_SHORT).show();
+                }
+                finish();
+            });
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        MediaProjectionManager projectionManager = getSystemService(MediaProjectionManager.class);
+        mProjectionLauncher.launch(projectionManager.createScreenCaptureIntent());
+    }
+}
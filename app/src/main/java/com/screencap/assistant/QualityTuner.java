@@ -0,0 +1,316 @@
+package com.screencap.assistant;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * 自动质量，按文件大小或编码耗时的预算为有损格式选择质量
+ * 从整幅图像上均匀取若干小块拼成样本，二分查找满足预算的最高质量，每次只编码样本，
+ * 再按样本与整幅的面积比例推算整幅的大小和耗时。
+ * 样本用实际保存时的编码器编码，耗时估计才与实际一致。
+ * 小块之间的拼缝会让样本略大于实际，估计结果偏保守
+ */
+public final class QualityTuner {
+
+    private static final String TAG = "QualityTuner";
+
+    // 每边取样的块数和块边长，2400x2900的套壳截图约取4.8%的面积
+    // 块多而小时对局部复杂的画面取样更均匀，但块越小拼缝的影响越大
+    private static final int GRID = 12;
+    private static final int TILE_SIZE = 48;
+    // 块边长为JPEG的MCU边长的整数倍，块内不出现额外的边界
+    private static final int TILE_ALIGNMENT = 16;
+    // 质量的取值步长和上限，100的体积很大而画质提升很少
+    private static final int QUALITY_STEP = 5;
+    private static final int MAX_QUALITY = 95;
+
+    /**
+     * 选择的质量及对整幅图像的估计
+     */
+    public static final class Estimate {
+        public final int quality;
+        public final long bytes;
+        public final long millis;
+        // 最低质量也超出预算
+        public final boolean overBudget;
+
+        private Estimate(int quality, long bytes, long millis, boolean overBudget) {
+            this.quality = quality;
+            this.bytes = bytes;
+            this.millis = millis;
+            this.overBudget = overBudget;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "质量 %d, 预计 %.0fKB / %dms%s",
+                    quality, bytes / 1024f, millis, overBudget ? "（最低质量仍超出预算）" : "");
+        }
+    }
+
+    /**
+     * 编码样本的编码器
+     */
+    public interface SampleEncoder {
+        void encode(Bitmap sample, int quality, OutputStream out) throws IOException;
+    }
+
+    /**
+     * 套壳截图使用的分段JPEG编码器
+     */
+    public static final SampleEncoder STREAM_JPEG = (sample, quality, out) -> {
+        int width = sample.getWidth();
+        int height = sample.getHeight();
+        JpegStreamEncoder encoder = new JpegStreamEncoder(out, width, height, quality);
+        int stripeHeight = JpegStreamEncoder.MCU_SIZE * 4;
+        int[] pixels = new int[width * stripeHeight];
+        for (int top = 0; top < height; top += stripeHeight) {
+            int rows = Math.min(stripeHeight, height - top);
+            sample.getPixels(pixels, 0, width, 0, top, width, rows);
+            encoder.writeRows(pixels, rows);
+        }
+        encoder.finish();
+    };
+
+    private QualityTuner() {
+    }
+
+    /**
+     * 平台编码器（Bitmap.compress）
+     * @param codec 支持 ImageCodec.JPEG 和 ImageCodec.WEBP_LOSSY
+     */
+    public static SampleEncoder compressEncoder(int codec) {
+        Bitmap.CompressFormat format = codec == ImageCodec.WEBP_LOSSY
+                ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.JPEG;
+        return (sample, quality, out) -> sample.compress(format, quality, out);
+    }
+
+    /**
+     * 是否对该格式按预算自动选择质量
+     * 只对JPEG和有损WebP生效，HEIF由硬件编码器编码，试编码的开销与整幅相近
+     */
+    public static boolean isEnabled(Context context, int codec) {
+        return (codec == ImageCodec.JPEG || codec == ImageCodec.WEBP_LOSSY)
+                && PreferenceUtil.getAutoQualityEnabled(context);
+    }
+
+    /**
+     * 按设置的预算和最低质量选择质量，使用平台编码器
+     */
+    public static Estimate choose(Context context, Bitmap bitmap, int codec) {
+        return choose(context, bitmap, compressEncoder(codec));
+    }
+
+    /**
+     * 按设置的预算和最低质量选择质量
+     */
+    public static Estimate choose(Context context, Bitmap bitmap, SampleEncoder encoder) {
+        return choose(bitmap, encoder, PreferenceUtil.getAutoQualityTarget(context), getBudget(context),
+                PreferenceUtil.getAutoQualityMin(context));
+    }
+
+    /**
+     * 按设置的预算和最低质量为分段拼接的场景选择质量
+     */
+    public static Estimate choose(Context context, int width, int height, StripedComposer.Scene scene,
+                                  SampleEncoder encoder) {
+        return choose(width, height, scene, encoder, PreferenceUtil.getAutoQualityTarget(context),
+                getBudget(context), PreferenceUtil.getAutoQualityMin(context));
+    }
+
+    /**
+     * 设置的预算，按预算类型为字节数或毫秒数
+     */
+    private static long getBudget(Context context) {
+        if (PreferenceUtil.getAutoQualityTarget(context) == Constants.AUTO_QUALITY_TARGET_TIME) {
+            return PreferenceUtil.getAutoQualityMaxTimeMs(context);
+        }
+        return PreferenceUtil.getAutoQualityMaxSizeKb(context) * 1024L;
+    }
+
+    /**
+     * 从整幅位图取样后选择质量，HARDWARE位图先回读
+     * @param encoder 实际保存时使用的编码器
+     * @param target Constants.AUTO_QUALITY_TARGET_*
+     * @param budget 文件大小上限（字节）或编码耗时上限（毫秒）
+     * @param minQuality 最低质量，预算不足时也不低于此值
+     */
+    public static Estimate choose(Bitmap bitmap, SampleEncoder encoder, int target, long budget, int minQuality) {
+        Bitmap source = bitmap;
+        if (bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            source = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        try {
+            int tileSize = getTileSize(source.getWidth(), source.getHeight());
+            if (tileSize == 0) {
+                // 图像太小，直接用整幅作为样本
+                return choose(source, 1.0, encoder, target, budget, minQuality);
+            }
+            Bitmap sample = Bitmap.createBitmap(tileSize * GRID, tileSize * GRID, Bitmap.Config.ARGB_8888);
+            int[] pixels = new int[tileSize * tileSize];
+            for (int i = 0; i < GRID * GRID; i++) {
+                int x = getTileOrigin(i % GRID, source.getWidth(), tileSize);
+                int y = getTileOrigin(i / GRID, source.getHeight(), tileSize);
+                source.getPixels(pixels, 0, tileSize, x, y, tileSize, tileSize);
+                sample.setPixels(pixels, 0, tileSize, (i % GRID) * tileSize, (i / GRID) * tileSize,
+                        tileSize, tileSize);
+            }
+            try {
+                return choose(sample, getAreaRatio(source.getWidth(), source.getHeight(), tileSize),
+                        encoder, target, budget, minQuality);
+            } finally {
+                sample.recycle();
+            }
+        } finally {
+            if (source != bitmap) {
+                source.recycle();
+            }
+        }
+    }
+
+    /**
+     * 整幅画布不在内存中时（分段编码），把场景直接绘制到各个小块上取样
+     */
+    public static Estimate choose(int width, int height, StripedComposer.Scene scene, SampleEncoder encoder,
+                                  int target, long budget, int minQuality) {
+        int tileSize = getTileSize(width, height);
+        if (tileSize == 0) {
+            tileSize = Math.max(1, Math.min(width, height) / GRID);
+        }
+        Bitmap sample = Bitmap.createBitmap(tileSize * GRID, tileSize * GRID, Bitmap.Config.ARGB_8888);
+        try {
+            Canvas canvas = new Canvas(sample);
+            for (int i = 0; i < GRID * GRID; i++) {
+                int x = getTileOrigin(i % GRID, width, tileSize);
+                int y = getTileOrigin(i / GRID, height, tileSize);
+                int left = (i % GRID) * tileSize;
+                int top = (i / GRID) * tileSize;
+                canvas.save();
+                canvas.clipRect(left, top, left + tileSize, top + tileSize);
+                canvas.drawColor(Color.BLACK);
+                canvas.translate(left - x, top - y);
+                scene.draw(canvas);
+                canvas.restore();
+            }
+            return choose(sample, getAreaRatio(width, height, tileSize), encoder, target, budget, minQuality);
+        } finally {
+            sample.recycle();
+        }
+    }
+
+    /**
+     * 每块的边长，图像放不下 GRID x GRID 个对齐的块时返回0
+     */
+    private static int getTileSize(int width, int height) {
+        int tileSize = Math.min(TILE_SIZE, Math.min(width, height) / GRID);
+        return tileSize / TILE_ALIGNMENT * TILE_ALIGNMENT;
+    }
+
+    /**
+     * 第 index 块的起点，各块均匀分布在整幅上
+     */
+    private static int getTileOrigin(int index, int length, int tileSize) {
+        int center = (int) ((index + 0.5) * length / GRID);
+        return Math.max(0, Math.min(length - tileSize, center - tileSize / 2));
+    }
+
+    private static double getAreaRatio(int width, int height, int tileSize) {
+        return Math.min(1.0, (double) tileSize * tileSize * GRID * GRID / ((double) width * height));
+    }
+
+    /**
+     * 在最低质量到上限之间二分查找满足预算的最高质量
+     * @param ratio 样本与整幅的面积比例
+     */
+    private static Estimate choose(Bitmap sample, double ratio, SampleEncoder encoder, int target, long budget,
+                                   int minQuality) {
+        int low = (Math.min(MAX_QUALITY, Math.max(0, minQuality)) + QUALITY_STEP - 1) / QUALITY_STEP;
+        int high = MAX_QUALITY / QUALITY_STEP;
+        int lowest = low;
+        Estimate best = null;
+        Estimate rejected = null;
+        while (low <= high) {
+            int middle = (low + high) / 2;
+            Estimate estimate = estimate(sample, ratio, encoder, middle * QUALITY_STEP);
+            long value = target == Constants.AUTO_QUALITY_TARGET_TIME ? estimate.millis : estimate.bytes;
+            if (value <= budget) {
+                best = estimate;
+                low = middle + 1;
+            } else {
+                rejected = estimate;
+                high = middle - 1;
+            }
+        }
+        if (best == null) {
+            // 最低质量仍超出预算，按最低质量保存
+            Estimate estimate = rejected != null && rejected.quality == lowest * QUALITY_STEP ? rejected
+                    : estimate(sample, ratio, encoder, lowest * QUALITY_STEP);
+            best = new Estimate(estimate.quality, estimate.bytes, estimate.millis, true);
+        }
+        Log.i(TAG, "自动质量: " + best + ", 样本占比 " + String.format(Locale.US, "%.1f%%", ratio * 100));
+        return best;
+    }
+
+    /**
+     * 编码样本，扣除文件头后按面积比例推算整幅的大小和耗时
+     */
+    private static Estimate estimate(Bitmap sample, double ratio, SampleEncoder encoder, int quality) {
+        CountingOutputStream out = new CountingOutputStream();
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        encode(encoder, sample, quality, out);
+        long nanos = SystemClock.elapsedRealtimeNanos() - startTime;
+        long header = getHeaderBytes(encoder, quality);
+        long bytes = header + (long) (Math.max(0, out.count - header) / ratio);
+        long millis = (long) (nanos / ratio / 1000000);
+        return new Estimate(quality, bytes, millis, false);
+    }
+
+    /**
+     * 文件头和量化表等与图像大小无关的部分，用一个纯色小图的编码大小近似
+     */
+    private static long getHeaderBytes(SampleEncoder encoder, int quality) {
+        Bitmap blank = Bitmap.createBitmap(TILE_ALIGNMENT, TILE_ALIGNMENT, Bitmap.Config.ARGB_8888);
+        try {
+            CountingOutputStream out = new CountingOutputStream();
+            encode(encoder, blank, quality, out);
+            return out.count;
+        } finally {
+            blank.recycle();
+        }
+    }
+
+    private static void encode(SampleEncoder encoder, Bitmap sample, int quality, CountingOutputStream out) {
+        try {
+            encoder.encode(sample, quality, out);
+        } catch (IOException e) {
+            // 计数输出流不会抛出异常
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 只计数不保存的输出流
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.screencap.assistant;
+
+import android.accessibilityservice.AccessibilityService;
+import android.graphics.Bitmap;
+import android.hardware.HardwareBuffer;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 无障碍截图后端，基于CompletableFuture封装 AccessibilityService.takeScreenshot
+ * 截图回调在专用线程上执行，不排在主线程的UI消息之后，调用方也无需阻塞等待。
+ * 返回的Future总是正常完成：成功时携带位图，失败时携带平台错误码（或超时错误码）。
+ * 每次截图的成功与"间隔过短"拒绝都会反馈给 ScreenshotThrottle，用于学习平台的截图频率限制
+ */
+@RequiresApi(api = Build.VERSION_CODES.R)
+public class ScreenshotCapturer implements CaptureBackend {
+
+    private static final String TAG = "ScreenshotCapturer";
+
+    // 默认截图超时时间
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+
+    private final AccessibilityService mService;
+    private final ExecutorService mCallbackExecutor;
+    private final ScreenshotThrottle mThrottle;
+
+    public ScreenshotCapturer(AccessibilityService service) {
+        mService = service;
+        mThrottle = new ScreenshotThrottle(service);
+        mCallbackExecutor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "capture-callback"));
+    }
+
+    /**
+     * 截取指定Display，使用默认超时时间
+     */
+    @Override
+    public CompletableFuture<CaptureResult> capture(int displayId) {
+        return capture(displayId, DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * 截取指定Display
+     * @param timeoutMs 超时时间，超时后以 CaptureResult.ERROR_TIMEOUT 完成
+     */
+    public CompletableFuture<CaptureResult> capture(int displayId, long timeoutMs) {
+        final CompletableFuture<CaptureResult> future = new CompletableFuture<>();
+        final long requestTime = SystemClock.uptimeMillis();
+        try {
+            mService.takeScreenshot(displayId, mCallbackExecutor, new AccessibilityService.TakeScreenshotCallback() {
+                @Override
+                public void onSuccess(AccessibilityService.ScreenshotResult screenshotResult) {
+                    CaptureResult result = new CaptureResult(displayId);
+                    result.setRequestTime(requestTime);
+                    mThrottle.onSuccess(displayId, requestTime);
+                    // 硬件缓冲区归截图结果所有，结果关闭时随位图一起释放
+                    HardwareBuffer buffer = screenshotResult.getHardwareBuffer();
+                    try {
+                        result.setTimestamp(screenshotResult.getTimestamp());
+                        Bitmap bitmap = Bitmap.wrapHardwareBuffer(buffer, screenshotResult.getColorSpace());
+                        if (bitmap == null) {
+                            throw new IllegalStateException("无法包装截图缓冲区");
+                        }
+                        result.setBitmap(bitmap);
+                        result.setHardwareBuffer(buffer);
+                        Log.i(TAG, "截图成功，Display ID: " + displayId + ", 时间戳: " + result.getTimestamp());
+                    } catch (Exception e) {
+                        Log.e(TAG, "处理截图结果失败: " + e.getMessage(), e);
+                        buffer.close();
+                        result.setErrorCode(AccessibilityService.ERROR_TAKE_SCREENSHOT_INTERNAL_ERROR);
+                    }
+                    // 已超时的结果不再使用，直接释放
+                    if (!future.complete(result) && result.isSuccess()) {
+                        Log.w(TAG, "截图结果晚于超时到达，已丢弃，Display ID: " + displayId);
+                        result.close();
+                    }
+                }
+
+                @Override
+                public void onFailure(int errorCode) {
+                    Log.e(TAG, "截图失败，Display ID: " + displayId + ", 错误码: " + errorCode);
+                    if (errorCode == AccessibilityService.ERROR_TAKE_SCREENSHOT_INTERVAL_TIME_SHORT) {
+                        mThrottle.onThrottled(displayId, requestTime);
+                    }
+                    CaptureResult result = CaptureResult.failed(displayId, errorCode);
+                    result.setRequestTime(requestTime);
+                    future.complete(result);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "截图异常: " + e.getMessage(), e);
+            future.complete(CaptureResult.failed(displayId,
+                    AccessibilityService.ERROR_TAKE_SCREENSHOT_INTERNAL_ERROR));
+        }
+        return future.completeOnTimeout(
+                CaptureResult.failed(displayId, CaptureResult.ERROR_TIMEOUT),
+                timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 延迟指定时间后截取指定Display，等待期间不占用任何线程
+     */
+    public CompletableFuture<CaptureResult> captureDelayed(int displayId, long delayMs) {
+        return CompletableFuture.runAsync(() -> { },
+                        CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, mCallbackExecutor))
+                .thenCompose(ignored -> capture(displayId));
+    }
+
+    /**
+     * 按学习到的截图频率限制截取指定Display：
+     * 先等待该Display所需的最小间隔，被平台以"间隔过短"拒绝时按退避时间重试
+     */
+    @Override
+    public CompletableFuture<CaptureResult> captureThrottled(int displayId) {
+        return captureWithRetry(displayId, 0, mThrottle.getRequiredWait(displayId));
+    }
+
+    private CompletableFuture<CaptureResult> captureWithRetry(int displayId, int attempt, long delayMs) {
+        CompletableFuture<CaptureResult> future = delayMs > 0
+                ? captureDelayed(displayId, delayMs) : capture(displayId);
+        return future.thenCompose(result -> {
+            if (result.getErrorCode() != AccessibilityService.ERROR_TAKE_SCREENSHOT_INTERVAL_TIME_SHORT
+                    || attempt >= ScreenshotThrottle.MAX_RETRIES) {
+                return CompletableFuture.completedFuture(result);
+            }
+            long retryDelay = mThrottle.getRetryDelay(displayId, attempt);
+            Log.i(TAG, "Display " + displayId + " 截图间隔过短，" + retryDelay + "ms后第" + (attempt + 1) + "次重试");
+            return captureWithRetry(displayId, attempt + 1, retryDelay);
+        });
+    }
+
+    /**
+     * 该Display学习到的最小截图间隔
+     */
+    @Override
+    public long getLearnedInterval(int displayId) {
+        return mThrottle.getLearnedInterval(displayId);
+    }
+
+    /**
+     * 释放回调线程
+     */
+    @Override
+    public void shutdown() {
+        mCallbackExecutor.shutdown();
+    }
+}
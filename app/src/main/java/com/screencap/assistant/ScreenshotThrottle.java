@@ -0,0 +1,135 @@
+package com.screencap.assistant;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * 截图频率限制学习器
+ * 平台对无障碍服务的截图频率有限制，过快调用会返回"间隔过短"错误，不同固件的限制不同。
+ * 这里按Display记录最近一次被接受的截图请求时间，并学习每个Display真正需要的最小间隔：
+ * - 截图成功：若实际间隔不超过当前学习值，收紧到实际间隔并小幅下探，但不低于已知被拒绝的间隔
+ * - 间隔过短：记录被拒绝的间隔并放宽学习值，由调用方按退避时间重试
+ * 学习结果持久化到SharedPreferences，服务重启后继续使用
+ */
+public class ScreenshotThrottle {
+
+    private static final String TAG = "ScreenshotThrottle";
+
+    // 每次成功后下探的步长
+    private static final long PROBE_STEP_MS = 5;
+    // 被拒绝后放宽的步长
+    private static final long RELAX_STEP_MS = 20;
+    // 首次重试的退避时间，之后每次翻倍
+    private static final long BASE_BACKOFF_MS = 20;
+    // 最大重试次数
+    public static final int MAX_RETRIES = 4;
+
+    private final Context mContext;
+    // 每个Display学习到的最小间隔
+    private final SparseArray<Long> mLearnedIntervals = new SparseArray<>();
+    // 每个Display已知被平台拒绝的最大间隔，下探不会低于该值
+    private final SparseArray<Long> mRejectedIntervals = new SparseArray<>();
+    // 每个Display最近一次成功截图的请求时间
+    private final SparseArray<Long> mLastSuccessTimes = new SparseArray<>();
+    // 任意Display最近一次成功截图的请求时间，平台的频率限制针对整个服务
+    private long mLastSuccessTime = 0;
+    // 最近一次成功截图完成的时间
+    private long mLastCompletionTime = 0;
+
+    public ScreenshotThrottle(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * 获取Display学习到的最小间隔，未学习过时使用用户设置的截屏间隔作为初始值
+     */
+    public synchronized long getLearnedInterval(int displayId) {
+        Long interval = mLearnedIntervals.get(displayId);
+        if (interval == null) {
+            interval = (long) PreferenceUtil.getLearnedScreenshotInterval(mContext, displayId);
+            mLearnedIntervals.put(displayId, interval);
+        }
+        return interval;
+    }
+
+    /**
+     * 截取该Display前还需要等待的时间
+     */
+    public synchronized long getRequiredWait(int displayId) {
+        if (mLastSuccessTime == 0) {
+            return 0;
+        }
+        long elapsed = SystemClock.uptimeMillis() - mLastSuccessTime;
+        return Math.max(0, getLearnedInterval(displayId) - elapsed);
+    }
+
+    /**
+     * 记录一次成功的截图
+     * @param requestTime 发起截图请求时的 SystemClock.uptimeMillis()
+     */
+    public synchronized void onSuccess(int displayId, long requestTime) {
+        // 与 getRequiredWait 一样按全局最近一次成功计算间隔；
+        // 请求早于上一次成功完成时，说明与其并发发起（如双屏同时截图），该间隔不能作为学习样本
+        if (mLastSuccessTime != 0 && requestTime >= mLastCompletionTime) {
+            long elapsed = requestTime - mLastSuccessTime;
+            long learned = getLearnedInterval(displayId);
+            if (elapsed >= 0 && elapsed <= learned + PROBE_STEP_MS) {
+                // 以不超过学习值的间隔成功了，说明限制不高于实际间隔，继续下探
+                long probe = Math.min(learned, elapsed) - PROBE_STEP_MS;
+                updateInterval(displayId, Math.max(probe, getRejectedInterval(displayId) + PROBE_STEP_MS));
+            }
+        }
+        mLastSuccessTime = Math.max(mLastSuccessTime, requestTime);
+        mLastCompletionTime = SystemClock.uptimeMillis();
+        mLastSuccessTimes.put(displayId, requestTime);
+    }
+
+    /**
+     * 记录一次"间隔过短"的拒绝
+     * @param requestTime 发起截图请求时的 SystemClock.uptimeMillis()
+     */
+    public synchronized void onThrottled(int displayId, long requestTime) {
+        long learned = getLearnedInterval(displayId);
+        // 拒绝可能由任意Display的上一次截图引起，按全局最近一次成功计算，得到的被拒绝间隔偏小，不会过度放宽
+        long elapsed = mLastSuccessTime == 0 ? 0 : requestTime - mLastSuccessTime;
+        // 被拒绝说明限制高于实际间隔
+        long rejected = Math.max(getRejectedInterval(displayId), elapsed);
+        mRejectedIntervals.put(displayId, rejected);
+        updateInterval(displayId, Math.max(learned, rejected + RELAX_STEP_MS));
+    }
+
+    /**
+     * 被拒绝后重试前需要等待的时间
+     * @param attempt 当前是第几次重试（从0开始）
+     */
+    public synchronized long getRetryDelay(int displayId, int attempt) {
+        long backoff = BASE_BACKOFF_MS << attempt;
+        return Math.max(getRequiredWait(displayId), backoff);
+    }
+
+    /**
+     * 最近一次成功截取该Display的请求时间，从未截取过返回0
+     */
+    public synchronized long getLastSuccessTime(int displayId) {
+        Long time = mLastSuccessTimes.get(displayId);
+        return time != null ? time : 0;
+    }
+
+    private long getRejectedInterval(int displayId) {
+        Long rejected = mRejectedIntervals.get(displayId);
+        return rejected != null ? rejected : 0;
+    }
+
+    private void updateInterval(int displayId, long interval) {
+        interval = Math.max(Constants.MIN_SCREENSHOT_DELAY, Math.min(Constants.MAX_SCREENSHOT_DELAY, interval));
+        Long old = mLearnedIntervals.get(displayId);
+        if (old != null && old == interval) {
+            return;
+        }
+        mLearnedIntervals.put(displayId, interval);
+        PreferenceUtil.saveLearnedScreenshotInterval(mContext, displayId, (int) interval);
+        Log.d(TAG, "Display " + displayId + " 截图间隔学习值: " + old + "ms -> " + interval + "ms");
+    }
+}
@@ -5,12 +5,16 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
+import android.view.Gravity;
 import android.view.LayoutInflater;
+import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CompoundButton;
+import android.widget.RadioGroup;
 import android.widget.ImageView;
+import android.widget.PopupMenu;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -31,16 +35,31 @@ import java.util.List;
  */
 public class SettingsActivity extends BaseActivity {
 
+    // 扩展手势菜单项，按 Constants.FEATURE_* 索引
+    private static final int[] GESTURE_ACTION_MENU_IDS = {R.id.gesture_action_none, R.id.gesture_action_main,
+            R.id.gesture_action_sub, R.id.gesture_action_both, R.id.gesture_action_home};
+    private static final int[] GESTURE_ACTION_NAMES = {R.string.gesture_action_none, R.string.gesture_action_main,
+            R.string.gesture_action_sub, R.string.gesture_action_both, R.string.gesture_action_home};
+
     private SwitchCompat mServiceSwitch;
     private RecyclerView mFeatureList;
     private Slider mOverlayHeightSlider;
     private TextView mOverlayHeightText;
-    private Slider mScreenshotDelaySlider;
     private TextView mScreenshotDelayText;
     private SwitchCompat mHideFromRecentsSwitch;
     private SwitchCompat mSoundEffectSwitch;
+    private SwitchCompat mProjectionBackendSwitch;
+    private SwitchCompat mPreRollSwitch;
+    private SwitchCompat mParallelPngSwitch;
+    private RadioGroup mPngPresetGroup;
+    private SwitchCompat mDeferredSaveSwitch;
+    private TextView mPendingCapturesEntry;
+    private CardView mCodecSettingsCard;
+    private TextView mCodecSettingsStatus;
     private CardView mFrameScreenshotCard;
     private TextView mFrameScreenshotStatus;
+    // 扩展手势当前映射的功能，按 GestureEngine.GESTURE_* 索引，普通上滑不可映射
+    private final TextView[] mGestureActionTexts = new TextView[GestureEngine.GESTURE_HOLD + 1];
     private FeatureAdapter mAdapter;
     private List<FeatureItem> mFeatureItems;
 
@@ -85,6 +104,20 @@ public class SettingsActivity extends BaseActivity {
         // 更新套壳截屏状态显示
         updateFrameScreenshotStatus();
         
+        // 更新保存格式状态
+        updateCodecSettingsStatus();
+        
+        // 更新待转换截图数
+        updatePendingCapturesEntry();
+        
+        // 授权页可能因用户拒绝而改回无障碍截图
+        mProjectionBackendSwitch.setChecked(
+                PreferenceUtil.getCaptureBackend(this) == Constants.CAPTURE_BACKEND_PROJECTION);
+        
+        // 显示自动学习到的双屏截屏间隔
+        int learnedDelay = PreferenceUtil.getLearnedScreenshotInterval(this, DisplayUtil.getSecondaryDisplayId(this));
+        mScreenshotDelayText.setText(String.format("自动 %dms", learnedDelay));
+        
         // 如果服务开启，通知悬浮窗服务进入预览模式
         if (isEnabled) {
             sendPreviewModeBroadcast(true);
@@ -121,12 +154,22 @@ public class SettingsActivity extends BaseActivity {
         mFeatureList = findViewById(R.id.feature_list);
         mOverlayHeightSlider = findViewById(R.id.overlay_height_slider);
         mOverlayHeightText = findViewById(R.id.overlay_height_text);
-        mScreenshotDelaySlider = findViewById(R.id.screenshot_delay_slider);
         mScreenshotDelayText = findViewById(R.id.screenshot_delay_text);
         mHideFromRecentsSwitch = findViewById(R.id.hide_from_recents_switch);
         mSoundEffectSwitch = findViewById(R.id.sound_effect_switch);
+        mProjectionBackendSwitch = findViewById(R.id.projection_backend_switch);
+        mPreRollSwitch = findViewById(R.id.preroll_switch);
+        mParallelPngSwitch = findViewById(R.id.parallel_png_switch);
+        mPngPresetGroup = findViewById(R.id.png_preset_group);
+        mDeferredSaveSwitch = findViewById(R.id.deferred_save_switch);
+        mPendingCapturesEntry = findViewById(R.id.pending_captures_entry);
+        mCodecSettingsCard = findViewById(R.id.card_codec_settings);
+        mCodecSettingsStatus = findViewById(R.id.codec_settings_status);
         mFrameScreenshotCard = findViewById(R.id.card_frame_screenshot);
         mFrameScreenshotStatus = findViewById(R.id.frame_screenshot_status);
+        mGestureActionTexts[GestureEngine.GESTURE_LONG_SWIPE] = findViewById(R.id.gesture_long_swipe_action);
+        mGestureActionTexts[GestureEngine.GESTURE_DOUBLE_SWIPE] = findViewById(R.id.gesture_double_swipe_action);
+        mGestureActionTexts[GestureEngine.GESTURE_HOLD] = findViewById(R.id.gesture_hold_action);
 
         mFeatureList.setLayoutManager(new LinearLayoutManager(this));
     }
@@ -176,28 +219,64 @@ public class SettingsActivity extends BaseActivity {
         mOverlayHeightSlider.setValueTo(Constants.MAX_OVERLAY_HEIGHT);
         mOverlayHeightSlider.setStepSize(1); // 每次调整1dp
 
-        // 设置双屏截屏间隔滑块 - 最小值300ms，最大值350ms，每档1ms
-        int savedDelay = PreferenceUtil.getScreenshotDelay(this);
-        // 如果保存的值超出新范围，重置为中间值325ms
-        if (savedDelay < 300 || savedDelay > 350) {
-            savedDelay = 325;
-            PreferenceUtil.saveScreenshotDelay(this, savedDelay);
-        }
-        mScreenshotDelaySlider.setValue(savedDelay);
-        mScreenshotDelayText.setText(String.format("%dms", savedDelay));
-        mScreenshotDelaySlider.setValueFrom(300);
-        mScreenshotDelaySlider.setValueTo(350);
-        mScreenshotDelaySlider.setStepSize(1); // 每次调整1ms
-
         // 设置在任务管理器中隐藏开关
         boolean hideFromRecents = PreferenceUtil.getHideFromRecents(this);
         mHideFromRecentsSwitch.setChecked(hideFromRecents);
         // 设置截屏音效开关
         boolean soundEffectEnabled = PreferenceUtil.getSoundEffectEnabled(this);
         mSoundEffectSwitch.setChecked(soundEffectEnabled);
+        // 设置预截图开关
+        mPreRollSwitch.setChecked(PreferenceUtil.getPreRollEnabled(this));
+        // 设置多核PNG编码开关和预设
+        boolean parallelPngEnabled = PreferenceUtil.getParallelPngEnabled(this);
+        mParallelPngSwitch.setChecked(parallelPngEnabled);
+        mPngPresetGroup.check(getPngPresetButtonId(PreferenceUtil.getPngPreset(this)));
+        updatePngPresetState(parallelPngEnabled);
+        // 设置延后压缩保存开关
+        mDeferredSaveSwitch.setChecked(PreferenceUtil.getDeferredSaveEnabled(this));
+        // 显示扩展手势映射的功能
+        for (int gesture = GestureEngine.GESTURE_LONG_SWIPE; gesture <= GestureEngine.GESTURE_HOLD; gesture++) {
+            updateGestureActionText(gesture);
+        }
+    }
+
+    /**
+     * 显示待转换截图数，暂存区为空且未开启延后压缩时隐藏入口
+     */
+    private void updatePendingCapturesEntry() {
+        int count = SpillStore.count(this);
+        mPendingCapturesEntry.setVisibility(
+                count > 0 || PreferenceUtil.getDeferredSaveEnabled(this) ? View.VISIBLE : View.GONE);
+        mPendingCapturesEntry.setText(String.format("查看待转换截图（%d 张）", count));
+    }
+
+    private static int getPngPresetButtonId(int preset) {
+        switch (preset) {
+            case PngEncoder.PRESET_FAST:
+                return R.id.png_preset_fast;
+            case PngEncoder.PRESET_SMALL:
+                return R.id.png_preset_small;
+            default:
+                return R.id.png_preset_balanced;
+        }
+    }
+
+    /**
+     * 多核PNG编码关闭时预设不可选
+     */
+    private void updatePngPresetState(boolean enabled) {
+        mPngPresetGroup.setAlpha(enabled ? 1.0f : 0.5f);
+        for (int i = 0; i < mPngPresetGroup.getChildCount(); i++) {
+            mPngPresetGroup.getChildAt(i).setEnabled(enabled);
+        }
     }
 
     private void setupListeners() {
+        // 扩展手势点击后弹出功能菜单
+        setupGestureActionRow(R.id.gesture_long_swipe_row, GestureEngine.GESTURE_LONG_SWIPE);
+        setupGestureActionRow(R.id.gesture_double_swipe_row, GestureEngine.GESTURE_DOUBLE_SWIPE);
+        setupGestureActionRow(R.id.gesture_hold_row, GestureEngine.GESTURE_HOLD);
+
         // 服务总开关监听
         mServiceSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             @Override
@@ -241,18 +320,6 @@ public class SettingsActivity extends BaseActivity {
             }
         });
 
-        // 双屏截屏间隔滑块监听
-        mScreenshotDelaySlider.addOnChangeListener(new Slider.OnChangeListener() {
-            @Override
-            public void onValueChange(Slider slider, float value, boolean fromUser) {
-                int delay = Math.round(value);
-                mScreenshotDelayText.setText(String.format("%dms", delay));
-                
-                // 保存间隔
-                PreferenceUtil.saveScreenshotDelay(SettingsActivity.this, delay);
-            }
-        });
-
         // 在任务管理器中隐藏开关监听
         mHideFromRecentsSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             @Override
@@ -281,6 +348,84 @@ public class SettingsActivity extends BaseActivity {
             }
         });
 
+        // 截图后端开关监听
+        mProjectionBackendSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (!buttonView.isPressed()) {
+                    return;
+                }
+                if (isChecked) {
+                    // 保存选择并申请屏幕录制授权，授权结果由CaptureService处理
+                    PreferenceUtil.saveCaptureBackend(SettingsActivity.this, Constants.CAPTURE_BACKEND_PROJECTION);
+                    startActivity(new Intent(SettingsActivity.this, ProjectionPermissionActivity.class));
+                } else {
+                    PreferenceUtil.saveCaptureBackend(SettingsActivity.this, Constants.CAPTURE_BACKEND_ACCESSIBILITY);
+                    CaptureServiceRegistry.dispatch(SettingsActivity.this, new Intent(Constants.ACTION_PROJECTION_STOP));
+                }
+            }
+        });
+
+        // 预截图开关监听
+        mPreRollSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceUtil.savePreRollEnabled(SettingsActivity.this, isChecked);
+                // 通知CaptureService开启或关闭预截图
+                CaptureServiceRegistry.dispatch(SettingsActivity.this, new Intent(Constants.ACTION_PREROLL_CHANGED));
+            }
+        });
+
+        // 多核PNG编码开关监听
+        mParallelPngSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceUtil.saveParallelPngEnabled(SettingsActivity.this, isChecked);
+                updatePngPresetState(isChecked);
+            }
+        });
+
+        // PNG编码预设监听
+        mPngPresetGroup.setOnCheckedChangeListener(new RadioGroup.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(RadioGroup group, int checkedId) {
+                int preset = PngEncoder.PRESET_BALANCED;
+                if (checkedId == R.id.png_preset_fast) {
+                    preset = PngEncoder.PRESET_FAST;
+                } else if (checkedId == R.id.png_preset_small) {
+                    preset = PngEncoder.PRESET_SMALL;
+                }
+                PreferenceUtil.savePngPreset(SettingsActivity.this, preset);
+            }
+        });
+
+        // 延后压缩保存开关监听
+        mDeferredSaveSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                PreferenceUtil.saveDeferredSaveEnabled(SettingsActivity.this, isChecked);
+                updatePendingCapturesEntry();
+            }
+        });
+
+        // 待转换截图入口点击事件
+        mPendingCapturesEntry.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = new Intent(SettingsActivity.this, PendingCapturesActivity.class);
+                startActivity(intent);
+            }
+        });
+
+        // 保存格式设置卡片点击事件
+        mCodecSettingsCard.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = new Intent(SettingsActivity.this, CodecSettingsActivity.class);
+                startActivity(intent);
+            }
+        });
+
         // 套壳截屏设置卡片点击事件
         mFrameScreenshotCard.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -301,8 +446,6 @@ public class SettingsActivity extends BaseActivity {
         }
         mOverlayHeightSlider.setEnabled(isServiceEnabled);
         mOverlayHeightSlider.setAlpha(isServiceEnabled ? 1.0f : 0.5f);
-        mScreenshotDelaySlider.setEnabled(isServiceEnabled);
-        mScreenshotDelaySlider.setAlpha(isServiceEnabled ? 1.0f : 0.5f);
     }
 
 
@@ -398,6 +541,55 @@ public class SettingsActivity extends BaseActivity {
         sendBroadcast(intent);
     }
 
+    private void setupGestureActionRow(int rowId, int gesture) {
+        findViewById(rowId).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showGestureActionMenu(gesture);
+            }
+        });
+    }
+
+    /**
+     * 选择扩展手势映射的功能，保存后通知悬浮窗重载配置
+     */
+    private void showGestureActionMenu(int gesture) {
+        // 锚定在功能文字上，菜单在右侧弹出
+        PopupMenu popupMenu = new PopupMenu(this, mGestureActionTexts[gesture], Gravity.END, 0,
+                R.style.RoundedPopupMenuStyle);
+        popupMenu.getMenuInflater().inflate(R.menu.menu_gesture_action, popupMenu.getMenu());
+        int action = PreferenceUtil.getGestureAction(this, gesture);
+        if (action >= 0 && action < GESTURE_ACTION_MENU_IDS.length) {
+            popupMenu.getMenu().findItem(GESTURE_ACTION_MENU_IDS[action]).setChecked(true);
+        }
+
+        popupMenu.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
+            @Override
+            public boolean onMenuItemClick(MenuItem item) {
+                for (int i = 0; i < GESTURE_ACTION_MENU_IDS.length; i++) {
+                    if (item.getItemId() != GESTURE_ACTION_MENU_IDS[i]) {
+                        continue;
+                    }
+                    PreferenceUtil.saveGestureAction(SettingsActivity.this, gesture, i);
+                    updateGestureActionText(gesture);
+                    sendReloadConfigBroadcast();
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        popupMenu.show();
+    }
+
+    private void updateGestureActionText(int gesture) {
+        int action = PreferenceUtil.getGestureAction(this, gesture);
+        if (action < 0 || action >= GESTURE_ACTION_NAMES.length) {
+            action = Constants.FEATURE_NONE;
+        }
+        mGestureActionTexts[gesture].setText(GESTURE_ACTION_NAMES[action]);
+    }
+
     /**
      * 更新套壳截屏状态显示
      */
@@ -408,6 +600,16 @@ public class SettingsActivity extends BaseActivity {
         }
     }
 
+    /**
+     * 显示各类截图当前的保存格式
+     */
+    private void updateCodecSettingsStatus() {
+        mCodecSettingsStatus.setText(String.format("单屏 %s · 双屏 %s · 套壳 %s",
+                ImageCodec.getName(PreferenceUtil.getCaptureCodec(this, Constants.CAPTURE_TYPE_SINGLE)),
+                ImageCodec.getName(PreferenceUtil.getCaptureCodec(this, Constants.CAPTURE_TYPE_BOTH)),
+                ImageCodec.getName(PreferenceUtil.getCaptureCodec(this, Constants.CAPTURE_TYPE_FRAMED))));
+    }
+
     /**
      * 功能列表适配器
      */
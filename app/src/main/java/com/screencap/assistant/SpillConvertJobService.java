@@ -0,0 +1,196 @@
+package com.screencap.assistant;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 暂存截图转换任务（两段式保存的第二段）
+ * 在设备空闲或充电时把 SpillStore 中的原始像素编码为最终格式，写入相册目录后删除暂存文件。
+ * JobScheduler 的约束条件之间是"与"的关系，所以空闲和充电各注册一个任务，先满足的那个执行。
+ * 任务设为持久化，重启后由系统重新调度（需要 RECEIVE_BOOT_COMPLETED 权限）
+ */
+public class SpillConvertJobService extends JobService {
+
+    private static final String TAG = "SpillConvertJob";
+
+    private static final int JOB_ID_IDLE = 1001;
+    private static final int JOB_ID_CHARGING = 1002;
+    private static final int JOB_ID_NOW = 1003;
+
+    // 额外输出规格同时编码的数量上限
+    private static final int VARIANT_ENCODE_THREADS = 2;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "spill-convert"));
+    private volatile boolean mStopped = false;
+
+    /**
+     * 调度空闲和充电时的转换任务，已调度时不重复调度
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null) {
+            return;
+        }
+        ComponentName component = new ComponentName(context, SpillConvertJobService.class);
+        if (scheduler.getPendingJob(JOB_ID_IDLE) == null) {
+            scheduler.schedule(new JobInfo.Builder(JOB_ID_IDLE, component)
+                    .setRequiresDeviceIdle(true)
+                    .setPersisted(true)
+                    .build());
+        }
+        if (scheduler.getPendingJob(JOB_ID_CHARGING) == null) {
+            scheduler.schedule(new JobInfo.Builder(JOB_ID_CHARGING, component)
+                    .setRequiresCharging(true)
+                    .setPersisted(true)
+                    .build());
+        }
+    }
+
+    /**
+     * 立即转换所有暂存截图，不等待空闲或充电
+     */
+    public static void runNow(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID_NOW,
+                new ComponentName(context, SpillConvertJobService.class))
+                .setOverrideDeadline(0)
+                .build());
+    }
+
+    /**
+     * 取消其他尚未执行的转换任务，正在执行的任务由 jobFinished 结束
+     */
+    private static void cancelOthers(Context context, int runningJobId) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null) {
+            return;
+        }
+        for (int jobId : new int[]{JOB_ID_IDLE, JOB_ID_CHARGING}) {
+            if (jobId != runningJobId) {
+                scheduler.cancel(jobId);
+            }
+        }
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        mStopped = false;
+        mExecutor.execute(() -> {
+            boolean finished = convertAll();
+            if (finished) {
+                // 全部转换完成，取消另一个约束条件的任务
+                cancelOthers(this, params.getJobId());
+            }
+            if (!mStopped) {
+                // 有转换失败的截图时按退避策略重试
+                jobFinished(params, !finished);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // 条件不再满足（设备被唤醒或拔掉电源），当前这张转换完后停止，剩下的等待下次调度
+        mStopped = true;
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mExecutor.shutdown();
+    }
+
+    /**
+     * @return 所有暂存截图是否都已处理
+     */
+    private boolean convertAll() {
+        List<SpillStore.Entry> entries = SpillStore.list(this);
+        Log.i(TAG, "开始转换暂存截图: " + entries.size() + " 张");
+        ExecutorService pngExecutor = null;
+        ExecutorService variantExecutor = null;
+        List<OutputVariant> variants = PreferenceUtil.getOutputVariants(this);
+        try {
+            for (SpillStore.Entry entry : entries) {
+                if (mStopped) {
+                    Log.i(TAG, "转换任务被中止");
+                    return false;
+                }
+                if (entry.format == ImageCodec.PNG && pngExecutor == null
+                        && PreferenceUtil.getParallelPngEnabled(this)) {
+                    pngExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                            runnable -> new Thread(runnable, "spill-png-encode"));
+                }
+                if (variantExecutor == null && VariantEncoder.hasEnabled(variants)) {
+                    variantExecutor = Executors.newFixedThreadPool(VARIANT_ENCODE_THREADS,
+                            runnable -> new Thread(runnable, "spill-variant-encode"));
+                }
+                convert(entry, pngExecutor, variantExecutor, variants);
+            }
+        } finally {
+            if (pngExecutor != null) {
+                pngExecutor.shutdown();
+            }
+            if (variantExecutor != null) {
+                variantExecutor.shutdown();
+            }
+        }
+        return SpillStore.count(this) == 0;
+    }
+
+    private void convert(SpillStore.Entry entry, ExecutorService pngExecutor, ExecutorService variantExecutor,
+                         List<OutputVariant> variants) {
+        long startTime = SystemClock.uptimeMillis();
+        Bitmap bitmap = SpillStore.load(entry, 1);
+        if (bitmap == null) {
+            SpillStore.delete(entry);
+            return;
+        }
+        int format = ImageCodec.resolve(entry.format);
+        int quality = entry.quality;
+        if (quality == SpillStore.QUALITY_AUTO) {
+            quality = QualityTuner.choose(this, bitmap, format).quality;
+        }
+        ImageCodec codec = ImageCodec.create(this, format, quality, pngExecutor);
+        try (MediaStoreSink sink = MediaStoreSink.open(this, entry.fileName,
+                ImageCodec.getMimeType(codec.getCodec()), entry.createdAt)) {
+            codec.encode(bitmap, sink.getOutputStream(), sink.getFileDescriptor());
+            Uri uri = sink.publish(entry.width, entry.height);
+            if (variantExecutor != null) {
+                // 主输出保存成功后再输出规格，失败重试时不会重复保存规格
+                VariantEncoder.Batch batch = new VariantEncoder(this, variantExecutor, null).submit(bitmap,
+                        entry.fileName.substring(0, entry.fileName.lastIndexOf('.')), entry.createdAt, variants);
+                if (batch != null) {
+                    Log.i(TAG, "额外输出已保存 " + batch.await() + " 个规格");
+                }
+            }
+            SpillStore.delete(entry);
+            Log.i(TAG, "暂存截图已转换: " + entry.fileName + " -> " + uri +
+                    (entry.quality == SpillStore.QUALITY_AUTO ? ", 自动质量: " + quality : "") +
+                    ", 大小: " + sink.getSize() / 1024 + "KB, 耗时 " + (SystemClock.uptimeMillis() - startTime) + "ms");
+        } catch (IOException | RuntimeException e) {
+            // 保留暂存文件，下次调度时重试；未发布的相册记录由 MediaStoreSink 删除
+            Log.e(TAG, "转换暂存截图失败: " + e.getMessage(), e);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.screencap.assistant;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 截图暂存区（两段式保存的第一段）
+ * 截图时只把原始像素通过内存映射写入应用私有目录，几毫秒内完成，不做任何压缩；
+ * 之后由 SpillConvertJobService 在设备空闲或充电时转换为最终格式并写入相册目录。
+ * 暂存文件位于 filesDir，重启后仍在，转换完成后删除。
+ * 文件格式：固定文件头 + 最终文件名（UTF-8）+ ARGB_8888原始像素
+ */
+public final class SpillStore {
+
+    private static final String TAG = "SpillStore";
+
+    // 自动质量的截图暂存时不确定质量，转换时按当时的预算选择
+    public static final int QUALITY_AUTO = -1;
+
+    private static final String DIR_NAME = "spill";
+    private static final String EXTENSION = ".spill";
+    private static final int MAGIC = 0x54535031; // "TSP1"
+    // 魔数、宽、高、格式、质量、创建时间、文件名长度
+    private static final int FIXED_HEADER_BYTES = 4 * 5 + 8 + 4;
+    // 超过该时间仍未改名的临时文件视为写入中途被中断，正常暂存只需几毫秒
+    private static final long STALE_TEMP_MS = 60 * 1000;
+
+    /**
+     * 暂存的截图
+     */
+    public static final class Entry {
+        public final File file;
+        public final String fileName;
+        public final int width;
+        public final int height;
+        public final int format;
+        public final int quality;
+        public final long createdAt;
+        final int pixelOffset;
+
+        private Entry(File file, String fileName, int width, int height, int format, int quality,
+                      long createdAt, int pixelOffset) {
+            this.file = file;
+            this.fileName = fileName;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.quality = quality;
+            this.createdAt = createdAt;
+            this.pixelOffset = pixelOffset;
+        }
+    }
+
+    private SpillStore() {
+    }
+
+    public static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    /**
+     * 暂存位图，HARDWARE位图需先回读
+     * @param fileName 转换后在相册目录中的文件名
+     * @param format ImageCodec 的格式编号
+     * @param quality 有损格式的质量，自动质量时为 QUALITY_AUTO
+     * @return 暂存文件
+     */
+    public static File spill(Context context, Bitmap bitmap, String fileName, int format, int quality)
+            throws IOException {
+        File directory = getDirectory(context);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建暂存目录: " + directory);
+        }
+        // 文件名中的时间戳精确到秒，同一秒内的两次截图加上纳秒时间区分，最终文件名保存在文件头中
+        String baseName = fileName.substring(0, Math.max(0, fileName.lastIndexOf('.')))
+                + "_" + SystemClock.elapsedRealtimeNanos();
+        File file = new File(directory, baseName + EXTENSION);
+        File tempFile = new File(directory, baseName + EXTENSION + ".tmp");
+        if (file.exists() || tempFile.exists()) {
+            throw new IOException("暂存文件已存在: " + file.getName());
+        }
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        int headerBytes = FIXED_HEADER_BYTES + name.length;
+        long size = headerBytes + (long) bitmap.getWidth() * bitmap.getHeight() * 4;
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC)
+                    .putInt(bitmap.getWidth())
+                    .putInt(bitmap.getHeight())
+                    .putInt(format)
+                    .putInt(quality)
+                    .putLong(System.currentTimeMillis())
+                    .putInt(name.length)
+                    .put(name);
+            bitmap.copyPixelsToBuffer(buffer);
+        } catch (IOException | RuntimeException e) {
+            tempFile.delete();
+            throw e;
+        }
+        // 写完再改名，进程中途被杀时不会留下不完整的暂存文件
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("暂存文件改名失败: " + file);
+        }
+        return file;
+    }
+
+    /**
+     * 列出所有暂存的截图，按创建时间排序，损坏的文件被删除
+     */
+    public static List<Entry> list(Context context) {
+        List<Entry> entries = new ArrayList<>();
+        File[] files = getDirectory(context).listFiles();
+        if (files == null) {
+            return entries;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                // 写入中途被中断留下的临时文件；刚创建的可能正在写入，不能删除
+                if (now - file.lastModified() > STALE_TEMP_MS) {
+                    file.delete();
+                }
+                continue;
+            }
+            if (!file.getName().endsWith(EXTENSION)) {
+                continue;
+            }
+            Entry entry = readEntry(file);
+            if (entry != null) {
+                entries.add(entry);
+            } else {
+                Log.w(TAG, "暂存文件已损坏，删除: " + file.getName());
+                file.delete();
+            }
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.createdAt, b.createdAt));
+        return entries;
+    }
+
+    /**
+     * 暂存的截图数
+     */
+    public static int count(Context context) {
+        String[] names = getDirectory(context).list((dir, name) -> name.endsWith(EXTENSION));
+        return names != null ? names.length : 0;
+    }
+
+    private static Entry readEntry(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < FIXED_HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, FIXED_HEADER_BYTES);
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int format = buffer.getInt();
+            int quality = buffer.getInt();
+            long createdAt = buffer.getLong();
+            int nameLength = buffer.getInt();
+            int pixelOffset = FIXED_HEADER_BYTES + nameLength;
+            if (width <= 0 || height <= 0 || nameLength <= 0 || nameLength > 1024
+                    || channel.size() != pixelOffset + (long) width * height * 4) {
+                return null;
+            }
+            byte[] name = new byte[nameLength];
+            channel.map(FileChannel.MapMode.READ_ONLY, FIXED_HEADER_BYTES, nameLength).get(name);
+            return new Entry(file, new String(name, StandardCharsets.UTF_8), width, height, format, quality,
+                    createdAt, pixelOffset);
+        } catch (IOException e) {
+            Log.w(TAG, "读取暂存文件失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 载入暂存的像素
+     * @param sampleSize 每隔多少像素取一个，用于生成缩略图，1为原图
+     * @return 载入失败返回null
+     */
+    public static Bitmap load(Entry entry, int sampleSize) {
+        try (RandomAccessFile raf = new RandomAccessFile(entry.file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, entry.pixelOffset,
+                    (long) entry.width * entry.height * 4);
+            if (sampleSize <= 1) {
+                Bitmap bitmap = Bitmap.createBitmap(entry.width, entry.height, Bitmap.Config.ARGB_8888);
+                bitmap.copyPixelsFromBuffer(buffer);
+                return bitmap;
+            }
+            // 缩略图只读取需要的像素，不载入整张原图
+            int width = Math.max(1, entry.width / sampleSize);
+            int height = Math.max(1, entry.height / sampleSize);
+            int[] pixels = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                int rowOffset = y * sampleSize * entry.width;
+                for (int x = 0; x < width; x++) {
+                    // 像素按RGBA字节顺序存放，颜色已预乘Alpha
+                    int rgba = buffer.getInt((rowOffset + x * sampleSize) * 4);
+                    pixels[y * width + x] = unpremultiply(rgba);
+                }
+            }
+            return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "载入暂存文件失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 预乘Alpha的RGBA转为 createBitmap(int[]) 需要的非预乘ARGB
+     */
+    private static int unpremultiply(int rgba) {
+        int alpha = rgba & 0xFF;
+        int r = rgba >>> 24;
+        int g = rgba >>> 16 & 0xFF;
+        int b = rgba >>> 8 & 0xFF;
+        if (alpha != 0 && alpha != 255) {
+            r = Math.min(255, (r * 255 + alpha / 2) / alpha);
+            g = Math.min(255, (g * 255 + alpha / 2) / alpha);
+            b = Math.min(255, (b * 255 + alpha / 2) / alpha);
+        }
+        return alpha << 24 | r << 16 | g << 8 | b;
+    }
+
+    public static void delete(Entry entry) {
+        if (!entry.file.delete()) {
+            Log.w(TAG, "删除暂存文件失败: " + entry.file.getName());
+        }
+    }
+}
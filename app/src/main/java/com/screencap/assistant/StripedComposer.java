@@ -0,0 +1,83 @@
+package com.screencap.assistant;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import java.io.IOException;
+
+/**
+ * 分段拼接
+ * 把场景按水平分段依次绘制到一个分段大小的位图上，每段绘制完成后交给下游（通常是增量编码器），
+ * 完整尺寸的画布不会出现在内存中。分段缓冲区（位图+像素数组）的大小受预算限制
+ */
+public final class StripedComposer {
+
+    /**
+     * 拼接场景，按整张画布的坐标绘制，分段时由画布平移和裁剪完成
+     */
+    public interface Scene {
+        void draw(Canvas canvas);
+    }
+
+    /**
+     * 分段像素的接收方
+     */
+    public interface StripeSink {
+        /**
+         * @param pixels ARGB像素，行跨度为画布宽度
+         * @param rows 本段的行数
+         */
+        void onStripe(int[] pixels, int rows) throws IOException;
+    }
+
+    private StripedComposer() {
+    }
+
+    /**
+     * 按预算计算分段高度
+     * 每行需要一行位图和一行像素数组，共 width * 8 字节
+     * @param alignment 分段高度需为其整数倍（例如编码器的MCU高度）
+     */
+    public static int getStripeHeight(int width, long budgetBytes, int alignment) {
+        long rows = budgetBytes / ((long) width * 8);
+        rows = rows / alignment * alignment;
+        return (int) Math.max(alignment, rows);
+    }
+
+    /**
+     * 分段缓冲区占用的字节数
+     */
+    public static long getStripeBytes(int width, int stripeHeight) {
+        return (long) width * stripeHeight * 8;
+    }
+
+    /**
+     * 分段绘制场景并依次交给接收方
+     */
+    public static void compose(int width, int height, int stripeHeight, Scene scene, StripeSink sink,
+                               CompositionStats stats) throws IOException {
+        stripeHeight = Math.min(stripeHeight, height);
+        Bitmap stripe = Bitmap.createBitmap(width, stripeHeight, Bitmap.Config.ARGB_8888);
+        int[] pixels = new int[width * stripeHeight];
+        long stripeBytes = getStripeBytes(width, stripeHeight);
+        stats.allocate(stripeBytes);
+        try {
+            Canvas canvas = new Canvas(stripe);
+            for (int top = 0; top < height; top += stripeHeight) {
+                int rows = Math.min(stripeHeight, height - top);
+                stripe.eraseColor(Color.TRANSPARENT);
+                canvas.save();
+                // 画布只覆盖 [top, top + stripeHeight) 这一段，段外的绘制被裁剪掉
+                canvas.translate(0, -top);
+                scene.draw(canvas);
+                canvas.restore();
+                stripe.getPixels(pixels, 0, width, 0, 0, width, rows);
+                sink.onStripe(pixels, rows);
+            }
+        } finally {
+            stats.release(stripeBytes);
+            stripe.recycle();
+        }
+    }
+}
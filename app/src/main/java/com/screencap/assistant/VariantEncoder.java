@@ -0,0 +1,194 @@
+package com.screencap.assistant;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 多规格输出
+ * 同一张拼接好的截图按每个启用的额外输出规格各保存一份。规格按尺寸从大到小排列，
+ * 缩小的规格从上一个较大的规格面积缩小得到，而不是每次都从原图缩放；
+ * 缩放在一个任务中依次进行，每缩放出一个规格就提交编码，编码在有界线程池中并行，
+ * 同时调用方可以在自己的线程上编码主输出
+ */
+public final class VariantEncoder {
+
+    private static final String TAG = "VariantEncoder";
+
+    private final Context mContext;
+    private final ExecutorService mExecutor;
+    private final BitmapPool mBitmapPool;
+
+    /**
+     * @param executor 有界线程池，线程数即同时编码的规格数上限
+     * @param bitmapPool 缩放结果的复用池，为null时每次新建
+     */
+    public VariantEncoder(Context context, ExecutorService executor, BitmapPool bitmapPool) {
+        mContext = context;
+        mExecutor = executor;
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * 是否有启用的规格
+     */
+    public static boolean hasEnabled(List<OutputVariant> variants) {
+        for (OutputVariant variant : variants) {
+            if (variant.isEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一次截图的所有规格输出
+     */
+    public static final class Batch {
+        private final BitmapPool mBitmapPool;
+        private final Future<?> mChain;
+        private final List<Future<Uri>> mEncodes = Collections.synchronizedList(new ArrayList<>());
+        private final List<Bitmap> mScaled = Collections.synchronizedList(new ArrayList<>());
+
+        private Batch(VariantEncoder encoder, Bitmap source, String baseName, long dateTaken,
+                      List<OutputVariant> variants) {
+            mBitmapPool = encoder.mBitmapPool;
+            mChain = encoder.mExecutor.submit(() -> encoder.scaleAndSubmit(this, source, baseName, dateTaken, variants));
+        }
+
+        /**
+         * 等待所有规格编码完成并释放缩放出的位图，原图在此之前不能释放
+         * 缩放或某个规格失败时仍等待其余已提交的编码结束，编码线程可能还在读取缩放结果和原图
+         * @return 成功保存的规格数
+         */
+        public int await() {
+            boolean interrupted = false;
+            int saved = 0;
+            try {
+                interrupted = awaitUninterruptibly(mChain, null);
+                // 缩放任务结束后不再提交新的编码
+                Object[] result = new Object[1];
+                for (Future<Uri> future : new ArrayList<>(mEncodes)) {
+                    result[0] = null;
+                    interrupted |= awaitUninterruptibly(future, result);
+                    if (result[0] != null) {
+                        saved++;
+                    }
+                }
+            } finally {
+                for (Bitmap bitmap : mScaled) {
+                    if (mBitmapPool != null) {
+                        mBitmapPool.put(bitmap);
+                    } else {
+                        bitmap.recycle();
+                    }
+                }
+                mScaled.clear();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return saved;
+        }
+
+        /**
+         * 等待任务结束，中断时继续等待，任务失败时记录日志
+         * @param result 可为null，用于取回任务的结果
+         * @return 等待期间是否被中断
+         */
+        private static boolean awaitUninterruptibly(Future<?> future, Object[] result) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    Object value = future.get();
+                    if (result != null) {
+                        result[0] = value;
+                    }
+                    return interrupted;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "规格输出失败: " + e.getCause(), e.getCause());
+                    return interrupted;
+                }
+            }
+        }
+    }
+
+    /**
+     * 提交所有启用的规格，立即返回
+     * @param baseName 不含扩展名的主输出文件名，规格文件名为 baseName_规格名
+     * @return 没有启用的规格时返回null
+     */
+    public Batch submit(Bitmap source, String baseName, long dateTaken, List<OutputVariant> variants) {
+        List<OutputVariant> enabled = new ArrayList<>();
+        for (OutputVariant variant : variants) {
+            if (variant.isEnabled()) {
+                enabled.add(variant);
+            }
+        }
+        if (enabled.isEmpty()) {
+            return null;
+        }
+        int width = source.getWidth();
+        int height = source.getHeight();
+        // 从大到小排列，每个规格都能从上一个规格缩放得到
+        Collections.sort(enabled, (a, b) -> Float.compare(b.getScale(width, height), a.getScale(width, height)));
+        return new Batch(this, source, baseName, dateTaken, enabled);
+    }
+
+    private void scaleAndSubmit(Batch batch, Bitmap source, String baseName, long dateTaken,
+                                List<OutputVariant> variants) {
+        Bitmap previous = source;
+        for (OutputVariant variant : variants) {
+            float scale = variant.getScale(source.getWidth(), source.getHeight());
+            int width = Math.max(1, Math.round(source.getWidth() * scale));
+            int height = Math.max(1, Math.round(source.getHeight() * scale));
+            Bitmap bitmap = previous;
+            if (AreaDownscaler.canDownscale(previous.getWidth(), previous.getHeight(), width, height)) {
+                long startTime = SystemClock.uptimeMillis();
+                bitmap = AreaDownscaler.downscale(previous, width, height, mBitmapPool);
+                batch.mScaled.add(bitmap);
+                Log.i(TAG, "规格 " + variant.getName() + " 缩放: " + previous.getWidth() + "x" + previous.getHeight() +
+                        " -> " + width + "x" + height + ", 耗时 " + (SystemClock.uptimeMillis() - startTime) + "ms");
+            }
+            final Bitmap input = bitmap;
+            batch.mEncodes.add(mExecutor.submit(() -> encode(variant, input, baseName, dateTaken)));
+            previous = bitmap;
+        }
+    }
+
+    /**
+     * @return 相册中的图片Uri，失败返回null
+     */
+    private Uri encode(OutputVariant variant, Bitmap bitmap, String baseName, long dateTaken) {
+        int codec = ImageCodec.resolve(variant.getCodec());
+        // 规格名由用户输入，只用处理过的后缀拼接文件名
+        String fileName = baseName + "_" + variant.getFileNameSuffix() + "." + ImageCodec.getExtension(codec);
+        long startTime = SystemClock.uptimeMillis();
+        try (MediaStoreSink sink = MediaStoreSink.open(mContext, variant.getDirectoryOrDefault(), fileName,
+                ImageCodec.getMimeType(codec), dateTaken)) {
+            // 规格之间已经并行，PNG不再使用多核编码
+            ImageCodec.create(mContext, codec, variant.getQuality(), null)
+                    .encode(bitmap, sink.getOutputStream(), sink.getFileDescriptor());
+            Uri uri = sink.publish(bitmap.getWidth(), bitmap.getHeight());
+            Log.i(TAG, "规格 " + variant.getName() + " 已保存: " + fileName + " -> " + uri + ", " +
+                    bitmap.getWidth() + "x" + bitmap.getHeight() + ", 格式: " + ImageCodec.getName(codec) +
+                    ", 大小: " + sink.getSize() / 1024 + "KB, 编码耗时: " +
+                    (SystemClock.uptimeMillis() - startTime) + "ms");
+            return uri;
+        } catch (Exception e) {
+            Log.e(TAG, "规格 " + variant.getName() + " 保存失败: " + e.getMessage(), e);
+            return null;
+        }
+    }
+}
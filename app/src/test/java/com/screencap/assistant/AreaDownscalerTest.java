@@ -0,0 +1,80 @@
+package com.screencap.assistant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * AreaDownscaler 的面积权重
+ */
+public class AreaDownscalerTest {
+
+    @Test
+    public void weightsSumToOne() {
+        // 整数倍、非整数倍、接近1倍以及减半后带半个像素的有效范围
+        assertTaps(1080, 1080, 540);
+        assertTaps(1080, 1080, 720);
+        assertTaps(1439, 1439, 1000);
+        assertTaps(2400, 2400, 1799);
+        assertTaps(1000, 1000, 3);
+        assertTaps(700.5, 701, 400);
+        assertTaps(359.25, 360, 191);
+        assertTaps(7, 7, 1);
+    }
+
+    @Test
+    public void integerScaleHasEqualWeights() {
+        AreaDownscaler.Taps taps = new AreaDownscaler.Taps(1200, 1200, 400);
+        for (int i = 0; i < 400; i++) {
+            assertEquals(i * 3, taps.first[i]);
+            int sum = 0;
+            for (int t = 0; t < 3; t++) {
+                int weight = taps.weights[i * taps.stride + t];
+                // 每个源像素占三分之一，舍入误差只补到一个源像素上
+                assertTrue(Math.abs(weight - AreaDownscaler.WEIGHT_ONE / 3.0) <= 2);
+                sum += weight;
+            }
+            assertEquals(AreaDownscaler.WEIGHT_ONE, sum);
+            for (int t = 3; t < taps.stride; t++) {
+                assertEquals(0, taps.weights[i * taps.stride + t]);
+            }
+        }
+    }
+
+    @Test
+    public void canDownscaleRejectsUpscaleAndIdentity() {
+        assertTrue(AreaDownscaler.canDownscale(100, 100, 50, 100));
+        assertFalse(AreaDownscaler.canDownscale(100, 100, 100, 100));
+        assertFalse(AreaDownscaler.canDownscale(100, 100, 101, 50));
+        assertFalse(AreaDownscaler.canDownscale(100, 100, 0, 50));
+    }
+
+    /**
+     * 每个目标像素的权重非负、之和恰为 WEIGHT_ONE，所取的源像素都在范围内，相邻目标像素的起点不后退
+     */
+    private static void assertTaps(double extent, int srcLength, int length) {
+        AreaDownscaler.Taps taps = new AreaDownscaler.Taps(extent, srcLength, length);
+        String label = extent + " -> " + length;
+        assertEquals(label, length, taps.first.length);
+        long total = 0;
+        for (int i = 0; i < length; i++) {
+            int sum = 0;
+            for (int t = 0; t < taps.stride; t++) {
+                int weight = taps.weights[i * taps.stride + t];
+                assertTrue(label + " 第 " + i + " 个权重为负", weight >= 0);
+                if (weight > 0) {
+                    assertTrue(label + " 源像素越界", taps.first[i] + t < srcLength);
+                }
+                sum += weight;
+            }
+            assertEquals(label + " 第 " + i + " 个", AreaDownscaler.WEIGHT_ONE, sum);
+            if (i > 0) {
+                assertTrue(label, taps.first[i] >= taps.first[i - 1]);
+            }
+            total += sum;
+        }
+        assertEquals(label, (long) AreaDownscaler.WEIGHT_ONE * length, total);
+    }
+}
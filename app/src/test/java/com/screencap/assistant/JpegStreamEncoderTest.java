@@ -0,0 +1,180 @@
+package com.screencap.assistant;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * JpegStreamEncoder 的重启间隔和段缓存：缓存段拼接后的输出与完整编码逐字节一致
+ */
+public class JpegStreamEncoderTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 88;
+    private static final int QUALITY = 85;
+    private static final int RESTART_INTERVAL = 5;
+    // 每次编码都变化的区域，按MCU对齐，覆盖第3、4个MCU行的第2段
+    private static final int DYNAMIC_LEFT = 80;
+    private static final int DYNAMIC_TOP = 32;
+    private static final int DYNAMIC_SIZE = 32;
+
+    /**
+     * 与动态区域不相交的段可以缓存
+     */
+    private static final class MapCache implements JpegStreamEncoder.SegmentCache {
+        final byte[][] segments;
+        final boolean[] cacheable;
+
+        MapCache(int mcusPerRow, int mcuRows) {
+            int segmentsPerRow = mcusPerRow / RESTART_INTERVAL;
+            segments = new byte[segmentsPerRow * mcuRows][];
+            cacheable = new boolean[segments.length];
+            int segmentWidth = RESTART_INTERVAL * JpegStreamEncoder.MCU_SIZE;
+            for (int i = 0; i < segments.length; i++) {
+                int left = (i % segmentsPerRow) * segmentWidth;
+                int top = (i / segmentsPerRow) * JpegStreamEncoder.MCU_SIZE;
+                cacheable[i] = left + segmentWidth <= DYNAMIC_LEFT || left >= DYNAMIC_LEFT + DYNAMIC_SIZE
+                        || top + JpegStreamEncoder.MCU_SIZE <= DYNAMIC_TOP || top >= DYNAMIC_TOP + DYNAMIC_SIZE;
+            }
+        }
+
+        @Override
+        public byte[] get(int segment) {
+            return segments[segment];
+        }
+
+        @Override
+        public boolean isCacheable(int segment) {
+            return cacheable[segment];
+        }
+
+        @Override
+        public void put(int segment, byte[] data) {
+            segments[segment] = data;
+        }
+
+        int cacheableCount() {
+            int count = 0;
+            for (boolean value : cacheable) {
+                count += value ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    @Test
+    public void cachedSegmentsSpliceToIdenticalOutput() throws IOException {
+        int mcusPerRow = WIDTH / JpegStreamEncoder.MCU_SIZE;
+        int mcuRows = (HEIGHT + JpegStreamEncoder.MCU_SIZE - 1) / JpegStreamEncoder.MCU_SIZE;
+        MapCache cache = new MapCache(mcusPerRow, mcuRows);
+
+        // 第一次编码填充缓存，本身不使用缓存
+        byte[] first = encode(image(1), cache, 48);
+        assertArrayEquals(encode(image(1), null, 48), first);
+        for (int i = 0; i < cache.segments.length; i++) {
+            assertEquals("段 " + i, cache.cacheable[i], cache.segments[i] != null);
+        }
+
+        // 动态区域变化后，拼接缓存段的输出应与不用缓存完整编码的结果一致
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegStreamEncoder encoder = newEncoder(out, cache);
+        write(encoder, image(2), 32);
+        assertEquals(cache.cacheableCount(), encoder.getCachedSegments());
+        assertArrayEquals(encode(image(2), null, 32), out.toByteArray());
+    }
+
+    @Test
+    public void restartMarkersCycle() throws IOException {
+        byte[] jpeg = encode(image(3), null, HEIGHT);
+        int segments = (WIDTH / JpegStreamEncoder.MCU_SIZE / RESTART_INTERVAL)
+                * ((HEIGHT + JpegStreamEncoder.MCU_SIZE - 1) / JpegStreamEncoder.MCU_SIZE);
+        int scanStart = findMarker(jpeg, 0xDA, 0);
+        int next = 0;
+        for (int i = scanStart + 2; i < jpeg.length - 1; i++) {
+            if ((jpeg[i] & 0xFF) != 0xFF || (jpeg[i + 1] & 0xFF) == 0x00) {
+                continue;
+            }
+            int marker = jpeg[i + 1] & 0xFF;
+            if (marker == 0xD9) {
+                break;
+            }
+            assertEquals("第 " + next + " 个重启标记", 0xD0 + (next & 7), marker);
+            next++;
+        }
+        // 最后一段之后没有重启标记
+        assertEquals(segments - 1, next);
+        // 头部声明了重启间隔
+        int dri = findMarker(jpeg, 0xDD, 0);
+        assertEquals(RESTART_INTERVAL, (jpeg[dri + 4] & 0xFF) << 8 | (jpeg[dri + 5] & 0xFF));
+        assertEquals(0xD9, jpeg[jpeg.length - 1] & 0xFF);
+    }
+
+    @Test
+    public void restartIntervalDividesRow() {
+        assertEquals(10, FrameJpegCache.chooseRestartInterval(150, 10));
+        assertEquals(9, FrameJpegCache.chooseRestartInterval(27, 10));
+        assertEquals(7, FrameJpegCache.chooseRestartInterval(7, 10));
+        assertEquals(1, FrameJpegCache.chooseRestartInterval(13, 10));
+    }
+
+    /**
+     * 固定的背景加上随 seed 变化的动态区域
+     */
+    private static int[] image(int seed) {
+        Random background = new Random(42);
+        Random dynamic = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean inside = x >= DYNAMIC_LEFT && x < DYNAMIC_LEFT + DYNAMIC_SIZE
+                        && y >= DYNAMIC_TOP && y < DYNAMIC_TOP + DYNAMIC_SIZE;
+                Random random = inside ? dynamic : background;
+                int r = (x * 3 + random.nextInt(32)) & 0xFF;
+                int g = (y * 5 + random.nextInt(32)) & 0xFF;
+                int b = random.nextInt(256);
+                pixels[y * WIDTH + x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return pixels;
+    }
+
+    private static JpegStreamEncoder newEncoder(ByteArrayOutputStream out, JpegStreamEncoder.SegmentCache cache) {
+        JpegStreamEncoder encoder = new JpegStreamEncoder(out, WIDTH, HEIGHT, QUALITY);
+        encoder.setRestartInterval(RESTART_INTERVAL, cache);
+        return encoder;
+    }
+
+    private static byte[] encode(int[] pixels, JpegStreamEncoder.SegmentCache cache, int stripeRows)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(newEncoder(out, cache), pixels, stripeRows);
+        return out.toByteArray();
+    }
+
+    /**
+     * 按 stripeRows 行一段写入全部像素
+     */
+    private static void write(JpegStreamEncoder encoder, int[] pixels, int stripeRows) throws IOException {
+        int[] stripe = new int[WIDTH * stripeRows];
+        for (int top = 0; top < HEIGHT; top += stripeRows) {
+            int rows = Math.min(stripeRows, HEIGHT - top);
+            System.arraycopy(pixels, top * WIDTH, stripe, 0, WIDTH * rows);
+            encoder.writeRows(stripe, rows);
+        }
+        encoder.finish();
+    }
+
+    private static int findMarker(byte[] data, int marker, int from) {
+        for (int i = from; i < data.length - 1; i++) {
+            if ((data[i] & 0xFF) == 0xFF && (data[i + 1] & 0xFF) == marker) {
+                return i;
+            }
+        }
+        throw new AssertionError("未找到标记 " + Integer.toHexString(marker));
+    }
+}
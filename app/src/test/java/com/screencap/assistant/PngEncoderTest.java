@@ -0,0 +1,217 @@
+package com.screencap.assistant;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Adler32;
+import java.util.zip.Inflater;
+
+/**
+ * PngEncoder 的分段压缩：adler32 合并以及 SYNC_FLUSH 分段拼接后的deflate流
+ */
+public class PngEncoderTest {
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void combineAdler32MatchesWholeData() {
+        Random random = new Random(1);
+        byte[] data = new byte[200000];
+        random.nextBytes(data);
+        // 包括空段、单字节以及超过模数 65521 的长度
+        int[] splits = {0, 1, 4096, 65521, 65522, 131072, data.length};
+        for (int split : splits) {
+            Adler32 whole = new Adler32();
+            whole.update(data, 0, data.length);
+            Adler32 first = new Adler32();
+            first.update(data, 0, split);
+            Adler32 second = new Adler32();
+            second.update(data, split, data.length - split);
+            assertEquals("分割点 " + split, whole.getValue(),
+                    PngEncoder.combineAdler32(first.getValue(), second.getValue(), data.length - split));
+        }
+    }
+
+    @Test
+    public void combineAdler32OverManyStripes() {
+        Random random = new Random(2);
+        Adler32 whole = new Adler32();
+        long combined = 1;
+        for (int i = 0; i < 20; i++) {
+            byte[] stripe = new byte[random.nextInt(70000)];
+            random.nextBytes(stripe);
+            whole.update(stripe, 0, stripe.length);
+            Adler32 part = new Adler32();
+            part.update(stripe, 0, stripe.length);
+            combined = PngEncoder.combineAdler32(combined, part.getValue(), stripe.length);
+        }
+        assertEquals(whole.getValue(), combined);
+    }
+
+    @Test
+    public void stripedRgbRoundTrip() throws Exception {
+        // 高度跨越多个分段且最后一段不满
+        assertRoundTrip(noise(97, 300, false, 3), 97, 300, PngEncoder.PRESET_BALANCED, 3);
+    }
+
+    @Test
+    public void stripedRgbaRoundTrip() throws Exception {
+        assertRoundTrip(noise(64, 260, true, 4), 64, 260, PngEncoder.PRESET_FAST, 4);
+    }
+
+    @Test
+    public void stripedPaletteRoundTrip() throws Exception {
+        int width = 50;
+        int height = 400;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | ((i / 7) % 16) * 0x101010;
+        }
+        assertRoundTrip(pixels, width, height, PngEncoder.PRESET_SMALL, 1);
+    }
+
+    private static int[] noise(int width, int height, boolean alpha, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            // 平滑的渐变加少量噪声，各种滤波方式都会被选中
+            int base = (i % width) * 2 + (i / width);
+            int color = (base + random.nextInt(8)) & 0xFF;
+            pixels[i] = (alpha ? (random.nextInt(256) << 24) : 0xFF000000)
+                    | color << 16 | (255 - color) << 8 | random.nextInt(256);
+        }
+        return pixels;
+    }
+
+    /**
+     * 编码后拼接所有IDAT，用 Inflater 按zlib流解压（末尾校验adler32），还原滤波后与原像素比较
+     */
+    private void assertRoundTrip(int[] pixels, int width, int height, int preset, int expectedBpp)
+            throws Exception {
+        PngEncoder encoder = new PngEncoder(mExecutor, preset, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode((dst, y, rows) -> System.arraycopy(pixels, y * width, dst, 0, width * rows),
+                width, height, out);
+
+        ByteBuffer png = ByteBuffer.wrap(out.toByteArray());
+        png.position(8);
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        int colorType = -1;
+        int[] palette = null;
+        int idatCount = 0;
+        while (png.hasRemaining()) {
+            int length = png.getInt();
+            byte[] type = new byte[4];
+            png.get(type);
+            byte[] data = new byte[length];
+            png.get(data);
+            png.getInt();
+            String name = new String(type, "US-ASCII");
+            if (name.equals("IHDR")) {
+                colorType = data[9];
+            } else if (name.equals("PLTE")) {
+                palette = new int[length / 3];
+                for (int i = 0; i < palette.length; i++) {
+                    palette[i] = (data[i * 3] & 0xFF) << 16 | (data[i * 3 + 1] & 0xFF) << 8 | (data[i * 3 + 2] & 0xFF);
+                }
+            } else if (name.equals("IDAT")) {
+                idat.write(data);
+                idatCount++;
+            }
+        }
+        assertTrue("每段一个IDAT", idatCount > 1);
+
+        int bpp = colorType == 3 ? 1 : colorType == 6 ? 4 : 3;
+        assertEquals(expectedBpp, bpp);
+        int rowBytes = width * bpp;
+        byte[] raw = new byte[height * (rowBytes + 1)];
+        Inflater inflater = new Inflater();
+        inflater.setInput(idat.toByteArray());
+        int inflated = inflater.inflate(raw);
+        assertTrue("deflate流应完整结束", inflater.finished());
+        assertEquals(raw.length, inflated);
+        assertEquals("流后不应有多余数据", 0, inflater.getRemaining());
+        inflater.end();
+
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        for (int y = 0; y < height; y++) {
+            int offset = y * (rowBytes + 1);
+            unfilter(raw[offset], raw, offset + 1, previous, current, bpp);
+            int[] expected = new int[width];
+            int[] actual = new int[width];
+            for (int x = 0; x < width; x++) {
+                int color = pixels[y * width + x];
+                if (colorType == 3) {
+                    expected[x] = color & 0xFFFFFF;
+                    actual[x] = palette[current[x] & 0xFF];
+                } else if (colorType == 6) {
+                    expected[x] = color;
+                    actual[x] = (current[x * 4 + 3] & 0xFF) << 24 | (current[x * 4] & 0xFF) << 16
+                            | (current[x * 4 + 1] & 0xFF) << 8 | (current[x * 4 + 2] & 0xFF);
+                } else {
+                    expected[x] = color & 0xFFFFFF;
+                    actual[x] = (current[x * 3] & 0xFF) << 16 | (current[x * 3 + 1] & 0xFF) << 8
+                            | (current[x * 3 + 2] & 0xFF);
+                }
+            }
+            assertArrayEquals("第 " + y + " 行", expected, actual);
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+    }
+
+    private static void unfilter(int filter, byte[] raw, int offset, byte[] previous, byte[] out, int bpp) {
+        for (int i = 0; i < out.length; i++) {
+            int a = i >= bpp ? out[i - bpp] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+            int predictor;
+            switch (filter) {
+                case 0:
+                    predictor = 0;
+                    break;
+                case 1:
+                    predictor = a;
+                    break;
+                case 2:
+                    predictor = b;
+                    break;
+                case 3:
+                    predictor = (a + b) >> 1;
+                    break;
+                case 4:
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    predictor = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                    break;
+                default:
+                    throw new AssertionError("未知的滤波方式: " + filter);
+            }
+            out[i] = (byte) (raw[offset + i] + predictor);
+        }
+    }
+}